@@ -0,0 +1,15 @@
+package com.example.evsesimulator.config;
+
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /** Enregistré automatiquement par Spring Boot dans l'ObjectMapper MVC / injecté. */
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
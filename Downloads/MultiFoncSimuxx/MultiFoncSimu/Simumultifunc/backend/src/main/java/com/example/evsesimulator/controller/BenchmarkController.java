@@ -0,0 +1,46 @@
+package com.example.evsesimulator.controller;
+
+import com.example.evsesimulator.service.MicroBenchmarkService;
+import com.example.evsesimulator.service.WebSocketBroadcaster;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/bench")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class BenchmarkController {
+
+    private final MicroBenchmarkService benchmarks;
+    private final WebSocketBroadcaster broadcaster;
+
+    /** Compare JSON / Smile / CBOR sur des mises à jour représentatives. */
+    @GetMapping("/encodings")
+    public ResponseEntity<Map<String, Object>> encodings(
+            @RequestParam(name = "iterations", defaultValue = "20000") int iterations) {
+        return ResponseEntity.ok(benchmarks.encodings(Math.max(1, iterations)));
+    }
+
+    /** ObjectMapper par défaut vs writers / readers typés du registre (Blackbird), par type chaud et par enveloppe /ws. */
+    @GetMapping("/serialization")
+    public ResponseEntity<Map<String, Object>> serialization(
+            @RequestParam(name = "iterations", defaultValue = "20000") int iterations) {
+        return ResponseEntity.ok(benchmarks.serialization(Math.max(1, iterations)));
+    }
+
+    /** Surcoût de la capture TNR sur l'appel OCPP public (session loopback connectée) : capture coupée / active. */
+    @GetMapping("/tnr-capture")
+    public ResponseEntity<Map<String, Object>> tnrCapture(
+            @RequestParam(name = "iterations", defaultValue = "10000") int iterations) {
+        return ResponseEntity.ok(benchmarks.tnrCapture(Math.max(1, iterations)));
+    }
+
+    /** Mêmes indicateurs mesurés sur le trafic réel du flux /ws. */
+    @GetMapping("/encodings/live")
+    public ResponseEntity<Map<String, Object>> liveEncodings() {
+        return ResponseEntity.ok(broadcaster.getEncodingStats());
+    }
+}
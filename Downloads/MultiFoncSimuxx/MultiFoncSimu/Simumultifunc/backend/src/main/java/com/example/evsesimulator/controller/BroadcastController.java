@@ -0,0 +1,24 @@
+package com.example.evsesimulator.controller;
+
+import com.example.evsesimulator.service.WebSocketBroadcaster;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ws")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class BroadcastController {
+
+    private final WebSocketBroadcaster broadcaster;
+
+    /** Files sortantes des clients UI : profondeur, envoyés, perdus, fusionnés. */
+    @GetMapping("/subscribers")
+    public ResponseEntity<List<Map<String, Object>>> subscribers() {
+        return ResponseEntity.ok(broadcaster.getSubscriberStats());
+    }
+}
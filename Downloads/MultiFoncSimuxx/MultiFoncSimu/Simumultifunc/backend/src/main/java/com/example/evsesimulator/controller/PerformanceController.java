@@ -1,15 +1,45 @@
 package com.example.evsesimulator.controller;
 
 import com.example.evsesimulator.model.PerformanceMetrics;
+import com.example.evsesimulator.perf.ArrivalProfile;
+import com.example.evsesimulator.perf.FleetCsvReader;
+import com.example.evsesimulator.perf.LimitConfig;
+import com.example.evsesimulator.perf.LoadShape;
+import com.example.evsesimulator.perf.LoadShapeConfig;
+import com.example.evsesimulator.perf.NetworkImpairment;
+import com.example.evsesimulator.perf.PoolConfig;
+import com.example.evsesimulator.perf.RunPhases;
+import com.example.evsesimulator.perf.ScenarioPlan;
+import com.example.evsesimulator.perf.SoakConfig;
+import com.example.evsesimulator.service.OCPPWebSocketClient;
+import com.example.evsesimulator.service.PerfAdaptiveEngine;
+import com.example.evsesimulator.service.PerfBatchEngine;
+import com.example.evsesimulator.service.PerfLoadShapeEngine;
+import com.example.evsesimulator.service.PerfOpenModelEngine;
+import com.example.evsesimulator.service.PerfPoolEngine;
+import com.example.evsesimulator.service.PerfResultStore;
+import com.example.evsesimulator.service.PerfRun;
+import com.example.evsesimulator.service.PerfRunArchive;
+import com.example.evsesimulator.service.PerfScenarioService;
+import com.example.evsesimulator.service.PerfSoakEngine;
 import com.example.evsesimulator.service.PerformanceService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.nio.charset.StandardCharsets;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 @RestController
 @RequestMapping("/api/performance")
@@ -18,16 +48,88 @@ import java.util.concurrent.CompletableFuture;
 public class PerformanceController {
 
     private final PerformanceService performanceService;
+    private final PerfAdaptiveEngine adaptiveEngine;
+    private final PerfBatchEngine batchEngine;
+    private final PerfLoadShapeEngine loadShapeEngine;
+    private final PerfOpenModelEngine openModelEngine;
+    private final PerfPoolEngine poolEngine;
+    private final PerfSoakEngine soakEngine;
+    private final PerfScenarioService scenarioService;
+    private final PerfResultStore resultStore;
+    private final PerfRunArchive runArchive;
+    private final OCPPWebSocketClient ocppClient;
 
+    /**
+     * Test adaptatif : controller AIMD | VEGAS | GRADIENT, initialBatch (ou initialLimit) comme
+     * limite de départ, maxErrorRate / latencyTargetMs pour juger une fenêtre en surcharge.
+     * Comme les autres tests : warmupSec / measureSec / cooldownSec pour ne rapporter que
+     * la fenêtre de mesure.
+     */
     @PostMapping("/test/start")
     public CompletableFuture<ResponseEntity<Map<String, Object>>> startPerformanceTest(
             @RequestBody Map<String, Object> request) {
 
         String url = (String) request.getOrDefault("url", "wss://pp.total-ev-charge.com/ocpp/WebSocket");
-        Integer initialBatch = (Integer) request.getOrDefault("initialBatch", 10);
         Integer targetSessions = (Integer) request.getOrDefault("targetSessions", 1000);
+        ScenarioPlan plan;
+        LimitConfig limits;
+        RunPhases phases;
+        try {
+            plan = resolveScenario(request);
+            limits = LimitConfig.fromRequest(request);
+            phases = RunPhases.fromRequest(request);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
+        }
+
+        PerfRun run;
+        try {
+            run = adaptiveEngine.start(url, targetSessions, limits, plan, phases);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(rejected(e));
+        }
+
+        return run.getResult()
+                .thenApply(result -> ResponseEntity.ok(result))
+                .exceptionally(ex -> {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("success", false);
+                    error.put("error", ex.getMessage());
+                    return ResponseEntity.badRequest().body(error);
+                });
+    }
+
+    /** Modèle ouvert : mode CONSTANT | POISSON | STEPPED, débit en sessions/s. */
+    @PostMapping("/test/open/start")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> startOpenModelTest(
+            @RequestBody Map<String, Object> request) {
+
+        String url = (String) request.getOrDefault("url", "wss://pp.total-ev-charge.com/ocpp/WebSocket");
+        ArrivalProfile profile;
+        ScenarioPlan plan;
+        RunPhases phases;
+        try {
+            profile = ArrivalProfile.fromRequest(request);
+            plan = resolveScenario(request);
+            phases = RunPhases.fromRequest(request);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Invalid arrival profile: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
+        }
+
+        PerfRun run;
+        try {
+            run = openModelEngine.start(url, profile, plan, phases);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(rejected(e));
+        }
 
-        return performanceService.startAdaptiveTest(url, initialBatch, targetSessions)
+        return run.getResult()
                 .thenApply(result -> ResponseEntity.ok(result))
                 .exceptionally(ex -> {
                     Map<String, Object> error = new HashMap<>();
@@ -37,30 +139,352 @@ public class PerformanceController {
                 });
     }
 
+    /**
+     * Parc pré-connecté : boot de poolSize CPs puis transactions au débit du profil
+     * d'arrivée (mêmes clés que /test/open/start) sur les connexions existantes.
+     */
+    @PostMapping("/test/pool/start")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> startPoolTest(
+            @RequestBody Map<String, Object> request) {
+
+        String url = (String) request.getOrDefault("url", "wss://pp.total-ev-charge.com/ocpp/WebSocket");
+        PoolConfig config;
+        RunPhases phases;
+        try {
+            config = PoolConfig.fromRequest(request);
+            phases = RunPhases.fromRequest(request);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Invalid pool config: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
+        }
+
+        PerfRun run;
+        try {
+            run = poolEngine.start(url, config, phases);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(rejected(e));
+        }
+
+        return run.getResult()
+                .thenApply(result -> ResponseEntity.ok(result))
+                .exceptionally(ex -> {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("success", false);
+                    error.put("error", ex.getMessage());
+                    return ResponseEntity.badRequest().body(error);
+                });
+    }
+
+    /**
+     * Test d'endurance (plusieurs heures) : répond immédiatement, le suivi se fait
+     * via /soak/snapshots et le topic PERFORMANCE_SNAPSHOT du flux /ws.
+     */
+    @PostMapping("/test/soak/start")
+    public ResponseEntity<Map<String, Object>> startSoakTest(@RequestBody Map<String, Object> request) {
+        String url = (String) request.getOrDefault("url", "wss://pp.total-ev-charge.com/ocpp/WebSocket");
+        SoakConfig config;
+        RunPhases phases;
+        try {
+            config = SoakConfig.fromRequest(request);
+            phases = RunPhases.fromRequest(request);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Invalid soak config: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        PerfRun run;
+        try {
+            run = soakEngine.start(url, config, phases);
+        } catch (IllegalStateException e) {
+            return rejected(e);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("runId", run.getId());
+        response.put("message", "Soak test started");
+        response.put("config", config);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Test à profil de charge (RAMP, STEP, SPIKE, SOAK, WAVE, PIECEWISE) : répond immédiatement,
+     * suivi via /soak/snapshots, le topic PERFORMANCE_SNAPSHOT et loadTarget dans /metrics.
+     */
+    @PostMapping("/test/shape/start")
+    public ResponseEntity<Map<String, Object>> startLoadShapeTest(@RequestBody Map<String, Object> request) {
+        String url = (String) request.getOrDefault("url", "wss://pp.total-ev-charge.com/ocpp/WebSocket");
+        LoadShapeConfig config;
+        LoadShape shape;
+        RunPhases phases;
+        try {
+            config = LoadShapeConfig.fromRequest(request);
+            shape = config.create();
+            phases = RunPhases.fromRequest(request);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Invalid load shape: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        PerfRun run;
+        try {
+            run = loadShapeEngine.start(url, shape, config, phases);
+        } catch (IllegalStateException e) {
+            return rejected(e);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("runId", run.getId());
+        response.put("message", "Load-shape test started");
+        response.put("shape", shape.name());
+        response.put("durationSec", shape.durationSec());
+        response.put("config", config);
+        return ResponseEntity.ok(response);
+    }
+
+    /** Courbe cible d'un profil, sans rien lancer. */
+    @PostMapping("/shape/preview")
+    public ResponseEntity<Map<String, Object>> previewLoadShape(@RequestBody Map<String, Object> request,
+                                                                @RequestParam(defaultValue = "100") int samples) {
+        try {
+            LoadShape shape = LoadShapeConfig.fromRequest(request).create();
+            Map<String, Object> response = new HashMap<>();
+            response.put("shape", shape.name());
+            response.put("durationSec", shape.durationSec());
+            response.put("points", shape.preview(Math.min(samples, 10_000)));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Invalid load shape: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/soak/snapshots")
+    public ResponseEntity<Map<String, Object>> getSoakSnapshots(@RequestParam(defaultValue = "0") long since,
+                                                                @RequestParam(required = false) String runId) {
+        PerfRun run = performanceService.getRun(runId);
+        Map<String, Object> response = new HashMap<>();
+        if (run == null) {
+            if (runId != null) return ResponseEntity.notFound().build();
+            response.put("snapshots", List.of());
+            response.put("drift", Map.of());
+            return ResponseEntity.ok(response);
+        }
+        response.put("runId", run.getId());
+        response.put("snapshots", performanceService.getSnapshots(run, since));
+        response.put("drift", performanceService.getSoakDrift(run));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Dégradation réseau appliquée à une part de la flotte (latence, gigue, pertes,
+     * débit, coupures) ; prise en compte immédiatement, y compris pendant un run.
+     */
+    @GetMapping("/impairment")
+    public ResponseEntity<Map<String, Object>> getImpairment() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("config", ocppClient.getImpairment());
+        response.put("stats", ocppClient.getImpairmentStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/impairment")
+    public ResponseEntity<Map<String, Object>> setImpairment(@RequestBody Map<String, Object> request) {
+        try {
+            NetworkImpairment config = NetworkImpairment.fromRequest(request);
+            ocppClient.setImpairment(config);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("config", config);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Invalid impairment: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @DeleteMapping("/impairment")
+    public ResponseEntity<Map<String, Object>> clearImpairment() {
+        ocppClient.setImpairment(null);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Network impairment disabled");
+        return ResponseEntity.ok(response);
+    }
+
+    /** Scénarios déclaratifs compilés (data/perf-scenarios). */
+    @GetMapping("/scenarios")
+    public ResponseEntity<List<ScenarioPlan>> listScenarios() {
+        return ResponseEntity.ok(scenarioService.list());
+    }
+
+    @PostMapping("/scenarios/reload")
+    public ResponseEntity<Map<String, Object>> reloadScenarios() {
+        return ResponseEntity.ok(scenarioService.reload());
+    }
+
+    /** Arrête le run indiqué, ou tous les runs en cours sans runId. */
     @PostMapping("/test/stop")
-    public ResponseEntity<Map<String, Object>> stopPerformanceTest() {
-        performanceService.stopTest();
+    public ResponseEntity<Map<String, Object>> stopPerformanceTest(@RequestParam(required = false) String runId) {
         Map<String, Object> response = new HashMap<>();
+        if (runId == null) {
+            performanceService.stopTest();
+            response.put("message", "All tests stopped");
+        } else {
+            PerfRun run = performanceService.getRun(runId);
+            if (run == null) return ResponseEntity.notFound().build();
+            performanceService.stopTest(run);
+            response.put("runId", run.getId());
+            response.put("message", "Test stopped");
+        }
         response.put("success", true);
-        response.put("message", "Test stopped");
         return ResponseEntity.ok(response);
     }
 
+    /** Runs en cours (chacun avec ses compteurs, son pool de sessions et sa phase). */
+    @GetMapping("/test/active")
+    public ResponseEntity<List<Map<String, Object>>> getActiveRuns() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        performanceService.getActiveRuns().forEach(run -> out.add(run.summary()));
+        return ResponseEntity.ok(out);
+    }
+
+    /** Métriques d'un run (runId absent = dernier run démarré). */
     @GetMapping("/metrics")
-    public ResponseEntity<PerformanceMetrics> getCurrentMetrics() {
-        return ResponseEntity.ok(performanceService.getCurrentMetrics());
+    public ResponseEntity<PerformanceMetrics> getCurrentMetrics(@RequestParam(required = false) String runId) {
+        if (runId == null) return ResponseEntity.ok(performanceService.getCurrentMetrics());
+        PerfRun run = performanceService.getRun(runId);
+        if (run == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(performanceService.getCurrentMetrics(run));
+    }
+
+    /** Garde d'auto-saturation : seuils, dernier échantillon de santé du simulateur. */
+    @GetMapping("/saturation")
+    public ResponseEntity<Map<String, Object>> getSaturation() {
+        return ResponseEntity.ok(performanceService.getSaturationStatus());
+    }
+
+    @GetMapping("/latency")
+    public ResponseEntity<Map<String, Object>> getLatencyPercentiles(@RequestParam(required = false) String runId) {
+        PerfRun run = performanceService.getRun(runId);
+        if (run == null) {
+            return runId == null ? ResponseEntity.ok(Map.of()) : ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(performanceService.getLatencyPercentiles(run));
     }
 
+    /**
+     * Résultats paginés d'un run (lus depuis le fichier NDJSON du run).
+     * Filtres optionnels : cpId (contient), flow, ok, error (contient).
+     */
     @GetMapping("/results")
-    public ResponseEntity<List<PerformanceService.PerfResult>> getResults() {
-        return ResponseEntity.ok(performanceService.getResults());
+    public ResponseEntity<Map<String, Object>> getResults(
+            @RequestParam(required = false) String runId,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String cpId,
+            @RequestParam(required = false) String flow,
+            @RequestParam(required = false) Boolean ok,
+            @RequestParam(required = false) String error) {
+
+        Predicate<PerformanceService.PerfResult> filter = null;
+        if (cpId != null) filter = and(filter, r -> r.getCpId() != null && r.getCpId().contains(cpId));
+        if (flow != null) filter = and(filter, r -> flow.equals(r.getFlow()));
+        if (ok != null) filter = and(filter, r -> r.isWsOk() == ok);
+        if (error != null) filter = and(filter, r -> r.getError() != null && r.getError().contains(error));
+
+        try {
+            return ResponseEntity.ok(performanceService.getResults(runId, Math.max(0, offset),
+                    Math.max(1, Math.min(limit, 10_000)), filter));
+        } catch (Exception e) {
+            Map<String, Object> err = new HashMap<>();
+            err.put("success", false);
+            err.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(err);
+        }
+    }
+
+    @GetMapping("/results/runs")
+    public ResponseEntity<Map<String, Object>> listResultRuns() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("runs", resultStore.listRuns());
+        response.put("journal", resultStore.journalStats());
+        response.put("droppedAfterClose", resultStore.getDroppedAfterClose());
+        return ResponseEntity.ok(response);
+    }
+
+    /** Runs archivés (data/perf/&lt;runId&gt;/run.json), du plus récent au plus ancien. */
+    @GetMapping("/runs")
+    public ResponseEntity<List<Map<String, Object>>> listRuns() {
+        return ResponseEntity.ok(runArchive.list());
+    }
+
+    /**
+     * Compare deux runs archivés par action et percentile, avec test de Mann-Whitney.
+     * histogram=corrected (défaut) ou raw ; régression si p &lt; alpha et dégradation &gt; thresholdPct.
+     */
+    @GetMapping("/runs/compare")
+    public ResponseEntity<Map<String, Object>> compareRuns(
+            @RequestParam String baseline,
+            @RequestParam String candidate,
+            @RequestParam(defaultValue = "10") double thresholdPct,
+            @RequestParam(defaultValue = "0.05") double alpha,
+            @RequestParam(defaultValue = "corrected") String histogram) {
+        try {
+            return ResponseEntity.ok(runArchive.compare(baseline, candidate, thresholdPct, alpha,
+                    !"raw".equalsIgnoreCase(histogram)));
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<Map<String, Object>> getRun(@PathVariable String runId) {
+        try {
+            return ResponseEntity.ok(runArchive.load(runId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /** Téléchargement en flux du fichier NDJSON complet d'un run. */
+    @GetMapping("/results/{runId}/download")
+    public ResponseEntity<Resource> downloadResults(@PathVariable String runId) {
+        try {
+            Path file = resultStore.resultsFile(runId);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + runId + ".ndjson\"")
+                    .body(new FileSystemResource(file));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     @PostMapping("/import/csv")
     public ResponseEntity<Map<String, Object>> importCSV(@RequestParam("file") MultipartFile file) {
         try {
-            String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-            Map<String, Object> result = performanceService.importCSV(content);
+            Map<String, Object> result = performanceService.importCSV(new FleetCsvReader(
+                    new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))));
             result.put("success", true);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -71,12 +495,14 @@ public class PerformanceController {
         }
     }
 
+    /** Batch sur une liste cpId/tagId fournie en JSON ; répond à la fin du run. */
     @PostMapping("/batch/test")
     public CompletableFuture<ResponseEntity<Map<String, Object>>> runBatchTest(
             @RequestBody Map<String, Object> request) {
 
         String url = (String) request.get("url");
         List<Map<String, String>> sessions = (List<Map<String, String>>) request.get("sessions");
+        int concurrency = ((Number) request.getOrDefault("concurrency", 50)).intValue();
 
         if (url == null || sessions == null || sessions.isEmpty()) {
             Map<String, Object> error = new HashMap<>();
@@ -85,24 +511,98 @@ public class PerformanceController {
             return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
         }
 
-        // Lancer le test pour chaque session du CSV
-        List<CompletableFuture<PerformanceService.PerfResult>> futures = new ArrayList<>();
+        ScenarioPlan plan;
+        try {
+            plan = resolveScenario(request);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
+        }
 
-        for (Map<String, String> session : sessions) {
-            String cpId = session.get("cpId");
-            String tagId = session.get("tagId");
+        Iterator<String[]> source = sessions.stream()
+                .filter(m -> m.get("cpId") != null && m.get("tagId") != null)
+                .map(m -> new String[]{m.get("cpId"), m.get("tagId")})
+                .iterator();
 
-            // Créer un test pour cette session
-            // futures.add(performanceService.testSingleSession(url, cpId, tagId));
+        PerfRun run;
+        try {
+            run = batchEngine.start(url, source, 0, concurrency, plan);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(rejected(e));
         }
 
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                .thenApply(v -> {
-                    Map<String, Object> result = new HashMap<>();
+        return run.getResult()
+                .thenApply(result -> {
                     result.put("success", true);
-                    result.put("totalSessions", sessions.size());
-                    result.put("results", performanceService.getResults());
                     return ResponseEntity.ok(result);
+                })
+                .exceptionally(ex -> {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("success", false);
+                    error.put("error", ex.getMessage());
+                    return ResponseEntity.badRequest().body(error);
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * Batch piloté par un CSV de flotte (cpId,tagId) de taille quelconque : l'upload est
+     * recopié sur disque puis lu en flux. Répond immédiatement ; la progression passe
+     * par PERFORMANCE_METRICS (batchLinesRead, batchProgress) et les résultats par /results.
+     */
+    @PostMapping("/batch/csv")
+    public ResponseEntity<Map<String, Object>> runCsvBatchTest(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("url") String url,
+            @RequestParam(defaultValue = "50") int concurrency,
+            @RequestParam(required = false) String scenario) {
+
+        Path tmp = null;
+        try {
+            ScenarioPlan plan = resolveScenario(scenario == null ? Map.of() : Map.of("scenario", scenario));
+            tmp = Files.createTempFile("fleet-", ".csv");
+            file.transferTo(tmp);
+            long size = Files.size(tmp);
+
+            Path uploaded = tmp;
+            FleetCsvReader source = new FleetCsvReader(Files.newBufferedReader(uploaded, StandardCharsets.UTF_8));
+            PerfRun run = batchEngine.start(url, source, size, concurrency, plan);
+            run.getResult().whenComplete((r, ex) -> uploaded.toFile().delete());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("runId", run.getId());
+            response.put("message", "CSV batch test started");
+            response.put("bytes", size);
+            response.put("concurrency", concurrency);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            if (tmp != null) tmp.toFile().delete();
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /** Run refusé : nombre maximal de runs simultanés atteint (perf.max-concurrent-runs). */
+    private static ResponseEntity<Map<String, Object>> rejected(IllegalStateException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    /** "scenario": nom d'un scénario chargé ; absent = flux par défaut. */
+    private ScenarioPlan resolveScenario(Map<String, Object> request) {
+        Object name = request.get("scenario");
+        if (name == null || name.toString().isBlank()) return null;
+        return scenarioService.get(name.toString())
+                .orElseThrow(() -> new IllegalArgumentException("Unknown scenario: " + name));
+    }
+
+    private static <T> Predicate<T> and(Predicate<T> a, Predicate<T> b) {
+        return a == null ? b : a.and(b);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.evsesimulator.controller;
 
+import com.example.evsesimulator.service.SimulatorMeters;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +8,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.*;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
@@ -19,10 +21,13 @@ public class RunnerBridgeController {
 
     private final RestTemplate http;
     private final String runnerBaseUrl;
+    private final SimulatorMeters meters;
 
-    public RunnerBridgeController(RestTemplate http, @Qualifier("runnerBaseUrl") String runnerBaseUrl) {
+    public RunnerBridgeController(RestTemplate http, @Qualifier("runnerBaseUrl") String runnerBaseUrl,
+                                  SimulatorMeters meters) {
         this.http = http;
         this.runnerBaseUrl = runnerBaseUrl;
+        this.meters = meters;
     }
 
     // --------- Helpers
@@ -49,7 +54,18 @@ public class RunnerBridgeController {
         String target = toRunnerUrl(req);
         HttpHeaders headers = copyHeaders(new HttpHeaders());
         HttpEntity<byte[]> entity = new HttpEntity<>(body, headers);
-        return http.exchange(URI.create(target), method, entity, byte[].class);
+        long t0 = System.nanoTime();
+        String status = "error";
+        try {
+            ResponseEntity<byte[]> response = http.exchange(URI.create(target), method, entity, byte[].class);
+            status = String.valueOf(response.getStatusCode().value());
+            return response;
+        } catch (HttpStatusCodeException e) {
+            status = String.valueOf(e.getStatusCode().value());
+            throw e;
+        } finally {
+            meters.runnerProxy(method.name(), status, System.nanoTime() - t0);
+        }
     }
 
     // --------- Endpoints génériques : on forward vers le runner
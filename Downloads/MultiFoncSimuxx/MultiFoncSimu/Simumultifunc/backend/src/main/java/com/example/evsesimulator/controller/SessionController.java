@@ -2,6 +2,7 @@ package com.example.evsesimulator.controller;
 
 import com.example.evsesimulator.model.PagedSessionsResponse;
 import com.example.evsesimulator.model.Session;
+import com.example.evsesimulator.service.SerializationRegistry;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -24,7 +25,11 @@ import java.util.*;
 @Tag(name = "simu", description = "Pilotage EVSE Simu / OCPP")
 public class SessionController {
 
-    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final ObjectMapper mapper;
+
+    public SessionController(SerializationRegistry serialization) {
+        this.mapper = serialization.mapper();
+    }
 
     @GetMapping
     @Operation(summary = "Lister les sessions EVSE Simu (array ou pagination)")
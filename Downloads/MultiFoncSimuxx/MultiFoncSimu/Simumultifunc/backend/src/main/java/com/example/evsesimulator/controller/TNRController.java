@@ -14,7 +14,7 @@ import java.util.*;
 
 /** Endpoints TNR unifiés — ResponseEntity<?> partout (pas de conflits de types). */
 @RestController
-@CrossOrigin(origins = {"http://localhost:3002"}, allowCredentials = "true")
+@CrossOrigin(origins = {"http://localhost:3002"}, allowCredentials = "true", exposedHeaders = "X-Total-Count")
 @RequestMapping("/api/tnr")
 public class TNRController {
 
@@ -60,8 +60,16 @@ public class TNRController {
     public ResponseEntity<?> tap(@RequestBody TNREvent ev) { tnr.recordEvent(ev); return ResponseEntity.accepted().build(); }
 
     /* ---------- Scenarios CRUD ---------- */
-    @GetMapping("/list") public ResponseEntity<?> list() {
-        try { return ResponseEntity.ok(tnr.listScenarios()); } catch (Exception e) { return error(e); }
+    /** Catalogue paginé (limit 0 = tout) filtré par tags (tous requis) ; total dans X-Total-Count. */
+    @GetMapping("/list") public ResponseEntity<?> list(@RequestParam(defaultValue = "0") int offset,
+                                                       @RequestParam(defaultValue = "0") int limit,
+                                                       @RequestParam(name = "tag", required = false) List<String> tags) {
+        try {
+            TNRService.ScenarioPage page = tnr.listScenarios(tags, offset, limit);
+            return ResponseEntity.ok()
+                    .header("X-Total-Count", String.valueOf(page.total()))
+                    .body(page.items());
+        } catch (Exception e) { return error(e); }
     }
     @GetMapping("/{id}") public ResponseEntity<?> get(@PathVariable String id) {
         try { return ResponseEntity.ok(tnr.getScenario(id)); } catch (Exception e) { return error(e); }
@@ -0,0 +1,98 @@
+package com.example.evsesimulator.controller;
+
+import com.example.evsesimulator.service.JfrRecordingService;
+import com.example.evsesimulator.service.SelfTelemetryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/telemetry")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class TelemetryController {
+
+    private final SelfTelemetryService telemetry;
+    private final JfrRecordingService jfr;
+
+    /** GC, allocation, threads, sockets et retard des schedulers du simulateur. */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> snapshot() {
+        return ResponseEntity.ok(telemetry.snapshot());
+    }
+
+    @GetMapping("/jfr")
+    public ResponseEntity<Map<String, Object>> jfrStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("recording", jfr.status());
+        response.put("files", jfr.list());
+        return ResponseEntity.ok(response);
+    }
+
+    /** Body : {name, settings: default|profile, durationSec, maxAgeSec, maxSizeMb}. */
+    @PostMapping("/jfr/start")
+    public ResponseEntity<Map<String, Object>> startJfr(@RequestBody(required = false) Map<String, Object> request) {
+        Map<String, Object> req = request == null ? Map.of() : request;
+        try {
+            Map<String, Object> response = new HashMap<>(jfr.start(
+                    (String) req.get("name"),
+                    (String) req.getOrDefault("settings", "default"),
+                    toLong(req.get("durationSec")),
+                    toLong(req.get("maxAgeSec")),
+                    toLong(req.get("maxSizeMb"))));
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/jfr/stop")
+    public ResponseEntity<Map<String, Object>> stopJfr() {
+        try {
+            Map<String, Object> response = new HashMap<>(jfr.stop());
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/jfr/{runId}/{file}/download")
+    public ResponseEntity<Resource> downloadJfr(@PathVariable String runId, @PathVariable String file) {
+        try {
+            Path path = jfr.file(runId, file);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file + "\"")
+                    .body(new FileSystemResource(path));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number n) return n.longValue();
+        if (value instanceof String s && !s.isBlank()) return Long.parseLong(s.trim());
+        return 0;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        return error;
+    }
+}
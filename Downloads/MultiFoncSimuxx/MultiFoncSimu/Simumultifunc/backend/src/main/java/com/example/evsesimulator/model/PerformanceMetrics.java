@@ -5,12 +5,18 @@ import lombok.Builder;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class PerformanceMetrics {
+    /** run concerné (null si aucun run) ; plusieurs runs peuvent diffuser en parallèle */
+    private String runId;
+    private String runStatus;
+    private Integer activeRuns;
     private Integer totalSessions;
     private Integer activeSessions;
     private Integer successCount;
@@ -21,5 +27,34 @@ public class PerformanceMetrics {
     private Double cpuUsage;
     private Double memoryUsage;
     private Integer messagesPerSecond;
+    /** débits fil OCPP par fenêtre glissante ("1s", "10s", "60s") */
+    private Map<String, Object> throughput;
+    private Map<String, Long> errorsByType;
+    /** par action : percentiles bruts et corrigés du coordinated omission (ms) */
+    private Map<String, Object> latencyPercentiles;
+    private Double targetArrivalRate;
+    private Integer droppedStarts;
+    private Integer lateStarts;
+    /** test adaptatif : limite de concurrence courante du contrôleur */
+    private Integer concurrencyLimit;
+    /** test à profil : cible de CPs actifs à l'instant courant */
+    private Integer loadTarget;
+    /** phase du run découpé : WARMUP, MEASUREMENT ou COOLDOWN (null sinon) */
+    private String phase;
+    /** batch CSV : lignes lues et progression dans le fichier (%) */
+    private Long batchLinesRead;
+    private Double batchProgress;
+    /** télémétrie du simulateur : pauses GC par fenêtre ("1s", "10s", "60s" -> count, pauseMs) */
+    private Map<String, Object> gcPauses;
+    private Double allocationRateMbPerSec;
+    private Integer liveThreads;
+    /** connexions OCPP + clients UI */
+    private Integer openSockets;
+    private Long openFileDescriptors;
+    /** retard max du scheduler OCPP sur la dernière seconde (ms) */
+    private Double schedulerLagMs;
+    /** garde d'auto-saturation : simulateur saturé (rampe en pause, résultats non fiables) et critères franchis */
+    private Boolean selfSaturated;
+    private List<String> saturationReasons;
     private Date timestamp;
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.example.evsesimulator.perf;
+
+/**
+ * Additive increase / multiplicative decrease : +1 par fenêtre saine où la limite
+ * est effectivement utilisée, ×backoffRatio dès qu'une fenêtre est en surcharge.
+ */
+public class AimdLimit implements ConcurrencyLimit {
+
+    private final LimitConfig config;
+    private int limit;
+
+    public AimdLimit(LimitConfig config) {
+        this.config = config;
+        this.limit = config.clamp(config.getInitialLimit());
+    }
+
+    @Override
+    public String name() {
+        return "AIMD";
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int update(Sample s) {
+        if (config.overloaded(s)) {
+            limit = config.backoff(limit);
+        } else if (s.inFlight() * 2 >= limit) {
+            // n'augmenter que si la limite est réellement atteinte (sinon rien n'est appris)
+            limit = config.clamp(limit + 1);
+        }
+        return limit;
+    }
+}
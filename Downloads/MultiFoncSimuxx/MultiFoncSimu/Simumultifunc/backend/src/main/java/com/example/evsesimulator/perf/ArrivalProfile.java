@@ -0,0 +1,65 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Modèle ouvert : les sessions démarrent à un débit cible indépendamment
+ * des complétions (constant, Poisson ou par paliers).
+ */
+@Data
+public class ArrivalProfile {
+
+    public enum Mode { CONSTANT, POISSON, STEPPED }
+
+    private Mode mode = Mode.CONSTANT;
+    /** débit cible (sessions/s) ; débit initial en mode STEPPED */
+    private double ratePerSec = 10;
+    /** STEPPED : incrément de débit à chaque palier */
+    private double stepRatePerSec = 10;
+    /** STEPPED : durée d'un palier */
+    private int stepDurationSec = 60;
+    /** STEPPED : plafond de débit (0 = sans plafond) */
+    private double maxRatePerSec = 0;
+    /** durée totale du test (0 = jusqu'à stop / maxSessions) */
+    private int durationSec = 300;
+    /** nombre max de démarrages (0 = illimité) */
+    private int maxSessions = 0;
+    /** au-delà, les démarrages sont abandonnés (comptés en dropped) */
+    private int maxInFlight = 1000;
+    /** retard toléré entre l'instant prévu et le démarrage effectif */
+    private long lateThresholdMs = 50;
+
+    /** Débit cible à l'instant t (secondes depuis le début). */
+    public double rateAt(double elapsedSec) {
+        if (mode != Mode.STEPPED) return ratePerSec;
+        int step = stepDurationSec <= 0 ? 0 : (int) (elapsedSec / stepDurationSec);
+        double rate = ratePerSec + step * stepRatePerSec;
+        return maxRatePerSec > 0 ? Math.min(rate, maxRatePerSec) : rate;
+    }
+
+    /** Écart jusqu'au prochain démarrage prévu, en nanosecondes. */
+    public long nextGapNanos(double elapsedSec) {
+        double rate = Math.max(rateAt(elapsedSec), 0.001);
+        double gapSec = mode == Mode.POISSON
+                ? -Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) / rate
+                : 1.0 / rate;
+        return (long) (gapSec * 1_000_000_000L);
+    }
+
+    public static ArrivalProfile fromRequest(Map<String, Object> req) {
+        ArrivalProfile p = new ArrivalProfile();
+        if (req.get("mode") != null) p.setMode(Mode.valueOf(String.valueOf(req.get("mode")).toUpperCase()));
+        if (req.get("ratePerSec") != null) p.setRatePerSec(((Number) req.get("ratePerSec")).doubleValue());
+        if (req.get("stepRatePerSec") != null) p.setStepRatePerSec(((Number) req.get("stepRatePerSec")).doubleValue());
+        if (req.get("stepDurationSec") != null) p.setStepDurationSec(((Number) req.get("stepDurationSec")).intValue());
+        if (req.get("maxRatePerSec") != null) p.setMaxRatePerSec(((Number) req.get("maxRatePerSec")).doubleValue());
+        if (req.get("durationSec") != null) p.setDurationSec(((Number) req.get("durationSec")).intValue());
+        if (req.get("maxSessions") != null) p.setMaxSessions(((Number) req.get("maxSessions")).intValue());
+        if (req.get("maxInFlight") != null) p.setMaxInFlight(((Number) req.get("maxInFlight")).intValue());
+        if (req.get("lateThresholdMs") != null) p.setLateThresholdMs(((Number) req.get("lateThresholdMs")).longValue());
+        return p;
+    }
+}
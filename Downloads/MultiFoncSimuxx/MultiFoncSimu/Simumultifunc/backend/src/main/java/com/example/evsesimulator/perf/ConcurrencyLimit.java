@@ -0,0 +1,25 @@
+package com.example.evsesimulator.perf;
+
+/**
+ * Contrôleur de limite de concurrence (sessions en vol) mis à jour à chaque fenêtre
+ * de mesure. Implémentations : {@link AimdLimit}, {@link VegasLimit}, {@link GradientLimit}.
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * Mesures d'une fenêtre.
+     * @param rttP50Ms  médiane du RTT OCPP sur la fenêtre
+     * @param rttP99Ms  p99 du RTT OCPP sur la fenêtre
+     * @param errorRate part de sessions en échec parmi celles terminées dans la fenêtre
+     * @param completed sessions terminées dans la fenêtre
+     * @param inFlight  sessions en vol en fin de fenêtre
+     */
+    record Sample(double rttP50Ms, double rttP99Ms, double errorRate, long completed, int inFlight) {}
+
+    String name();
+
+    int getLimit();
+
+    /** Intègre une fenêtre et renvoie la nouvelle limite. */
+    int update(Sample sample);
+}
@@ -0,0 +1,94 @@
+package com.example.evsesimulator.perf;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lecture en flux d'un CSV de flotte "cpId,tagId" (séparateur , ou ;).
+ * Une ligne à la fois : le fichier n'est jamais chargé en entier.
+ * L'en-tête éventuel (contenant "cpid") et les lignes vides ou incomplètes sont ignorés.
+ */
+public class FleetCsvReader implements Iterator<String[]>, Closeable {
+
+    private final BufferedReader reader;
+    private String[] next;
+    private boolean firstLine = true;
+    private volatile long linesRead = 0;
+    private volatile long charsRead = 0;
+    private volatile long skipped = 0;
+
+    public FleetCsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesRead++;
+                charsRead += line.length() + 1;
+                if (firstLine) {
+                    firstLine = false;
+                    if (line.toLowerCase().contains("cpid")) continue;
+                }
+                String[] pair = parse(line);
+                if (pair != null) {
+                    next = pair;
+                    return true;
+                }
+                if (!line.isBlank()) skipped++;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String[] next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        String[] out = next;
+        next = null;
+        return out;
+    }
+
+    private static String[] parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) return null;
+        String[] parts = trimmed.split(trimmed.indexOf(',') >= 0 ? "," : ";");
+        if (parts.length < 2) return null;
+        String cpId = unquote(parts[0]);
+        String tagId = unquote(parts[1]);
+        return cpId.isEmpty() || tagId.isEmpty() ? null : new String[]{cpId, tagId};
+    }
+
+    private static String unquote(String v) {
+        String t = v.trim();
+        if (t.length() >= 2 && t.startsWith("\"") && t.endsWith("\"")) t = t.substring(1, t.length() - 1).trim();
+        return t;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /** Caractères consommés (≈ octets pour un CSV ASCII), pour la progression. */
+    public long getCharsRead() {
+        return charsRead;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.evsesimulator.perf;
+
+/**
+ * Gradient : compare le RTT long terme (moyenne exponentielle lente) au RTT de la fenêtre.
+ * gradient = clamp(long / court, 0.5, 1) ; nouvelle limite = limit × gradient + √limit,
+ * lissée à 20 % pour éviter les oscillations.
+ */
+public class GradientLimit implements ConcurrencyLimit {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_DECAY = 0.05;
+
+    private final LimitConfig config;
+    private double limit;
+    private double longRtt = 0;
+
+    public GradientLimit(LimitConfig config) {
+        this.config = config;
+        this.limit = config.clamp(config.getInitialLimit());
+    }
+
+    @Override
+    public String name() {
+        return "GRADIENT";
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) Math.round(limit);
+    }
+
+    @Override
+    public int update(Sample s) {
+        if (config.overloaded(s)) {
+            limit = config.backoff(limit);
+            return getLimit();
+        }
+        double shortRtt = s.rttP50Ms();
+        if (shortRtt <= 0) return getLimit();
+        longRtt = longRtt <= 0 ? shortRtt : longRtt * (1 - LONG_RTT_DECAY) + shortRtt * LONG_RTT_DECAY;
+
+        double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+        // pas de croissance si la limite n'est pas utilisée
+        double queue = s.inFlight() * 2 >= limit ? Math.sqrt(limit) : 0;
+        double target = limit * gradient + queue;
+        // sans arrondi : les petits incréments lissés doivent pouvoir s'accumuler
+        limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), limit * (1 - SMOOTHING) + target * SMOOTHING));
+        return getLimit();
+    }
+}
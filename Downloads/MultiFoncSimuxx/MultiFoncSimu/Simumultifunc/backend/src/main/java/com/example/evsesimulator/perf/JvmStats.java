@@ -0,0 +1,37 @@
+package com.example.evsesimulator.perf;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/** Lecture ponctuelle de l'état de la JVM du simulateur. */
+public final class JvmStats {
+
+    private JvmStats() {}
+
+    public static MemoryUsage heap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    /** Nombre cumulé de collections, tous collecteurs confondus. */
+    public static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    /** Temps cumulé passé en GC (ms), tous collecteurs confondus. */
+    public static long gcTimeMs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    public static int liveThreads() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.evsesimulator.perf;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogrammes de latence par action, en double :
+ * - raw       : fin - envoi effectif (ce que voit un client "patient")
+ * - corrected : fin - instant prévu (MeterValues, Heartbeat, arrivée en modèle ouvert),
+ *   c.-à-d. corrigé du coordinated omission quand l'envoi a lui-même pris du retard.
+ * Valeurs stockées en microsecondes.
+ */
+public class LatencyHistograms {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    public static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    /** Opération non planifiée (System.nanoTime peut valoir 0 ou moins, 0 n'est pas une sentinelle). */
+    public static final long UNSCHEDULED = Long.MIN_VALUE;
+
+    private static final class Pair {
+        final Histogram raw = newHistogram();
+        final Histogram corrected = newHistogram();
+    }
+
+    private final Map<String, Pair> byAction = new ConcurrentHashMap<>();
+
+    public static Histogram newHistogram() {
+        return new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * @param intendedNanos instant prévu (System.nanoTime), {@link #UNSCHEDULED} si l'opération n'était pas planifiée
+     */
+    public void record(String action, long intendedNanos, long startNanos, long endNanos) {
+        long raw = toMicros(endNanos - startNanos);
+        long corrected = intendedNanos != UNSCHEDULED ? toMicros(endNanos - Math.min(intendedNanos, startNanos)) : raw;
+        Pair p = byAction.computeIfAbsent(action, k -> new Pair());
+        p.raw.recordValue(raw);
+        p.corrected.recordValue(corrected);
+    }
+
+    public Histogram raw(String action) {
+        Pair p = byAction.get(action);
+        return p == null ? null : p.raw;
+    }
+
+    public Histogram corrected(String action) {
+        Pair p = byAction.get(action);
+        return p == null ? null : p.corrected;
+    }
+
+    /** Cumul brut toutes actions confondues (copie). */
+    public Histogram rawTotal() {
+        Histogram total = newHistogram();
+        byAction.values().forEach(p -> total.add(p.raw.copy()));
+        return total;
+    }
+
+    /** Copie figée de tous les histogrammes (borne de phase). */
+    public LatencyHistograms copy() {
+        LatencyHistograms out = new LatencyHistograms();
+        byAction.forEach((action, p) -> {
+            Pair c = new Pair();
+            c.raw.add(p.raw.copy());
+            c.corrected.add(p.corrected.copy());
+            out.byAction.put(action, c);
+        });
+        return out;
+    }
+
+    /** Mesures enregistrées depuis {@code earlier} (copie antérieure de ces mêmes histogrammes). */
+    public LatencyHistograms minus(LatencyHistograms earlier) {
+        LatencyHistograms out = copy();
+        earlier.byAction.forEach((action, p) -> {
+            Pair c = out.byAction.get(action);
+            if (c == null) return;
+            c.raw.subtract(p.raw);
+            c.corrected.subtract(p.corrected);
+            if (c.raw.getTotalCount() == 0) out.byAction.remove(action);
+        });
+        return out;
+    }
+
+    public Iterable<String> actions() {
+        return byAction.keySet();
+    }
+
+    /** Percentiles bruts et corrigés côte à côte, en millisecondes, par action. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new TreeMap<>();
+        byAction.forEach((action, p) -> {
+            // copies : l'itération d'un ConcurrentHistogram en cours d'écriture n'est pas sûre
+            Histogram raw = p.raw.copy();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", raw.getTotalCount());
+            m.put("raw", percentiles(raw));
+            m.put("corrected", percentiles(p.corrected.copy()));
+            out.put(action, m);
+        });
+        return out;
+    }
+
+    public static Map<String, Object> percentiles(Histogram h) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        if (h.getTotalCount() == 0) return m;
+        for (double p : PERCENTILES) {
+            m.put("p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p).replace(".", "")),
+                    h.getValueAtPercentile(p) / 1000.0);
+        }
+        m.put("max", h.getMaxValue() / 1000.0);
+        m.put("mean", Math.round(h.getMean()) / 1000.0);
+        return m;
+    }
+
+    public void reset() {
+        byAction.clear();
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/** Réglages du contrôleur de concurrence du test adaptatif. */
+@Data
+public class LimitConfig {
+
+    public enum Algorithm { AIMD, VEGAS, GRADIENT }
+
+    private Algorithm algorithm = Algorithm.AIMD;
+    private int initialLimit = 10;
+    private int minLimit = 1;
+    private int maxLimit = 10_000;
+    private long windowMs = 1000;
+    /** au-delà, la fenêtre est en échec : réduction de la limite */
+    private double maxErrorRate = 0.05;
+    /** p99 cible (ms), 0 = seul l'algorithme juge la latence */
+    private double latencyTargetMs = 0;
+    /** AIMD : facteur de réduction multiplicative */
+    private double backoffRatio = 0.9;
+
+    public ConcurrencyLimit create() {
+        return switch (algorithm) {
+            case AIMD -> new AimdLimit(this);
+            case VEGAS -> new VegasLimit(this);
+            case GRADIENT -> new GradientLimit(this);
+        };
+    }
+
+    /** Vrai si la fenêtre dépasse le taux d'erreur ou la latence cible. */
+    public boolean overloaded(ConcurrencyLimit.Sample s) {
+        return s.errorRate() > maxErrorRate || (latencyTargetMs > 0 && s.rttP99Ms() > latencyTargetMs);
+    }
+
+    int clamp(double limit) {
+        return (int) Math.max(minLimit, Math.min(maxLimit, Math.round(limit)));
+    }
+
+    /**
+     * Réduction multiplicative sur fenêtre en surcharge : arrondi inférieur et au moins -1,
+     * sinon l'arrondi ramène les petites limites à elles-mêmes (5 × 0.9 = 4.5 → 5).
+     */
+    int backoff(double limit) {
+        return clamp(Math.min(Math.floor(limit * backoffRatio), Math.ceil(limit) - 1));
+    }
+
+    public static LimitConfig fromRequest(Map<String, Object> req) {
+        LimitConfig c = new LimitConfig();
+        if (req.get("controller") != null) c.setAlgorithm(Algorithm.valueOf(String.valueOf(req.get("controller")).toUpperCase()));
+        if (req.get("initialBatch") != null) c.setInitialLimit(((Number) req.get("initialBatch")).intValue());
+        if (req.get("initialLimit") != null) c.setInitialLimit(((Number) req.get("initialLimit")).intValue());
+        if (req.get("minLimit") != null) c.setMinLimit(((Number) req.get("minLimit")).intValue());
+        if (req.get("maxLimit") != null) c.setMaxLimit(((Number) req.get("maxLimit")).intValue());
+        if (req.get("windowMs") != null) c.setWindowMs(((Number) req.get("windowMs")).longValue());
+        if (req.get("maxErrorRate") != null) c.setMaxErrorRate(((Number) req.get("maxErrorRate")).doubleValue());
+        if (req.get("latencyTargetMs") != null) c.setLatencyTargetMs(((Number) req.get("latencyTargetMs")).doubleValue());
+        if (req.get("backoffRatio") != null) c.setBackoffRatio(((Number) req.get("backoffRatio")).doubleValue());
+        return c;
+    }
+}
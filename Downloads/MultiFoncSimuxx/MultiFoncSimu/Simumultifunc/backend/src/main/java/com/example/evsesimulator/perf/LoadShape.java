@@ -0,0 +1,77 @@
+package com.example.evsesimulator.perf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Profil de charge : nombre de CPs actifs visé en fonction du temps écoulé (s).
+ * Formes intégrées (rampe, paliers, pic, plateau, vague journalière) ou courbe par morceaux.
+ */
+public record LoadShape(String name, double durationSec, DoubleUnaryOperator fn) {
+
+    /** Cible (arrondie, >= 0) à l'instant t ; au-delà de la durée on garde la dernière valeur. */
+    public int targetAt(double elapsedSec) {
+        double t = Math.min(Math.max(0, elapsedSec), durationSec);
+        return (int) Math.max(0, Math.round(fn.applyAsDouble(t)));
+    }
+
+    /** Courbe échantillonnée pour prévisualiser un profil avant de le lancer. */
+    public List<Map<String, Object>> preview(int samples) {
+        int n = Math.max(2, samples);
+        List<Map<String, Object>> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double t = durationSec * i / (n - 1);
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("t", Math.round(t * 10) / 10.0);
+            p.put("target", targetAt(t));
+            out.add(p);
+        }
+        return out;
+    }
+
+    public static LoadShape constant(int level, double durationSec) {
+        return new LoadShape("SOAK", durationSec, t -> level);
+    }
+
+    /** Rampe linéaire from → to puis plateau. */
+    public static LoadShape ramp(int from, int to, double rampSec, double holdSec) {
+        return new LoadShape("RAMP", rampSec + holdSec,
+                t -> t >= rampSec ? to : from + (to - from) * t / rampSec);
+    }
+
+    /** Paliers : base, base + stepSize, ... maintenus chacun holdSec. */
+    public static LoadShape step(int base, int stepSize, int steps, double holdSec) {
+        return new LoadShape("STEP", steps * holdSec,
+                t -> base + stepSize * Math.min(steps - 1, (int) (t / holdSec)));
+    }
+
+    /** Niveau de base avec un pic base × multiplier entre spikeAt et spikeAt + spikeSec. */
+    public static LoadShape spike(int base, double multiplier, double spikeAtSec, double spikeSec, double durationSec) {
+        return new LoadShape("SPIKE", durationSec,
+                t -> t >= spikeAtSec && t < spikeAtSec + spikeSec ? base * multiplier : base);
+    }
+
+    /** Vague (cosinus surélevé) : creux à base, sommet à peak en peakAtSec, période periodSec. */
+    public static LoadShape wave(int base, int peak, double periodSec, double peakAtSec, double durationSec) {
+        return new LoadShape("WAVE", durationSec,
+                t -> base + (peak - base) * (1 + Math.cos(2 * Math.PI * (t - peakAtSec) / periodSec)) / 2);
+    }
+
+    /** Interpolation linéaire (ou en escalier) entre points (t, cible) triés par t. */
+    public static LoadShape piecewise(List<double[]> points, boolean stepwise) {
+        double[][] pts = points.toArray(new double[0][]);
+        return new LoadShape("PIECEWISE", pts[pts.length - 1][0], t -> {
+            for (int i = 1; i < pts.length; i++) {
+                if (t < pts[i][0]) {
+                    if (stepwise) return pts[i - 1][1];
+                    double span = pts[i][0] - pts[i - 1][0];
+                    return pts[i - 1][1] + (pts[i][1] - pts[i - 1][1]) * (t - pts[i - 1][0]) / span;
+                }
+            }
+            return pts[pts.length - 1][1];
+        });
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paramètres d'un test à profil de charge : la forme (cible de CPs actifs dans le temps)
+ * et le cycle joué par chaque CP actif (Authorize → Start → MeterValues → Stop, pause).
+ */
+@Data
+public class LoadShapeConfig {
+
+    public enum Shape { RAMP, STEP, SPIKE, SOAK, WAVE, PIECEWISE }
+
+    private Shape shape = Shape.RAMP;
+    /** durée totale (SPIKE, SOAK, WAVE) ; RAMP, STEP et PIECEWISE la déduisent de leurs paramètres */
+    private double durationSec = 600;
+
+    // Niveaux
+    private int base = 10;
+    private int peak = 100;
+    // RAMP
+    private double rampSec = 60;
+    private double holdSec = 60;
+    // STEP
+    private int stepSize = 10;
+    private int steps = 5;
+    private double stepHoldSec = 300;
+    // SPIKE
+    private double spikeMultiplier = 10;
+    private double spikeAtSec = 60;
+    private double spikeSec = 30;
+    // WAVE : une "journée" compressée, sommet vers 19h par défaut
+    private double periodSec = 600;
+    private Double peakAtSec;
+    // PIECEWISE : [[t, cible], ...]
+    private List<double[]> points = new ArrayList<>();
+    private boolean stepwise = false;
+
+    // Cycle d'un CP actif
+    private int chargeDurationSec = 60;
+    private int idleSec = 10;
+    private int heartbeatIntervalSec = 60;
+    private int meterValueIntervalSec = 30;
+
+    // Réconciliation
+    private long reconcileIntervalMs = 1000;
+    /** connexions simultanées en cours d'établissement */
+    private int connectConcurrency = 20;
+    /** CPs gardés connectés (heartbeat seul) quand la cible baisse, réutilisés à la remontée */
+    private int maxParked = 1000;
+    private int snapshotIntervalSec = 10;
+    private int maxSnapshots = 2000;
+
+    public LoadShape create() {
+        validate();
+        return switch (shape) {
+            case RAMP -> LoadShape.ramp(base, peak, rampSec, holdSec);
+            case STEP -> LoadShape.step(base, stepSize, steps, stepHoldSec);
+            case SPIKE -> LoadShape.spike(base, spikeMultiplier, spikeAtSec, spikeSec, durationSec);
+            case SOAK -> LoadShape.constant(base, durationSec);
+            case WAVE -> LoadShape.wave(base, peak, periodSec,
+                    peakAtSec != null ? peakAtSec : periodSec * 19 / 24, durationSec);
+            case PIECEWISE -> LoadShape.piecewise(points, stepwise);
+        };
+    }
+
+    private void validate() {
+        if (base < 0 || peak < 0) throw new IllegalArgumentException("base and peak must be >= 0");
+        switch (shape) {
+            case RAMP -> {
+                if (rampSec <= 0) throw new IllegalArgumentException("rampSec must be > 0");
+            }
+            case STEP -> {
+                if (steps < 1 || stepHoldSec <= 0) throw new IllegalArgumentException("steps >= 1 and stepHoldSec > 0 required");
+            }
+            case WAVE -> {
+                if (periodSec <= 0) throw new IllegalArgumentException("periodSec must be > 0");
+            }
+            case PIECEWISE -> {
+                if (points.size() < 2) throw new IllegalArgumentException("PIECEWISE needs at least 2 points");
+                for (int i = 0; i < points.size(); i++) {
+                    double[] p = points.get(i);
+                    if (p.length != 2 || p[1] < 0) throw new IllegalArgumentException("point " + i + " must be [t, target>=0]");
+                    if (i > 0 && p[0] <= points.get(i - 1)[0]) throw new IllegalArgumentException("points must be sorted by t");
+                }
+            }
+            default -> { }
+        }
+        if (shape != Shape.RAMP && shape != Shape.STEP && shape != Shape.PIECEWISE && durationSec <= 0) {
+            throw new IllegalArgumentException("durationSec must be > 0");
+        }
+    }
+
+    public static LoadShapeConfig fromRequest(Map<String, Object> req) {
+        LoadShapeConfig c = new LoadShapeConfig();
+        if (req.get("shape") != null) c.setShape(Shape.valueOf(String.valueOf(req.get("shape")).toUpperCase()));
+        if (req.get("durationSec") != null) c.setDurationSec(num(req, "durationSec").doubleValue());
+        if (req.get("base") != null) c.setBase(num(req, "base").intValue());
+        if (req.get("peak") != null) c.setPeak(num(req, "peak").intValue());
+        if (req.get("rampSec") != null) c.setRampSec(num(req, "rampSec").doubleValue());
+        if (req.get("holdSec") != null) c.setHoldSec(num(req, "holdSec").doubleValue());
+        if (req.get("stepSize") != null) c.setStepSize(num(req, "stepSize").intValue());
+        if (req.get("steps") != null) c.setSteps(num(req, "steps").intValue());
+        if (req.get("stepHoldSec") != null) c.setStepHoldSec(num(req, "stepHoldSec").doubleValue());
+        if (req.get("spikeMultiplier") != null) c.setSpikeMultiplier(num(req, "spikeMultiplier").doubleValue());
+        if (req.get("spikeAtSec") != null) c.setSpikeAtSec(num(req, "spikeAtSec").doubleValue());
+        if (req.get("spikeSec") != null) c.setSpikeSec(num(req, "spikeSec").doubleValue());
+        if (req.get("periodSec") != null) c.setPeriodSec(num(req, "periodSec").doubleValue());
+        if (req.get("peakAtSec") != null) c.setPeakAtSec(num(req, "peakAtSec").doubleValue());
+        if (req.get("stepwise") != null) c.setStepwise(Boolean.TRUE.equals(req.get("stepwise")));
+        if (req.get("points") instanceof List<?> pts) {
+            List<double[]> points = new ArrayList<>();
+            for (Object p : pts) {
+                List<?> pair = (List<?>) p;
+                points.add(new double[]{((Number) pair.get(0)).doubleValue(), ((Number) pair.get(1)).doubleValue()});
+            }
+            c.setPoints(points);
+        }
+        if (req.get("chargeDurationSec") != null) c.setChargeDurationSec(num(req, "chargeDurationSec").intValue());
+        if (req.get("idleSec") != null) c.setIdleSec(num(req, "idleSec").intValue());
+        if (req.get("heartbeatIntervalSec") != null) c.setHeartbeatIntervalSec(num(req, "heartbeatIntervalSec").intValue());
+        if (req.get("meterValueIntervalSec") != null) c.setMeterValueIntervalSec(num(req, "meterValueIntervalSec").intValue());
+        if (req.get("reconcileIntervalMs") != null) c.setReconcileIntervalMs(num(req, "reconcileIntervalMs").longValue());
+        if (req.get("connectConcurrency") != null) c.setConnectConcurrency(num(req, "connectConcurrency").intValue());
+        if (req.get("maxParked") != null) c.setMaxParked(num(req, "maxParked").intValue());
+        if (req.get("snapshotIntervalSec") != null) c.setSnapshotIntervalSec(num(req, "snapshotIntervalSec").intValue());
+        if (req.get("maxSnapshots") != null) c.setMaxSnapshots(num(req, "maxSnapshots").intValue());
+        return c;
+    }
+
+    private static Number num(Map<String, Object> req, String key) {
+        return (Number) req.get(key);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.evsesimulator.perf;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Test U de Mann-Whitney sur deux histogrammes HdrHistogram, sans reconstituer les
+ * échantillons : les rangs sont calculés par groupe d'égalité (un groupe par bucket),
+ * approximation normale avec correction des ex aequo.
+ *
+ * @param u               U de l'échantillon candidat
+ * @param z               statistique normale (z > 0 : le candidat tend à être plus lent)
+ * @param pValue          p-value bilatérale
+ * @param probCandidateSlower P(candidat > baseline) + ½ P(égalité), taille d'effet
+ */
+public record MannWhitney(double u, double z, double pValue, double probCandidateSlower) {
+
+    public static MannWhitney test(Histogram baseline, Histogram candidate) {
+        long n1 = baseline.getTotalCount();
+        long n2 = candidate.getTotalCount();
+        if (n1 == 0 || n2 == 0) return new MannWhitney(0, 0, 1, 0.5);
+
+        // valeur de bucket -> {effectif baseline, effectif candidat}
+        Map<Long, long[]> merged = new TreeMap<>();
+        for (HistogramIterationValue v : baseline.recordedValues()) {
+            merged.computeIfAbsent(v.getValueIteratedTo(), k -> new long[2])[0] += v.getCountAtValueIteratedTo();
+        }
+        for (HistogramIterationValue v : candidate.recordedValues()) {
+            merged.computeIfAbsent(v.getValueIteratedTo(), k -> new long[2])[1] += v.getCountAtValueIteratedTo();
+        }
+
+        double n = (double) n1 + n2;
+        double rankSum2 = 0;
+        double tieTerm = 0;
+        double seen = 0;
+        for (long[] c : merged.values()) {
+            double t = (double) c[0] + c[1];
+            double avgRank = seen + (t + 1) / 2.0;
+            rankSum2 += c[1] * avgRank;
+            tieTerm += t * t * t - t;
+            seen += t;
+        }
+
+        double u2 = rankSum2 - (double) n2 * (n2 + 1) / 2.0;
+        double mean = (double) n1 * n2 / 2.0;
+        double variance = (double) n1 * n2 / 12.0 * ((n + 1) - tieTerm / (n * (n - 1)));
+        double z = variance <= 0 ? 0 : (u2 - mean) / Math.sqrt(variance);
+        double p = 2 * (1 - normalCdf(Math.abs(z)));
+        return new MannWhitney(u2, z, Math.max(0, Math.min(1, p)), u2 / ((double) n1 * n2));
+    }
+
+    /** Φ(x) via erf (Abramowitz & Stegun 7.1.26, erreur < 1.5e-7). */
+    static double normalCdf(double x) {
+        double t = 1 / (1 + 0.3275911 * Math.abs(x) / Math.sqrt(2));
+        double y = 1 - (((((1.061405429 * t - 1.453152027) * t) + 1.421413741) * t - 0.284496736) * t + 0.254829592)
+                * t * Math.exp(-x * x / 2);
+        return x >= 0 ? 0.5 * (1 + y) : 0.5 * (1 - y);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.evsesimulator.perf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fenêtre de mesure d'un run : aux bornes des phases on fige une copie des histogrammes
+ * et des compteurs, le rapport est la différence fin - début. Rien n'est remis à zéro
+ * pendant le run (les boucles de charge continuent sans interruption).
+ */
+public class MeasurementWindow {
+
+    public enum Phase { WARMUP, MEASUREMENT, COOLDOWN }
+
+    /** Compteurs cumulés du run à un instant donné. */
+    public record Counters(long sessions, long success, long errors, long latencySumMs,
+                           long dropped, long late) {
+        Counters minus(Counters o) {
+            return new Counters(sessions - o.sessions, success - o.success, errors - o.errors,
+                    latencySumMs - o.latencySumMs, dropped - o.dropped, late - o.late);
+        }
+    }
+
+    private final RunPhases phases;
+    private final LatencyHistograms latency;
+    private final Supplier<Counters> counters;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledFuture<?> beginTask;
+    private final ScheduledFuture<?> endTask;
+
+    private volatile Phase phase = Phase.WARMUP;
+    private LatencyHistograms atStart;
+    private LatencyHistograms measured;
+    private Counters countersAtStart;
+    private Counters measuredCounters;
+    private long beginNanos;
+    private long endNanos;
+    private long beginMs;
+    private long endMs;
+    private boolean reached = true;
+
+    /**
+     * @param totalSec durée prévue du run, 0 si inconnue (la mesure va alors jusqu'à la fin)
+     */
+    public MeasurementWindow(RunPhases phases, double totalSec, LatencyHistograms latency,
+                             Supplier<Counters> counters, ScheduledExecutorService scheduler) {
+        this.phases = phases;
+        this.latency = latency;
+        this.counters = counters;
+
+        if (phases.getWarmupSec() > 0) {
+            beginTask = scheduler.schedule(this::begin, phases.getWarmupSec(), TimeUnit.SECONDS);
+        } else {
+            begin();
+            beginTask = null;
+        }
+
+        double endSec = 0;
+        if (phases.getMeasureSec() > 0) endSec = phases.getWarmupSec() + phases.getMeasureSec();
+        if (totalSec > 0 && phases.getCooldownSec() > 0) {
+            double cooldownStart = totalSec - phases.getCooldownSec();
+            endSec = endSec > 0 ? Math.min(endSec, cooldownStart) : cooldownStart;
+        }
+        endTask = endSec > 0
+                ? scheduler.schedule(this::end, (long) (endSec * 1000), TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    private synchronized void begin() {
+        if (atStart != null) return;
+        atStart = latency.copy();
+        countersAtStart = counters.get();
+        beginNanos = System.nanoTime();
+        beginMs = System.currentTimeMillis();
+        phase = Phase.MEASUREMENT;
+    }
+
+    private synchronized void end() {
+        if (measured != null) return;
+        if (atStart == null) {
+            // run terminé avant la fin de l'échauffement : fenêtre vide
+            reached = false;
+            begin();
+        }
+        measured = latency.copy().minus(atStart);
+        measuredCounters = counters.get().minus(countersAtStart);
+        endNanos = System.nanoTime();
+        endMs = System.currentTimeMillis();
+        phase = Phase.COOLDOWN;
+    }
+
+    /** Ferme la fenêtre si besoin et renvoie les histogrammes de la seule phase de mesure. */
+    public synchronized LatencyHistograms close() {
+        if (beginTask != null) beginTask.cancel(false);
+        if (endTask != null) endTask.cancel(false);
+        end();
+        return measured;
+    }
+
+    /**
+     * Remplace dans le résultat les agrégats du run complet par ceux de la fenêtre de mesure ;
+     * les valeurs du run complet restent disponibles sous "fullRun".
+     */
+    public Map<String, Object> applyTo(Map<String, Object> result) {
+        LatencyHistograms window = close();
+        Counters c = measuredCounters;
+        double measuredSec = (endNanos - beginNanos) / 1e9;
+
+        Map<String, Object> fullRun = new LinkedHashMap<>();
+        for (String key : new String[]{"successCount", "errorCount", "avgLatency", "latency"}) {
+            if (result.containsKey(key)) fullRun.put(key, result.get(key));
+        }
+        result.put("fullRun", fullRun);
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("reached", reached);
+        m.put("warmupSec", phases.getWarmupSec());
+        m.put("startOffsetSec", (beginNanos - startNanos) / 1e9);
+        m.put("measuredSec", measuredSec);
+        m.put("startedAtMs", beginMs);
+        m.put("endedAtMs", endMs);
+        m.put("cooldownSec", phases.getCooldownSec());
+        m.put("sessions", c.sessions());
+        m.put("successCount", c.success());
+        m.put("errorCount", c.errors());
+        m.put("droppedStarts", c.dropped());
+        m.put("lateStarts", c.late());
+        m.put("completedPerSec", measuredSec > 0 ? c.success() / measuredSec : 0);
+        result.put("measurement", m);
+
+        result.computeIfPresent("successCount", (k, v) -> c.success());
+        result.computeIfPresent("errorCount", (k, v) -> c.errors());
+        result.computeIfPresent("avgLatency", (k, v) -> c.success() > 0 ? c.latencySumMs() / c.success() : 0);
+        result.put("latency", window.snapshot());
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dégradation réseau simulée par CP (lien 4G instable) : latence + gigue, pertes,
+ * débit plafonné et coupures de socket. Chaque profil s'applique à un pourcentage
+ * de la flotte ; l'affectation est déterministe (hash du cpId) pour rester
+ * identique d'un run à l'autre.
+ */
+@Data
+public class NetworkImpairment {
+
+    public enum LossMode {
+        /** trame perdue : le CALL finit en timeout */
+        DROP,
+        /** perte rattrapée par TCP : retard de retransmission, bloque les trames suivantes */
+        RETRANSMIT
+    }
+
+    @Data
+    public static class Profile {
+        private String name = "impaired";
+        /** part de la flotte concernée (%) */
+        private double fleetPercent = 10;
+        /** latence ajoutée dans chaque sens (ms) */
+        private double latencyMs = 0;
+        private double jitterMs = 0;
+        private double lossPercent = 0;
+        private LossMode lossMode = LossMode.RETRANSMIT;
+        private double retransmitDelayMs = 200;
+        /** débit max par sens (kbit/s), 0 = illimité */
+        private double bandwidthKbps = 0;
+        /** intervalle moyen entre deux coupures de socket (s), 0 = jamais */
+        private double resetMeanSec = 0;
+    }
+
+    private List<Profile> profiles = new ArrayList<>();
+
+    /** Profil appliqué à ce CP, null s'il garde un lien parfait. */
+    public Profile profileFor(String cpId) {
+        // 0..9999, mélangé pour ne pas suivre l'ordre des numéros de CP
+        int bucket = Math.floorMod(mix(cpId.hashCode()), 10_000);
+        double cumulative = 0;
+        for (Profile p : profiles) {
+            cumulative += p.getFleetPercent() * 100;
+            if (bucket < cumulative) return p;
+        }
+        return null;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    public void validate() {
+        double total = 0;
+        for (Profile p : profiles) {
+            if (p.getFleetPercent() < 0 || p.getLatencyMs() < 0 || p.getJitterMs() < 0
+                    || p.getBandwidthKbps() < 0 || p.getResetMeanSec() < 0 || p.getRetransmitDelayMs() < 0) {
+                throw new IllegalArgumentException("Profile " + p.getName() + ": values must be >= 0");
+            }
+            if (p.getLossPercent() < 0 || p.getLossPercent() > 100) {
+                throw new IllegalArgumentException("Profile " + p.getName() + ": lossPercent must be in [0, 100]");
+            }
+            total += p.getFleetPercent();
+        }
+        if (total > 100) throw new IllegalArgumentException("fleetPercent sum exceeds 100: " + total);
+    }
+
+    /** {profiles: [...]} ou un profil unique à plat ({fleetPercent, latencyMs, ...}). */
+    public static NetworkImpairment fromRequest(Map<String, Object> req) {
+        NetworkImpairment c = new NetworkImpairment();
+        if (req.get("profiles") instanceof List<?> list) {
+            for (Object o : list) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> m = (Map<String, Object>) o;
+                c.profiles.add(profileFromRequest(m));
+            }
+        } else {
+            c.profiles.add(profileFromRequest(req));
+        }
+        c.validate();
+        return c;
+    }
+
+    private static Profile profileFromRequest(Map<String, Object> req) {
+        Profile p = new Profile();
+        if (req.get("name") != null) p.setName(String.valueOf(req.get("name")));
+        if (req.get("fleetPercent") != null) p.setFleetPercent(((Number) req.get("fleetPercent")).doubleValue());
+        if (req.get("latencyMs") != null) p.setLatencyMs(((Number) req.get("latencyMs")).doubleValue());
+        if (req.get("jitterMs") != null) p.setJitterMs(((Number) req.get("jitterMs")).doubleValue());
+        if (req.get("lossPercent") != null) p.setLossPercent(((Number) req.get("lossPercent")).doubleValue());
+        if (req.get("lossMode") != null) p.setLossMode(LossMode.valueOf(String.valueOf(req.get("lossMode")).toUpperCase()));
+        if (req.get("retransmitDelayMs") != null) p.setRetransmitDelayMs(((Number) req.get("retransmitDelayMs")).doubleValue());
+        if (req.get("bandwidthKbps") != null) p.setBandwidthKbps(((Number) req.get("bandwidthKbps")).doubleValue());
+        if (req.get("resetMeanSec") != null) p.setResetMeanSec(((Number) req.get("resetMeanSec")).doubleValue());
+        return p;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Test sur parc pré-connecté : poolSize CPs sont connectés et bootés d'abord,
+ * puis les transactions sont lancées sur ces connexions au débit de {@link #arrival}.
+ * Les latences mesurées n'incluent ni handshake WebSocket/TLS ni BootNotification.
+ */
+@Data
+public class PoolConfig {
+    private int poolSize = 100;
+    /** connexions simultanées pendant la phase de boot */
+    private int connectConcurrency = 20;
+    /** MeterValues envoyés entre StartTransaction et StopTransaction */
+    private int meterValuesPerTransaction = 1;
+    /** pause entre le dernier MeterValues et StopTransaction (0 = enchaînement immédiat) */
+    private long holdMs = 0;
+    private int heartbeatIntervalSec = 300;
+    /** débit de transactions (CONSTANT | POISSON | STEPPED), durée, maxInFlight */
+    private ArrivalProfile arrival = new ArrivalProfile();
+
+    public static PoolConfig fromRequest(Map<String, Object> req) {
+        PoolConfig c = new PoolConfig();
+        if (req.get("poolSize") != null) c.setPoolSize(((Number) req.get("poolSize")).intValue());
+        if (req.get("connectConcurrency") != null) c.setConnectConcurrency(((Number) req.get("connectConcurrency")).intValue());
+        if (req.get("meterValuesPerTransaction") != null) c.setMeterValuesPerTransaction(((Number) req.get("meterValuesPerTransaction")).intValue());
+        if (req.get("holdMs") != null) c.setHoldMs(((Number) req.get("holdMs")).longValue());
+        if (req.get("heartbeatIntervalSec") != null) c.setHeartbeatIntervalSec(((Number) req.get("heartbeatIntervalSec")).intValue());
+        c.setArrival(ArrivalProfile.fromRequest(req));
+        if (c.getPoolSize() < 1) throw new IllegalArgumentException("poolSize must be >= 1");
+        return c;
+    }
+}
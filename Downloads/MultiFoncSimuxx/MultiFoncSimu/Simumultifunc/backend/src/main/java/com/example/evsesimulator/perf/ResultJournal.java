@@ -0,0 +1,206 @@
+package com.example.evsesimulator.perf;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fichier NDJSON en ajout seul, une ligne par enregistrement.
+ * Les producteurs ne font qu'empiler (jamais d'E/S sur le thread appelant) ;
+ * un thread dédié écrit par lots et fait un fsync au plus toutes les fsyncIntervalMs.
+ * Un index clairsemé (position de chaque INDEX_STRIDE-ième ligne) permet la pagination sans tout relire ;
+ * il est écrit à la fermeture dans un fichier voisin (longs big-endian) pour les runs scellés.
+ */
+@Slf4j
+public class ResultJournal implements Closeable {
+
+    public static final int INDEX_STRIDE = 1024;
+    private static final int BATCH_SIZE = 4096;
+
+    private final Path file;
+    private final Path indexFile;
+    private final ObjectWriter writer;
+    private final long fsyncIntervalMs;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final List<Long> sparseIndex = new ArrayList<>();
+
+    public ResultJournal(Path file, Path indexFile, ObjectWriter writer, int queueCapacity, long fsyncIntervalMs) {
+        this.file = file;
+        this.indexFile = indexFile;
+        this.writer = writer;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::run, "result-journal-" + file.getParent().getFileName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Non bloquant : si le writer ne suit pas, l'enregistrement est compté en dropped. */
+    public void append(Object record) {
+        if (closed || !queue.offer(record)) dropped.increment();
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(BATCH_SIZE);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64 * 1024);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = ch.size();
+            long lastFsync = System.currentTimeMillis();
+            boolean dirty = false;
+
+            while (!closed || !queue.isEmpty()) {
+                Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+
+                    buf.reset();
+                    long n = written.get();
+                    for (Object rec : batch) {
+                        byte[] line;
+                        try {
+                            line = writer.writeValueAsBytes(rec);
+                        } catch (IOException e) {
+                            dropped.increment();
+                            log.warn("Unable to serialize result: {}", e.getMessage());
+                            continue;
+                        }
+                        if (n % INDEX_STRIDE == 0) {
+                            synchronized (sparseIndex) {
+                                sparseIndex.add(position + buf.size());
+                            }
+                        }
+                        buf.write(line);
+                        buf.write('\n');
+                        n++;
+                    }
+                    batch.clear();
+
+                    ByteBuffer bb = ByteBuffer.wrap(buf.toByteArray());
+                    while (bb.hasRemaining()) position += ch.write(bb);
+                    bytes.set(position);
+                    written.set(n);
+                    dirty = true;
+                }
+
+                long now = System.currentTimeMillis();
+                if (dirty && (now - lastFsync >= fsyncIntervalMs || closed)) {
+                    ch.force(false);
+                    fsyncs.incrementAndGet();
+                    lastFsync = now;
+                    dirty = false;
+                }
+            }
+            if (dirty) {
+                ch.force(false);
+                fsyncs.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Result journal {} failed", file, e);
+        }
+    }
+
+    /** Position (octets) de la ligne index*INDEX_STRIDE la plus proche en dessous de line, et son numéro. */
+    public long[] seekHint(long line) {
+        synchronized (sparseIndex) {
+            int slot = (int) Math.min(line / INDEX_STRIDE, sparseIndex.size() - 1L);
+            if (slot < 0) return new long[]{0, 0};
+            return new long[]{sparseIndex.get(slot), (long) slot * INDEX_STRIDE};
+        }
+    }
+
+    /** Même chose depuis l'index persisté d'un run scellé : une seule lecture de 8 octets. */
+    public static long[] seekHint(Path indexFile, long line) throws IOException {
+        if (!Files.exists(indexFile)) return new long[]{0, 0};
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long slot = Math.min(line / INDEX_STRIDE, ch.size() / Long.BYTES - 1);
+            if (slot < 0) return new long[]{0, 0};
+            ByteBuffer bb = ByteBuffer.allocate(Long.BYTES);
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, slot * Long.BYTES + bb.position()) < 0) return new long[]{0, 0};
+            }
+            return new long[]{bb.flip().getLong(), slot * INDEX_STRIDE};
+        }
+    }
+
+    private void writeIndex() {
+        ByteBuffer bb;
+        synchronized (sparseIndex) {
+            bb = ByteBuffer.allocate(sparseIndex.size() * Long.BYTES);
+            for (long pos : sparseIndex) bb.putLong(pos);
+        }
+        bb.flip();
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bb.hasRemaining()) ch.write(bb);
+        } catch (IOException e) {
+            log.warn("Unable to write result index {}: {}", indexFile, e.getMessage());
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getFsyncs() {
+        return fsyncs.get();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Vide la file, fsync final, arrêt du writer puis écriture de l'index. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) writeIndex();
+    }
+}
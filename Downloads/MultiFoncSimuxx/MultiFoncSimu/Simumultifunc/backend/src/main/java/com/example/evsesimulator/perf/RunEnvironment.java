@@ -0,0 +1,34 @@
+package com.example.evsesimulator.perf;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Contexte d'exécution d'un run, pour interpréter une comparaison entre runs. */
+public final class RunEnvironment {
+
+    private RunEnvironment() {}
+
+    public static Map<String, Object> capture() {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("javaVersion", System.getProperty("java.version"));
+        env.put("javaVendor", System.getProperty("java.vendor"));
+        env.put("vm", ManagementFactory.getRuntimeMXBean().getVmName());
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        env.put("arch", System.getProperty("os.arch"));
+        env.put("cpus", Runtime.getRuntime().availableProcessors());
+        env.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        env.put("gc", ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .map(gc -> gc.getName()).toList());
+        try {
+            env.put("host", InetAddress.getLocalHost().getHostName());
+        } catch (Exception e) {
+            env.put("host", "unknown");
+        }
+        Package pkg = RunEnvironment.class.getPackage();
+        env.put("simulatorVersion", pkg == null || pkg.getImplementationVersion() == null
+                ? "dev" : pkg.getImplementationVersion());
+        return env;
+    }
+}
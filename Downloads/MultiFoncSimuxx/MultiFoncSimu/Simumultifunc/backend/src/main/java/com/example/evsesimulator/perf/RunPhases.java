@@ -0,0 +1,34 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Découpage d'un run : échauffement (JIT du simulateur, caches froids du CSMS),
+ * fenêtre de mesure, refroidissement. Seule la fenêtre de mesure alimente le rapport
+ * final et l'archive utilisée pour les comparaisons de runs.
+ */
+@Data
+public class RunPhases {
+    private int warmupSec = 0;
+    /** durée de la mesure (0 = jusqu'au refroidissement ou à la fin du run) */
+    private int measureSec = 0;
+    /** fin de run non mesurée ; ignorée si la durée du run n'est pas connue d'avance */
+    private int cooldownSec = 0;
+
+    public boolean isSegmented() {
+        return warmupSec > 0 || measureSec > 0 || cooldownSec > 0;
+    }
+
+    public static RunPhases fromRequest(Map<String, Object> req) {
+        RunPhases p = new RunPhases();
+        if (req.get("warmupSec") != null) p.setWarmupSec(((Number) req.get("warmupSec")).intValue());
+        if (req.get("measureSec") != null) p.setMeasureSec(((Number) req.get("measureSec")).intValue());
+        if (req.get("cooldownSec") != null) p.setCooldownSec(((Number) req.get("cooldownSec")).intValue());
+        if (p.warmupSec < 0 || p.measureSec < 0 || p.cooldownSec < 0) {
+            throw new IllegalArgumentException("warmupSec, measureSec and cooldownSec must be >= 0");
+        }
+        return p;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.evsesimulator.perf;
+
+import org.HdrHistogram.Histogram;
+
+import java.lang.management.MemoryUsage;
+import java.util.*;
+
+/**
+ * Historique borné de snapshots périodiques d'un run (mémoire, GC, threads,
+ * percentiles de l'intervalle écoulé). Les percentiles sont calculés sur
+ * l'intervalle (cumul courant - cumul précédent) pour voir la dérive dans le temps.
+ */
+public class RunSnapshots {
+
+    private final Deque<Map<String, Object>> snapshots = new ArrayDeque<>();
+    private final Map<String, Histogram> previousRaw = new HashMap<>();
+    private final Map<String, Histogram> previousCorrected = new HashMap<>();
+    private int maxSnapshots = 2000;
+    private long startMs = System.currentTimeMillis();
+    private long lastGcCount;
+    private long lastGcTimeMs;
+
+    public synchronized void reset(int maxSnapshots) {
+        this.maxSnapshots = Math.max(1, maxSnapshots);
+        snapshots.clear();
+        previousRaw.clear();
+        previousCorrected.clear();
+        startMs = System.currentTimeMillis();
+        lastGcCount = JvmStats.gcCount();
+        lastGcTimeMs = JvmStats.gcTimeMs();
+    }
+
+    /**
+     * @param extra compteurs propres au run (CPs connectés, cycles, erreurs...)
+     */
+    public synchronized Map<String, Object> capture(LatencyHistograms latency, Map<String, Object> extra) {
+        long now = System.currentTimeMillis();
+        Map<String, Object> snap = new LinkedHashMap<>();
+        snap.put("timestamp", now);
+        snap.put("elapsedSec", (now - startMs) / 1000);
+
+        MemoryUsage heap = JvmStats.heap();
+        long gcCount = JvmStats.gcCount();
+        long gcTime = JvmStats.gcTimeMs();
+        snap.put("heapUsedMb", heap.getUsed() / (1024 * 1024));
+        snap.put("heapCommittedMb", heap.getCommitted() / (1024 * 1024));
+        snap.put("gcCount", gcCount - lastGcCount);
+        snap.put("gcTimeMs", gcTime - lastGcTimeMs);
+        snap.put("liveThreads", JvmStats.liveThreads());
+        lastGcCount = gcCount;
+        lastGcTimeMs = gcTime;
+
+        if (extra != null) snap.putAll(extra);
+
+        Map<String, Object> lat = new TreeMap<>();
+        for (String action : latency.actions()) {
+            Histogram raw = interval(latency.raw(action), previousRaw, action);
+            Histogram corrected = interval(latency.corrected(action), previousCorrected, action);
+            if (raw == null || raw.getTotalCount() == 0) continue;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", raw.getTotalCount());
+            m.put("raw", LatencyHistograms.percentiles(raw));
+            m.put("corrected", corrected == null ? Map.of() : LatencyHistograms.percentiles(corrected));
+            lat.put(action, m);
+        }
+        snap.put("latency", lat);
+
+        snapshots.addLast(snap);
+        while (snapshots.size() > maxSnapshots) snapshots.pollFirst();
+        return snap;
+    }
+
+    public synchronized List<Map<String, Object>> list(long sinceMs) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Map<String, Object> s : snapshots) {
+            if (((Number) s.get("timestamp")).longValue() > sinceMs) out.add(s);
+        }
+        return out;
+    }
+
+    public synchronized Map<String, Object> first() {
+        return snapshots.peekFirst();
+    }
+
+    public synchronized Map<String, Object> last() {
+        return snapshots.peekLast();
+    }
+
+    private static Histogram interval(Histogram cumulative, Map<String, Histogram> previous, String action) {
+        if (cumulative == null) return null;
+        Histogram current = cumulative.copy();
+        Histogram prev = previous.put(action, current);
+        if (prev == null) return current;
+        Histogram delta = current.copy();
+        try {
+            delta.subtract(prev);
+        } catch (IllegalArgumentException e) {
+            // histogramme remis à zéro entre deux snapshots
+            return current;
+        }
+        return delta;
+    }
+}
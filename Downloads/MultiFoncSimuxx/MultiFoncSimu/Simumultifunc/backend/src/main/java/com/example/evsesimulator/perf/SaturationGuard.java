@@ -0,0 +1,135 @@
+package com.example.evsesimulator.perf;
+
+import java.util.*;
+
+/**
+ * Garde d'auto-saturation : quand le simulateur lui-même sature (CPU, GC, files d'envoi,
+ * retard du scheduler), la latence mesurée ne reflète plus le CSMS. La garde est évaluée
+ * chaque seconde ; elle passe saturée dès qu'un seuil est franchi et ne se rétablit
+ * qu'après {@code recoverSec} secondes saines consécutives. Les intervalles saturés sont
+ * conservés (bornés) pour marquer les fenêtres de résultats non fiables.
+ */
+public class SaturationGuard {
+
+    private static final int MAX_INTERVALS = 512;
+
+    /** Seuils ; une valeur <= 0 désactive le critère. */
+    public record Thresholds(double maxCpuPercent, double maxGcOverheadPercent, int maxSendQueue,
+                             double maxSchedulerLagMs, int recoverSec) {}
+
+    /** Santé du simulateur sur la dernière seconde. */
+    public record Sample(long atMs, double cpuPercent, double gcOverheadPercent,
+                         int ocppSendQueue, int uiSendQueue, double schedulerLagMs) {}
+
+    private record Interval(long startMs, long endMs, Set<String> reasons) {}
+
+    private final Thresholds thresholds;
+    private final Deque<Interval> intervals = new ArrayDeque<>();
+
+    private volatile boolean saturated;
+    private volatile Sample last;
+    private volatile List<String> reasons = List.of();
+    private long openSinceMs;
+    private final Set<String> openReasons = new TreeSet<>();
+    private int healthyStreak;
+
+    public SaturationGuard(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    public List<String> getReasons() {
+        return reasons;
+    }
+
+    /** Critères franchis par l'échantillon (vide si sain). */
+    public List<String> breaches(Sample s) {
+        List<String> out = new ArrayList<>(4);
+        if (thresholds.maxCpuPercent() > 0 && s.cpuPercent() > thresholds.maxCpuPercent()) out.add("cpu");
+        if (thresholds.maxGcOverheadPercent() > 0 && s.gcOverheadPercent() > thresholds.maxGcOverheadPercent()) out.add("gc");
+        if (thresholds.maxSendQueue() > 0 && s.ocppSendQueue() + s.uiSendQueue() > thresholds.maxSendQueue()) out.add("sendQueue");
+        if (thresholds.maxSchedulerLagMs() > 0 && s.schedulerLagMs() > thresholds.maxSchedulerLagMs()) out.add("schedulerLag");
+        return out;
+    }
+
+    /** @return vrai si l'état saturé/sain vient de changer */
+    public synchronized boolean update(Sample s) {
+        last = s;
+        List<String> breached = breaches(s);
+        boolean was = saturated;
+        if (!breached.isEmpty()) {
+            healthyStreak = 0;
+            if (!saturated) {
+                openSinceMs = s.atMs() - 1000; // l'échantillon couvre la seconde écoulée
+                openReasons.clear();
+                saturated = true;
+            }
+            openReasons.addAll(breached);
+            reasons = List.copyOf(breached);
+        } else if (saturated && ++healthyStreak >= Math.max(1, thresholds.recoverSec())) {
+            addInterval(new Interval(openSinceMs, s.atMs() - healthyStreak * 1000L, Set.copyOf(openReasons)));
+            saturated = false;
+            reasons = List.of();
+        }
+        return was != saturated;
+    }
+
+    private void addInterval(Interval i) {
+        intervals.addLast(i);
+        while (intervals.size() > MAX_INTERVALS) intervals.pollFirst();
+    }
+
+    /** Intervalles saturés (clos et en cours) qui recoupent [fromMs, toMs]. */
+    private List<Interval> overlapping(long fromMs, long toMs) {
+        List<Interval> out = new ArrayList<>();
+        for (Interval i : intervals) {
+            if (i.endMs() > fromMs && i.startMs() < toMs) out.add(i);
+        }
+        if (saturated && openSinceMs < toMs) out.add(new Interval(openSinceMs, toMs, Set.copyOf(openReasons)));
+        return out;
+    }
+
+    /** Vrai si le simulateur a été saturé pendant au moins une partie de [fromMs, toMs]. */
+    public synchronized boolean overlaps(long fromMs, long toMs) {
+        return !overlapping(fromMs, toMs).isEmpty();
+    }
+
+    /** Fenêtres non fiables d'un intervalle de résultats, bornées à cet intervalle. */
+    public synchronized Map<String, Object> report(long fromMs, long toMs) {
+        List<Map<String, Object>> windows = new ArrayList<>();
+        long saturatedMs = 0;
+        for (Interval i : overlapping(fromMs, toMs)) {
+            long start = Math.max(fromMs, i.startMs());
+            long end = Math.min(toMs, i.endMs());
+            saturatedMs += end - start;
+            Map<String, Object> w = new LinkedHashMap<>();
+            w.put("startOffsetMs", start - fromMs);
+            w.put("endOffsetMs", end - fromMs);
+            w.put("durationMs", end - start);
+            w.put("reasons", new TreeSet<>(i.reasons()));
+            windows.add(w);
+        }
+        long span = Math.max(1, toMs - fromMs);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("reliable", windows.isEmpty());
+        m.put("saturatedMs", saturatedMs);
+        m.put("saturatedRatio", Math.min(1.0, (double) saturatedMs / span));
+        m.put("unreliableWindows", windows);
+        return m;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("saturated", saturated);
+        m.put("reasons", reasons);
+        m.put("thresholds", thresholds);
+        m.put("lastSample", last);
+        synchronized (this) {
+            m.put("recordedIntervals", intervals.size());
+        }
+        return m;
+    }
+}
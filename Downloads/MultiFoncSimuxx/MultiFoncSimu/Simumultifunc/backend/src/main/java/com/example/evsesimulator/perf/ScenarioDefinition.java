@@ -0,0 +1,43 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scénario de perf déclaratif (data/perf-scenarios/*.json) : flux pondérés,
+ * chacun étant une suite d'étapes OCPP avec temps de réflexion.
+ * Compilé une fois en {@link ScenarioPlan} partagé par tous les utilisateurs virtuels.
+ */
+@Data
+public class ScenarioDefinition {
+
+    private String name;
+    private String description;
+    private List<Flow> flows = new ArrayList<>();
+
+    @Data
+    public static class Flow {
+        private String name;
+        private double weight = 1;
+        /** badge utilisé, "{n}" remplacé par le numéro de l'utilisateur virtuel */
+        private String tagId = "TAG-{n}";
+        private List<Step> steps = new ArrayList<>();
+    }
+
+    @Data
+    public static class Step {
+        /**
+         * Authorize, StartTransaction, StopTransaction, MeterValues, Wait,
+         * ou toute autre action OCPP envoyée telle quelle avec payload.
+         */
+        private String action;
+        private Object payload;
+        private int repeat = 1;
+        /** statut idTagInfo attendu (Authorize / StartTransaction), null = non vérifié */
+        private String expect;
+        /** pause après l'étape (après chaque répétition) */
+        private ThinkTime think;
+    }
+}
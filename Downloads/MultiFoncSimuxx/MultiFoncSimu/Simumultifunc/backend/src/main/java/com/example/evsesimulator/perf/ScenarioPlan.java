@@ -0,0 +1,106 @@
+package com.example.evsesimulator.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Forme exécutable et immuable d'un {@link ScenarioDefinition} : tableaux de flux
+ * et d'étapes, poids cumulés pour le tirage. Partagée sans verrou entre les threads.
+ */
+public final class ScenarioPlan {
+
+    public enum StepKind { AUTHORIZE, START_TRANSACTION, STOP_TRANSACTION, METER_VALUES, WAIT, SEND }
+
+    public record Step(StepKind kind, String action, Object payload, int repeat, String expect, ThinkTime think) {}
+
+    public record Flow(String name, double weight, String tagPattern, Step[] steps) {
+        public String tagId(int n) {
+            return tagPattern.replace("{n}", String.format("%06d", n));
+        }
+    }
+
+    private final String name;
+    private final String description;
+    private final Flow[] flows;
+    private final double[] cumulativeWeights;
+    private final double totalWeight;
+
+    private ScenarioPlan(String name, String description, Flow[] flows) {
+        this.name = name;
+        this.description = description;
+        this.flows = flows;
+        this.cumulativeWeights = new double[flows.length];
+        double sum = 0;
+        for (int i = 0; i < flows.length; i++) {
+            sum += flows[i].weight();
+            cumulativeWeights[i] = sum;
+        }
+        this.totalWeight = sum;
+    }
+
+    public static ScenarioPlan compile(ScenarioDefinition def) {
+        if (def.getName() == null || def.getName().isBlank()) {
+            throw new IllegalArgumentException("Scenario name is required");
+        }
+        if (def.getFlows() == null || def.getFlows().isEmpty()) {
+            throw new IllegalArgumentException(def.getName() + ": at least one flow is required");
+        }
+
+        List<Flow> flows = new ArrayList<>();
+        for (ScenarioDefinition.Flow f : def.getFlows()) {
+            String where = def.getName() + "/" + f.getName();
+            if (f.getWeight() <= 0) throw new IllegalArgumentException(where + ": weight must be > 0");
+            if (f.getSteps() == null || f.getSteps().isEmpty()) {
+                throw new IllegalArgumentException(where + ": at least one step is required");
+            }
+
+            List<Step> steps = new ArrayList<>();
+            for (ScenarioDefinition.Step s : f.getSteps()) {
+                if (s.getAction() == null || s.getAction().isBlank()) {
+                    throw new IllegalArgumentException(where + ": step action is required");
+                }
+                ThinkTime think = s.getThink() == null ? ThinkTime.NONE : s.getThink();
+                think.validate(where + "/" + s.getAction());
+                steps.add(new Step(kindOf(s.getAction()), s.getAction(), s.getPayload(),
+                        Math.max(1, s.getRepeat()), s.getExpect(), think));
+            }
+            String tag = f.getTagId() == null ? "TAG-{n}" : f.getTagId();
+            flows.add(new Flow(f.getName(), f.getWeight(), tag, steps.toArray(new Step[0])));
+        }
+        return new ScenarioPlan(def.getName(), def.getDescription(), flows.toArray(new Flow[0]));
+    }
+
+    /** Tirage pondéré d'un flux. */
+    public Flow pick() {
+        double r = ThreadLocalRandom.current().nextDouble() * totalWeight;
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i]) return flows[i];
+        }
+        return flows[flows.length - 1];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<Flow> getFlows() {
+        return List.of(flows);
+    }
+
+    private static StepKind kindOf(String action) {
+        return switch (action.toLowerCase(Locale.ROOT)) {
+            case "authorize" -> StepKind.AUTHORIZE;
+            case "starttransaction" -> StepKind.START_TRANSACTION;
+            case "stoptransaction" -> StepKind.STOP_TRANSACTION;
+            case "metervalues" -> StepKind.METER_VALUES;
+            case "wait" -> StepKind.WAIT;
+            default -> StepKind.SEND;
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.evsesimulator.perf;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteur à fenêtre glissante, résolution 1 seconde, sans verrou.
+ * Anneau de seaux horodatés : un seau périmé est remplacé par CAS
+ * au premier ajout de la nouvelle seconde (rotation paresseuse).
+ */
+public class SlidingWindowCounter {
+
+    private static final class Bucket {
+        final long epochSec;
+        final LongAdder sum = new LongAdder();
+        Bucket(long epochSec) { this.epochSec = epochSec; }
+    }
+
+    private final int size;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /** @param maxWindowSec plus grande fenêtre interrogeable */
+    public SlidingWindowCounter(int maxWindowSec) {
+        // +2 : seconde courante (partielle) et marge de rotation
+        this.size = maxWindowSec + 2;
+        this.buckets = new AtomicReferenceArray<>(size);
+    }
+
+    public void add(long value) {
+        add(System.currentTimeMillis() / 1000, value);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    void add(long epochSec, long value) {
+        int idx = (int) (epochSec % size);
+        Bucket b = buckets.get(idx);
+        while (b == null || b.epochSec != epochSec) {
+            if (b != null && b.epochSec > epochSec) return; // trop ancien, ignoré
+            Bucket fresh = new Bucket(epochSec);
+            if (buckets.compareAndSet(idx, b, fresh)) {
+                b = fresh;
+                break;
+            }
+            b = buckets.get(idx);
+        }
+        b.sum.add(value);
+    }
+
+    /** Somme sur les {@code windowSec} dernières secondes complètes. */
+    public long sum(int windowSec) {
+        return sum(System.currentTimeMillis() / 1000, windowSec);
+    }
+
+    long sum(long nowSec, int windowSec) {
+        int w = Math.min(windowSec, size - 2);
+        long total = 0;
+        for (long sec = nowSec - w; sec < nowSec; sec++) {
+            Bucket b = buckets.get((int) (sec % size));
+            if (b != null && b.epochSec == sec) total += b.sum.sum();
+        }
+        return total;
+    }
+
+    /** Débit moyen par seconde sur la fenêtre. */
+    public double rate(int windowSec) {
+        return windowSec <= 0 ? 0 : (double) sum(windowSec) / windowSec;
+    }
+
+    public void reset() {
+        for (int i = 0; i < size; i++) buckets.set(i, null);
+    }
+}
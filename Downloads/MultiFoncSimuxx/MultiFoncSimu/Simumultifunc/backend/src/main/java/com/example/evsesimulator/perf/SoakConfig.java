@@ -0,0 +1,37 @@
+package com.example.evsesimulator.perf;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/** Paramètres d'un test d'endurance (soak) : N CPs connectés pendant des heures. */
+@Data
+public class SoakConfig {
+    private int chargePoints = 100;
+    private int durationMinutes = 60;
+    private int heartbeatIntervalSec = 60;
+    private int meterValueIntervalSec = 60;
+    /** durée d'une transaction (StartTransaction → StopTransaction) */
+    private int chargeDurationSec = 300;
+    /** pause entre deux transactions d'un même CP */
+    private int idleSec = 60;
+    /** connexions initiales simultanées */
+    private int connectConcurrency = 20;
+    private int snapshotIntervalSec = 10;
+    /** taille max de l'historique de snapshots (les plus anciens sont écartés) */
+    private int maxSnapshots = 2000;
+
+    public static SoakConfig fromRequest(Map<String, Object> req) {
+        SoakConfig c = new SoakConfig();
+        if (req.get("chargePoints") != null) c.setChargePoints(((Number) req.get("chargePoints")).intValue());
+        if (req.get("durationMinutes") != null) c.setDurationMinutes(((Number) req.get("durationMinutes")).intValue());
+        if (req.get("heartbeatIntervalSec") != null) c.setHeartbeatIntervalSec(((Number) req.get("heartbeatIntervalSec")).intValue());
+        if (req.get("meterValueIntervalSec") != null) c.setMeterValueIntervalSec(((Number) req.get("meterValueIntervalSec")).intValue());
+        if (req.get("chargeDurationSec") != null) c.setChargeDurationSec(((Number) req.get("chargeDurationSec")).intValue());
+        if (req.get("idleSec") != null) c.setIdleSec(((Number) req.get("idleSec")).intValue());
+        if (req.get("connectConcurrency") != null) c.setConnectConcurrency(((Number) req.get("connectConcurrency")).intValue());
+        if (req.get("snapshotIntervalSec") != null) c.setSnapshotIntervalSec(((Number) req.get("snapshotIntervalSec")).intValue());
+        if (req.get("maxSnapshots") != null) c.setMaxSnapshots(((Number) req.get("maxSnapshots")).intValue());
+        return c;
+    }
+}
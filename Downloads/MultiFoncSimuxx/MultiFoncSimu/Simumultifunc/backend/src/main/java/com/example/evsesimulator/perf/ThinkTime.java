@@ -0,0 +1,44 @@
+package com.example.evsesimulator.perf;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Temps de réflexion d'une étape de scénario (ms), immuable (partagé par les plans compilés).
+ * CONSTANT : value ; UNIFORM : [min, max] ; EXPONENTIAL : mean ;
+ * NORMAL : mean / stdDev. Le résultat est toujours borné à [min, max] si définis.
+ */
+public record ThinkTime(Distribution dist, long value, long min, long max, double mean, double stdDev) {
+
+    public enum Distribution { CONSTANT, UNIFORM, EXPONENTIAL, NORMAL }
+
+    public static final ThinkTime NONE = new ThinkTime(Distribution.CONSTANT, 0, 0, 0, 0, 0);
+
+    public ThinkTime {
+        if (dist == null) dist = Distribution.CONSTANT;
+    }
+
+    public long sampleMillis() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        double ms = switch (dist) {
+            case CONSTANT -> value;
+            case UNIFORM -> max > min ? min + rnd.nextDouble() * (max - min) : min;
+            case EXPONENTIAL -> -Math.log(1.0 - rnd.nextDouble()) * mean;
+            case NORMAL -> mean + rnd.nextGaussian() * stdDev;
+        };
+        if (dist != Distribution.UNIFORM) {
+            if (min > 0) ms = Math.max(ms, min);
+            if (max > 0) ms = Math.min(ms, max);
+        }
+        return Math.max(0, Math.round(ms));
+    }
+
+    /** Contrôle à la compilation du scénario. */
+    void validate(String where) {
+        if (min < 0 || max < 0 || value < 0 || mean < 0 || stdDev < 0) {
+            throw new IllegalArgumentException(where + ": negative think time");
+        }
+        if (dist == Distribution.UNIFORM && max < min) {
+            throw new IllegalArgumentException(where + ": think.max < think.min");
+        }
+    }
+}
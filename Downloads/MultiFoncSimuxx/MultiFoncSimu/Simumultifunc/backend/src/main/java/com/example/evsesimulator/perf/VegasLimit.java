@@ -0,0 +1,51 @@
+package com.example.evsesimulator.perf;
+
+/**
+ * Type TCP Vegas : estime la file d'attente côté CSMS à partir du RTT sans charge
+ * (plus petite médiane observée) et du RTT courant,
+ * queue = limit × (1 - rttNoLoad / rtt). En dessous de alpha on augmente,
+ * au-dessus de beta on réduit ; alpha et beta croissent en log10(limit).
+ */
+public class VegasLimit implements ConcurrencyLimit {
+
+    private final LimitConfig config;
+    private int limit;
+    private double rttNoLoad = 0;
+
+    public VegasLimit(LimitConfig config) {
+        this.config = config;
+        this.limit = config.clamp(config.getInitialLimit());
+    }
+
+    @Override
+    public String name() {
+        return "VEGAS";
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int update(Sample s) {
+        if (config.overloaded(s)) {
+            limit = config.backoff(limit);
+            return limit;
+        }
+        if (s.rttP50Ms() <= 0) return limit;
+        if (rttNoLoad <= 0 || s.rttP50Ms() < rttNoLoad) rttNoLoad = s.rttP50Ms();
+
+        double log = Math.max(1, Math.log10(limit));
+        double alpha = 3 * log;
+        double beta = 6 * log;
+        double queue = limit * (1 - rttNoLoad / s.rttP50Ms());
+
+        if (queue < alpha && s.inFlight() * 2 >= limit) {
+            limit = config.clamp(limit + log);
+        } else if (queue > beta) {
+            limit = config.clamp(limit - log);
+        }
+        return limit;
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.evsesimulator.repository;
 
 import com.example.evsesimulator.model.*;
+import com.example.evsesimulator.service.SerializationRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -18,11 +21,19 @@ public class JsonFileRepository {
 
     private static final Logger log = LoggerFactory.getLogger(JsonFileRepository.class);
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper;
+    private final ObjectReader sessionsReader;
+    private final ObjectWriter sessionsWriter;
     private final Path dataDir = Paths.get("data");
     private final Path sessionsFile = dataDir.resolve("sessions.json");
     private final Path profilesFile = dataDir.resolve("profiles.json");
 
+    public JsonFileRepository(SerializationRegistry serialization) {
+        this.objectMapper = serialization.mapper();
+        this.sessionsReader = serialization.sessionsReader();
+        this.sessionsWriter = serialization.sessionsWriter();
+    }
+
     @PostConstruct
     public void init() {
         try {
@@ -47,11 +58,22 @@ public class JsonFileRepository {
     }
 
     public List<Session> loadSessions() {
-        return loadAll(sessionsFile, Session.class);
+        try {
+            if (Files.exists(sessionsFile)) {
+                return sessionsReader.readValue(Files.readString(sessionsFile));
+            }
+        } catch (IOException e) {
+            log.error("Failed to load from {}", sessionsFile, e);
+        }
+        return new ArrayList<>();
     }
 
     public void saveSessions(List<Session> sessions) {
-        saveAll(sessionsFile, sessions);
+        try {
+            Files.writeString(sessionsFile, sessionsWriter.writeValueAsString(sessions));
+        } catch (IOException e) {
+            log.error("Failed to save to {}", sessionsFile, e);
+        }
     }
 
     public List<VehicleProfile> loadProfiles() {
@@ -0,0 +1,131 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.NetworkImpairment;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lien dégradé d'une connexion OCPP : une file par sens, livrée dans l'ordre d'émission
+ * (comme TCP), avec latence + gigue, plafond de débit et pertes (abandon ou retransmission).
+ */
+final class ImpairedLink {
+
+    /** Compteurs partagés par toutes les connexions dégradées. */
+    static final class Stats {
+        final LongAdder delayed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder retransmitted = new LongAdder();
+        final LongAdder resets = new LongAdder();
+        final LongAdder deliveryErrors = new LongAdder();
+        final LongAdder addedDelayMicros = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            long n = delayed.sum();
+            m.put("framesDelayed", n);
+            m.put("framesDropped", dropped.sum());
+            m.put("framesRetransmitted", retransmitted.sum());
+            m.put("socketResets", resets.sum());
+            m.put("deliveryErrors", deliveryErrors.sum());
+            m.put("avgAddedDelayMs", n == 0 ? 0.0 : addedDelayMicros.sum() / 1000.0 / n);
+            return m;
+        }
+
+        void reset() {
+            delayed.reset();
+            dropped.reset();
+            retransmitted.reset();
+            resets.reset();
+            deliveryErrors.reset();
+            addedDelayMicros.reset();
+        }
+    }
+
+    private record Item(long deliverAtNanos, Runnable delivery) {}
+
+    private final class Lane {
+        private final ArrayDeque<Item> queue = new ArrayDeque<>();
+        private long lastDeliverAt = Long.MIN_VALUE;
+        private long nextFree = Long.MIN_VALUE;
+
+        void transmit(NetworkImpairment.Profile p, int bytes, Runnable delivery) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            double delayMs = p.getLatencyMs();
+            if (p.getJitterMs() > 0) delayMs += (rnd.nextDouble() * 2 - 1) * p.getJitterMs();
+            if (p.getLossPercent() > 0 && rnd.nextDouble() * 100 < p.getLossPercent()) {
+                if (p.getLossMode() == NetworkImpairment.LossMode.DROP) {
+                    stats.dropped.increment();
+                    return;
+                }
+                stats.retransmitted.increment();
+                delayMs += p.getRetransmitDelayMs();
+            }
+            long now = System.nanoTime();
+            long deliverAt;
+            boolean inline;
+            synchronized (this) {
+                // fin de sérialisation sur le lien : la trame attend que les précédentes soient passées
+                long transmitted = now;
+                if (p.getBandwidthKbps() > 0) {
+                    nextFree = Math.max(now, nextFree) + (long) (bytes * 8_000_000.0 / p.getBandwidthKbps());
+                    transmitted = nextFree;
+                }
+                // jamais de dépassement : l'ordre d'émission est conservé
+                deliverAt = Math.max(transmitted + (long) (Math.max(0, delayMs) * 1_000_000), lastDeliverAt);
+                lastDeliverAt = deliverAt;
+                inline = deliverAt <= now && queue.isEmpty();
+                if (inline) {
+                    run(delivery);
+                } else {
+                    queue.add(new Item(deliverAt, delivery));
+                }
+            }
+            if (inline) return;
+            stats.delayed.increment();
+            stats.addedDelayMicros.add((deliverAt - now) / 1000);
+            timer.schedule(this::drain, deliverAt - now, TimeUnit.NANOSECONDS);
+        }
+
+        synchronized void drain() {
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && queue.peek().deliverAtNanos() <= now) {
+                run(queue.poll().delivery());
+            }
+        }
+
+        private void run(Runnable delivery) {
+            try {
+                delivery.run();
+            } catch (Exception e) {
+                // socket fermée entre l'émission et la livraison
+                stats.deliveryErrors.increment();
+            }
+        }
+    }
+
+    private final ScheduledExecutorService timer;
+    private final Stats stats;
+    private final Lane upstream = new Lane();
+    private final Lane downstream = new Lane();
+
+    ImpairedLink(ScheduledExecutorService timer, Stats stats) {
+        this.timer = timer;
+        this.stats = stats;
+    }
+
+    /** CP → CSMS */
+    void send(NetworkImpairment.Profile p, int bytes, Runnable delivery) {
+        upstream.transmit(p, bytes, delivery);
+    }
+
+    /** CSMS → CP */
+    void receive(NetworkImpairment.Profile p, int bytes, Runnable delivery) {
+        downstream.transmit(p, bytes, delivery);
+    }
+}
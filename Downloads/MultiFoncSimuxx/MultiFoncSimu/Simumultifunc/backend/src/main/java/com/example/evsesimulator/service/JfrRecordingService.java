@@ -0,0 +1,154 @@
+package com.example.evsesimulator.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Enregistrements JFR pilotés par REST, à lancer autour d'un run de perf.
+ * Le fichier .jfr est écrit dans le dossier du run en cours (à côté de results.ndjson)
+ * tant que son journal est ouvert, sinon dans data/perf/jfr.
+ */
+@Slf4j
+@Service
+public class JfrRecordingService {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final PerfResultStore resultStore;
+    private Recording active;
+    private Path activeDestination;
+
+    public JfrRecordingService(PerfResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    /**
+     * @param settings   "default" (surcoût ~1%) ou "profile" (échantillonnage plus fin)
+     * @param durationSec 0 = jusqu'à stop ; sinon arrêt et écriture automatiques
+     */
+    public synchronized Map<String, Object> start(String name, String settings, long durationSec,
+                                                  long maxAgeSec, long maxSizeMb) throws IOException, ParseException {
+        if (active != null && active.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("JFR recording already running: " + active.getName());
+        }
+        if (active != null) {
+            // enregistrement borné déjà arrêté de lui-même : fichier écrit, on libère ses ressources
+            active.close();
+            active = null;
+        }
+        String label = (name == null || name.isBlank()) ? "evse-simulator" : name.replaceAll("[^A-Za-z0-9._-]", "_");
+        Recording recording = new Recording(Configuration.getConfiguration(
+                "profile".equalsIgnoreCase(settings) ? "profile" : "default"));
+        recording.setName(label);
+        recording.setToDisk(true);
+        if (maxAgeSec > 0) recording.setMaxAge(Duration.ofSeconds(maxAgeSec));
+        if (maxSizeMb > 0) recording.setMaxSize(maxSizeMb * 1024 * 1024);
+
+        activeDestination = destinationDir().resolve(label + "-" + LocalDateTime.now().format(STAMP) + ".jfr");
+        if (durationSec > 0) {
+            recording.setDuration(Duration.ofSeconds(durationSec));
+            recording.setDestination(activeDestination);
+        }
+        recording.start();
+        active = recording;
+        log.info("JFR recording {} started -> {}", label, activeDestination);
+        return status();
+    }
+
+    public synchronized Map<String, Object> stop() throws IOException {
+        if (active == null) throw new IllegalStateException("No JFR recording");
+        Recording recording = active;
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            if (recording.getDestination() == null) recording.dump(activeDestination);
+        }
+        Map<String, Object> out = status();
+        recording.close();
+        active = null;
+        log.info("JFR recording {} written to {}", recording.getName(), activeDestination);
+        return out;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        if (active == null) {
+            m.put("state", "IDLE");
+            return m;
+        }
+        m.put("name", active.getName());
+        m.put("state", active.getState().name());
+        m.put("startTime", active.getStartTime());
+        m.put("duration", active.getDuration() == null ? null : active.getDuration().toSeconds());
+        m.put("file", activeDestination.getFileName().toString());
+        m.put("path", activeDestination.toString());
+        if (Files.exists(activeDestination)) {
+            try {
+                m.put("sizeBytes", Files.size(activeDestination));
+            } catch (IOException ignored) {
+                // fichier en cours d'écriture par la JVM
+            }
+        }
+        return m;
+    }
+
+    /** Fichiers .jfr disponibles (dossiers de runs + data/perf/jfr). */
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        try (Stream<Path> files = Files.find(resultStore.getBaseDir(), 2,
+                (p, attrs) -> attrs.isRegularFile() && p.toString().endsWith(".jfr"))) {
+            files.sorted(Comparator.comparing(Path::toString)).forEach(p -> {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("file", p.getFileName().toString());
+                m.put("runId", p.getParent().getFileName().toString());
+                try {
+                    m.put("sizeBytes", Files.size(p));
+                } catch (IOException e) {
+                    m.put("sizeBytes", -1);
+                }
+                out.add(m);
+            });
+        } catch (IOException e) {
+            log.error("Unable to list JFR files", e);
+        }
+        return out;
+    }
+
+    /** Résout un fichier .jfr listé, sans sortir de data/perf. */
+    public Path file(String runId, String fileName) {
+        Path base = resultStore.getBaseDir();
+        Path p = base.resolve(runId).resolve(fileName).normalize();
+        if (!p.startsWith(base) || !fileName.endsWith(".jfr") || !Files.isRegularFile(p)) {
+            throw new IllegalArgumentException("Unknown JFR file: " + runId + "/" + fileName);
+        }
+        return p;
+    }
+
+    private Path destinationDir() throws IOException {
+        String runId = resultStore.getCurrentRunId();
+        if (resultStore.isOpen(runId)) return resultStore.runDir(runId);
+        return Files.createDirectories(resultStore.getBaseDir().resolve("jfr"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        try {
+            if (active != null) stop();
+        } catch (Exception e) {
+            log.warn("Unable to write JFR recording on shutdown: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.model.OCPPMessage;
+import com.example.evsesimulator.model.PerformanceMetrics;
+import com.example.evsesimulator.model.Session;
+import com.example.evsesimulator.model.TNREvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micro-benchmarks embarqués (pas de module JMH dans ce projet) :
+ * mesurent sur la JVM du simulateur le coût des chemins chauds.
+ * Chaque mesure fait un échauffement puis N itérations chronométrées.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MicroBenchmarkService {
+
+    private final SerializationRegistry serialization;
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+
+    /** Octets par mise à jour et coût de sérialisation par encodage du flux /ws. */
+    public Map<String, Object> encodings(int iterations) {
+        Map<String, Object> samples = sampleUpdates();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("iterations", iterations);
+
+        for (WireEncoding enc : WireEncoding.values()) {
+            Map<String, Object> perType = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> sample : samples.entrySet()) {
+                SerializationRegistry.Envelope<Object> envelope = new SerializationRegistry.Envelope<>(
+                        sample.getKey(), sample.getValue(), System.currentTimeMillis());
+                ObjectWriter writer = serialization.envelopeWriter(enc, sample.getValue().getClass());
+                try {
+                    int bytes = writer.writeValueAsBytes(envelope).length;
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++) writer.writeValueAsBytes(envelope);
+                    long t0 = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) writer.writeValueAsBytes(envelope);
+                    long nanos = System.nanoTime() - t0;
+                    perType.put(sample.getKey(), Map.of(
+                            "bytesPerUpdate", bytes,
+                            "nsPerOp", iterations == 0 ? 0 : nanos / iterations
+                    ));
+                } catch (Exception e) {
+                    perType.put(sample.getKey(), Map.of("error", String.valueOf(e.getMessage())));
+                }
+            }
+            out.put(enc.name(), perType);
+        }
+        return out;
+    }
+
+    /**
+     * Gain par type chaud (Session, OCPPMessage, TNREvent, PerformanceMetrics) : ObjectMapper par défaut
+     * (tel qu'instancié auparavant dans chaque classe, racine non typée) contre les ObjectWriter /
+     * ObjectReader typés du registre (Blackbird), en écriture et en relecture.
+     * Même comparaison sur l'enveloppe réellement envoyée au flux /ws pour chaque type diffusé.
+     */
+    public Map<String, Object> serialization(int iterations) {
+        ObjectMapper baseline = new ObjectMapper();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("iterations", iterations);
+
+        Map<String, Object> samples = sampleUpdates();
+        Map<Class<?>, Object> hot = new LinkedHashMap<>();
+        for (Object sample : samples.values()) hot.put(sample.getClass(), sample);
+        hot.put(TNREvent.class, sampleTnrEvent());
+
+        Map<String, Object> types = new LinkedHashMap<>();
+        hot.forEach((type, value) -> {
+            try {
+                ObjectWriter writer = typedWriter(type);
+                ObjectReader reader = typedReader(type);
+                byte[] json = writer.writeValueAsBytes(value);
+                long baseWriteNs = timeWriter(baseline.writer(), value, iterations);
+                long writeNs = timeWriter(writer, value, iterations);
+                long baseReadNs = timeReader(baseline.readerFor(type), json, iterations);
+                long readNs = timeReader(reader, json, iterations);
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("baselineWriteNsPerOp", baseWriteNs);
+                m.put("registryWriteNsPerOp", writeNs);
+                m.put("writeSpeedup", speedup(baseWriteNs, writeNs));
+                m.put("baselineReadNsPerOp", baseReadNs);
+                m.put("registryReadNsPerOp", readNs);
+                m.put("readSpeedup", speedup(baseReadNs, readNs));
+                types.put(type.getSimpleName(), m);
+            } catch (Exception e) {
+                types.put(type.getSimpleName(), Map.of("error", String.valueOf(e.getMessage())));
+            }
+        });
+        out.put("types", types);
+
+        Map<String, Object> envelopes = new LinkedHashMap<>();
+        samples.forEach((type, data) -> {
+            Map<String, Object> legacy = Map.of(
+                    "type", type,
+                    "data", data,
+                    "timestamp", System.currentTimeMillis()
+            );
+            SerializationRegistry.Envelope<Object> envelope =
+                    new SerializationRegistry.Envelope<>(type, data, System.currentTimeMillis());
+            try {
+                long baseNs = timeWriter(baseline.writer(), legacy, iterations);
+                long tunedNs = timeWriter(serialization.envelopeWriter(WireEncoding.JSON, data.getClass()), envelope, iterations);
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("baselineNsPerOp", baseNs);
+                m.put("registryNsPerOp", tunedNs);
+                m.put("speedup", speedup(baseNs, tunedNs));
+                envelopes.put(type, m);
+            } catch (Exception e) {
+                envelopes.put(type, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        });
+        out.put("envelopes", envelopes);
+        return out;
+    }
+
+    private ObjectWriter typedWriter(Class<?> type) {
+        if (type == Session.class) return serialization.sessionWriter();
+        if (type == OCPPMessage.class) return serialization.ocppMessageWriter();
+        if (type == TNREvent.class) return serialization.tnrEventWriter();
+        return serialization.performanceMetricsWriter();
+    }
+
+    private ObjectReader typedReader(Class<?> type) {
+        if (type == Session.class) return serialization.sessionReader();
+        if (type == OCPPMessage.class) return serialization.ocppMessageReader();
+        if (type == TNREvent.class) return serialization.tnrEventReader();
+        return serialization.performanceMetricsReader();
+    }
+
+    private static double speedup(long baselineNs, long tunedNs) {
+        return tunedNs == 0 ? 0 : Math.round(100.0 * baselineNs / tunedNs) / 100.0;
+    }
+
+    private long timeReader(ObjectReader reader, byte[] json, int iterations) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) reader.readValue(json);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) reader.readValue(json);
+        return iterations == 0 ? 0 : (System.nanoTime() - t0) / iterations;
+    }
+
+    private long timeWriter(ObjectWriter writer, Object value, int iterations) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) writer.writeValueAsBytes(value);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) writer.writeValueAsBytes(value);
+        return iterations == 0 ? 0 : (System.nanoTime() - t0) / iterations;
+    }
+
+    private static final int CAPTURE_ROUNDS = 5;
+    private static final String BENCH_SESSION = "bench-tnr-capture";
+
+    /**
+     * Coût de la capture TNR sur l'appel public sendOCPPMessage, contre une session réellement
+     * connectée à un CSMS loopback embarqué (réponse CALLRESULT immédiate) : le chemin mesuré
+     * est l'envoi de production (trame, requête en attente, écriture socket). Style JMH :
+     * échauffement, rounds alternés, médianes des ns/op et des octets alloués par op sur le thread courant.
+     * - captureOff : hook absent (cas hors enregistrement, une lecture volatile et un test null)
+     * - captureOn : hook installé vers un anneau jetable (consommateur sans E/S)
+     * Surcoût rapporté = captureOn - captureOff. La mesure passe par un client OCPP détaché :
+     * ni le hook d'un vrai enregistrement, ni les métriques, ni le flux UI ne sont touchés.
+     */
+    public Map<String, Object> tnrCapture(int iterations) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("iterations", iterations);
+        out.put("rounds", CAPTURE_ROUNDS);
+        OCPPWebSocketClient client = OCPPWebSocketClient.detached(serialization);
+        Map<String, Object> payload = Map.of("connectorId", 1, "status", "Available", "errorCode", "NoError");
+        Supplier<Object> call = () -> client.sendOCPPMessage(BENCH_SESSION, "StatusNotification", payload);
+
+        try (LoopbackCsms csms = new LoopbackCsms(serialization.ocppFrameReader());
+             TnrCaptureRing ring = new TnrCaptureRing(1 << 16, ev -> {})) {
+            client.connect(BENCH_SESSION, csms.url(), "BENCH", null).get(5, TimeUnit.SECONDS);
+            OcppCapture hook = new OcppCapture() {
+                @Override
+                public void sent(String sessionId, String action, String payloadKey, Object p) {
+                    ring.capture(ring.epoch(), System.currentTimeMillis(), "ocpp", sessionId, action, false, payloadKey, p);
+                }
+
+                @Override
+                public void received(String sessionId, String action, Object result, Throwable error) {
+                    ring.capture(ring.epoch(), System.currentTimeMillis(), "ocpp", sessionId, action, true, null,
+                            error == null ? result : error);
+                }
+            };
+
+            warmUp(call);
+            client.setCapture(hook);
+            warmUp(call);
+            client.setCapture(null);
+
+            // rounds alternés off / on : la dérive (JIT, GC) touche les deux cas pareil
+            long[][] off = new long[CAPTURE_ROUNDS][];
+            long[][] on = new long[CAPTURE_ROUNDS][];
+            long[] overheadNs = new long[CAPTURE_ROUNDS];
+            long[] overheadBytes = new long[CAPTURE_ROUNDS];
+            for (int r = 0; r < CAPTURE_ROUNDS; r++) {
+                off[r] = measureRound(iterations, call);
+                client.setCapture(hook);
+                on[r] = measureRound(iterations, call);
+                client.setCapture(null);
+                overheadNs[r] = on[r][0] - off[r][0];
+                overheadBytes[r] = on[r][1] - off[r][1];
+            }
+            out.put("captureOff", captureCase(median(off, 0), median(off, 1)));
+            out.put("captureOn", captureCase(median(on, 0), median(on, 1)));
+            out.put("captureOverheadNsPerOp", median(overheadNs));
+            out.put("captureOverheadBytesPerOp", median(overheadBytes));
+            out.put("ringDropped", ring.getDropped());
+        } catch (Exception e) {
+            out.put("error", String.valueOf(e.getMessage()));
+        } finally {
+            client.shutdown();
+        }
+        return out;
+    }
+
+    /** CSMS minimal sur 127.0.0.1 (port libre) : répond [3, id, {}] à chaque CALL. */
+    private static final class LoopbackCsms extends WebSocketServer implements AutoCloseable {
+
+        private final ObjectReader frameReader;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        LoopbackCsms(ObjectReader frameReader) throws InterruptedException {
+            super(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            this.frameReader = frameReader;
+            setReuseAddr(true);
+            start();
+            if (!started.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("Loopback CSMS not started");
+        }
+
+        String url() {
+            return "ws://127.0.0.1:" + getPort() + "/ocpp";
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            try {
+                List<?> frame = frameReader.readValue(message);
+                if (frame.size() > 1 && Integer.valueOf(2).equals(frame.get(0))) {
+                    conn.send("[3,\"" + frame.get(1) + "\",{}]");
+                }
+            } catch (Exception e) {
+                log.debug("Loopback CSMS: unreadable frame {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+            log.debug("Loopback CSMS error: {}", ex.getMessage());
+        }
+
+        @Override
+        public void close() {
+            try {
+                stop(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void warmUp(Supplier<Object> call) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS * 10; i++) sink += call.get().hashCode();
+        if (sink == 42) log.trace("bench sink {}", sink); // évite l'élimination du code mort
+    }
+
+    /** Un round : {ns/op, octets alloués/op sur le thread courant}. */
+    private long[] measureRound(int iterations, Supplier<Object> call) {
+        long sink = 0;
+        long b0 = allocatedBytes();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += call.get().hashCode();
+        long nanos = (System.nanoTime() - t0) / iterations;
+        long bytes = (allocatedBytes() - b0) / iterations;
+        if (sink == 42) log.trace("bench sink {}", sink);
+        return new long[]{nanos, bytes};
+    }
+
+    private static long median(long[][] rounds, int column) {
+        long[] values = new long[rounds.length];
+        for (int r = 0; r < rounds.length; r++) values[r] = rounds[r][column];
+        return median(values);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, Object> captureCase(long nsPerOp, long bytesPerOp) {
+        Map<String, Object> c = new LinkedHashMap<>();
+        c.put("nsPerOp", nsPerOp);
+        c.put("bytesPerOp", bytesPerOp);
+        return c;
+    }
+
+    private static long allocatedBytes() {
+        if (java.lang.management.ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                && t.isThreadAllocatedMemorySupported()) {
+            return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static TNREvent sampleTnrEvent() {
+        TNREvent ev = new TNREvent();
+        ev.setTimestamp(1_700_000_000_000L);
+        ev.setSessionId(UUID.randomUUID().toString());
+        ev.setType("ocpp");
+        ev.setAction("MeterValues");
+        ev.setPayload(Map.of("connectorId", 1, "transactionId", 4242,
+                "meterValue", List.of(Map.of("timestamp", "2024-01-01T00:00:00Z",
+                        "sampledValue", List.of(Map.of("value", "12345", "unit", "Wh"))))));
+        ev.setLatency(12L);
+        return ev;
+    }
+
+    /** Jeu d'échantillons représentatifs des mises à jour diffusées. */
+    Map<String, Object> sampleUpdates() {
+        Session session = new Session("bench");
+        session.setId(UUID.randomUUID().toString());
+        session.setUrl("wss://csms.example/ocpp/WebSocket");
+        session.setCpId("CP-BENCH-0001");
+        session.setState("CHARGING");
+        session.setVehicleProfile("TESLA_MODEL_3_LR");
+        session.setChargerType("AC Tri");
+        session.setMaxCurrentA(32);
+        session.setSoc(42.5);
+        session.setInitialSoc(20);
+        session.setTargetSoc(80);
+        session.setMeterWh(12345.6);
+        session.setCurrentPowerW(11000.0);
+        session.setOfferedPowerW(11550.0);
+        session.setActivePowerW(11000.0);
+        session.setFuzzyEnabled(false);
+        session.setFuzzyIntensity(0.5);
+        session.setStartTime(new Date());
+        session.setMeterValueCount(12);
+        for (int i = 0; i < 50; i++) {
+            session.getSocData().add(Map.of("time", 1_700_000_000_000L + i * 1000L, "soc", 20.0 + i * 0.4));
+            session.getPowerData().add(Map.of("time", 1_700_000_000_000L + i * 1000L,
+                    "offered", 11550.0, "active", 11000.0));
+        }
+
+        OCPPMessage ocpp = OCPPMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .sessionId(session.getId())
+                .cpId(session.getCpId())
+                .direction("SENT")
+                .action("MeterValues")
+                .payload(Map.of("connectorId", 1, "transactionId", 4242,
+                        "meterValue", List.of(Map.of("timestamp", "2024-01-01T00:00:00Z",
+                                "sampledValue", List.of(
+                                        Map.of("value", "12345", "measurand", "Energy.Active.Import.Register", "unit", "Wh"),
+                                        Map.of("value", "11000", "measurand", "Power.Active.Import", "unit", "W"))))))
+                .timestamp(new Date())
+                .build();
+
+        PerformanceMetrics metrics = PerformanceMetrics.builder()
+                .totalSessions(1000).activeSessions(250).successCount(980).errorCount(20)
+                .successRate(98.0).avgLatency(120L).maxLatency(950L)
+                .cpuUsage(35.2).memoryUsage(61.7).messagesPerSecond(850)
+                .timestamp(new Date())
+                .build();
+
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("SESSION_UPDATE", session);
+        samples.put("OCPP_MESSAGE", ocpp);
+        samples.put("PERFORMANCE_METRICS", metrics);
+        return samples;
+    }
+}
@@ -23,7 +23,8 @@ public class OCPPService {
     @Autowired
     private WebSocketBroadcaster broadcaster;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private SerializationRegistry serialization;
 
     @PostConstruct
     public void init() {
@@ -106,6 +107,6 @@ public class OCPPService {
     }
 
     public ObjectMapper getObjectMapper() {
-        return objectMapper;
+        return serialization.mapper();
     }
 }
\ No newline at end of file
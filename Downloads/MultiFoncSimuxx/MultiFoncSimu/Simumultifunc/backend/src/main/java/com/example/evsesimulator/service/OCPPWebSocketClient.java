@@ -1,10 +1,15 @@
 package com.example.evsesimulator.service;
 
 import com.example.evsesimulator.model.OCPPMessage;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.NetworkImpairment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.java_websocket.WebSocketImpl;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ServerHandshake;
 import org.springframework.stereotype.Component;
 
@@ -17,12 +22,36 @@ import java.util.function.Consumer;
 @Component
 public class OCPPWebSocketClient {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private SerializationRegistry serialization;
+
+    @Autowired
+    private OcppTrafficMetrics traffic;
+
+    @Autowired
+    private SimulatorMeters meters;
+
     private final Map<String, OCPPWebSocketConnection> connections = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<Object>> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
     private final Map<String, Integer> transactionIds = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5);
 
+    // Dégradation réseau simulée (null = liens parfaits, aucun surcoût)
+    private volatile NetworkImpairment impairment;
+    private final ImpairedLink.Stats impairmentStats = new ImpairedLink.Stats();
+    private final ScheduledExecutorService impairmentTimer = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "ocpp-impairment");
+        t.setDaemon(true);
+        return t;
+    });
+
+    {
+        impairmentTimer.scheduleAtFixedRate(this::sweepResets, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // Capture TNR : null hors enregistrement
+    private volatile OcppCapture capture;
+
     private Consumer<OCPPMessage> onMessageReceived;
     private Consumer<SessionUpdate> onSessionUpdate;
 
@@ -35,10 +64,46 @@ public class OCPPWebSocketClient {
         private Double activePower;
     }
 
+    /** CALL en attente de réponse (pour la latence requête→réponse) */
+    private record PendingRequest(CompletableFuture<Object> future, String sessionId, String action,
+                                  long intendedNanos, long sentNanos) {}
+
+    /**
+     * Instance hors Spring (micro-benchmarks) : compteurs, timers et planificateur privés,
+     * sans callback UI ni capture TNR ; rien n'est partagé avec le client de l'application.
+     * À libérer avec {@link #shutdown()}.
+     */
+    static OCPPWebSocketClient detached(SerializationRegistry serialization) {
+        OCPPWebSocketClient client = new OCPPWebSocketClient();
+        client.serialization = serialization;
+        client.traffic = new OcppTrafficMetrics();
+        client.meters = new SimulatorMeters(new SimpleMeterRegistry());
+        return client;
+    }
+
+    /** Ferme les connexions et arrête les planificateurs (instance détachée). */
+    void shutdown() {
+        new ArrayList<>(connections.keySet()).forEach(this::disconnect);
+        scheduler.shutdownNow();
+        impairmentTimer.shutdownNow();
+    }
+
     public void setOnMessageReceived(Consumer<OCPPMessage> callback) {
         this.onMessageReceived = callback;
     }
 
+    /** Installe (ou retire avec null) la capture TNR des appels publics OCPP. */
+    public void setCapture(OcppCapture capture) {
+        this.capture = capture;
+    }
+
+    /** Réponse observée sans modifier le future rendu à l'appelant. */
+    private static CompletableFuture<Object> observe(OcppCapture c, String sessionId, String action,
+                                                     CompletableFuture<Object> future) {
+        future.whenComplete((res, ex) -> c.received(sessionId, action, res, ex));
+        return future;
+    }
+
     public void setOnSessionUpdate(Consumer<SessionUpdate> callback) {
         this.onSessionUpdate = callback;
     }
@@ -80,6 +145,7 @@ public class OCPPWebSocketClient {
                 @Override
                 public void onError(Exception ex) {
                     log.error("WebSocket error for session: {}", sessionId, ex);
+                    traffic.error("Transport:" + ex.getClass().getSimpleName());
                     future.completeExceptionally(ex);
                 }
             });
@@ -88,6 +154,7 @@ public class OCPPWebSocketClient {
 
         } catch (Exception e) {
             log.error("Failed to connect for session: {}", sessionId, e);
+            traffic.error("Connect");
             future.completeExceptionally(e);
         }
 
@@ -97,25 +164,114 @@ public class OCPPWebSocketClient {
     public void disconnect(String sessionId) {
         OCPPWebSocketConnection connection = connections.remove(sessionId);
         if (connection != null) {
+            connection.cancelTasks();
             connection.close();
         }
         transactionIds.remove(sessionId);
     }
 
+    /** Connexions OCPP ouvertes (sockets côté CSMS). */
+    public int getOpenConnectionCount() {
+        int open = 0;
+        for (OCPPWebSocketConnection c : connections.values()) if (c.isOpen()) open++;
+        return open;
+    }
+
+    /** Trames en attente d'écriture sur les sockets OCPP (file sortante de Java-WebSocket). */
+    public int getOutboundQueueDepth() {
+        int depth = 0;
+        for (OCPPWebSocketConnection c : connections.values()) {
+            if (c.getConnection() instanceof WebSocketImpl ws) depth += ws.outQueue.size();
+        }
+        return depth;
+    }
+
+    /* ========== Dégradation réseau ========== */
+
+    /** Appliquée immédiatement à toutes les connexions (existantes et futures) ; null pour désactiver. */
+    public void setImpairment(NetworkImpairment config) {
+        if (config != null) config.validate();
+        impairmentStats.reset();
+        this.impairment = config == null || config.getProfiles().isEmpty() ? null : config;
+    }
+
+    public NetworkImpairment getImpairment() {
+        return impairment;
+    }
+
+    /** Compteurs de trames retardées / perdues / coupures et connexions dégradées par profil. */
+    public Map<String, Object> getImpairmentStats() {
+        Map<String, Object> m = impairmentStats.snapshot();
+        NetworkImpairment imp = impairment;
+        Map<String, Integer> perProfile = new TreeMap<>();
+        if (imp != null) {
+            for (OCPPWebSocketConnection c : connections.values()) {
+                NetworkImpairment.Profile p = imp.profileFor(c.cpId);
+                if (p != null && c.isOpen()) perProfile.merge(p.getName(), 1, Integer::sum);
+            }
+        }
+        m.put("impairedConnections", perProfile);
+        return m;
+    }
+
+    /** Coupures aléatoires : probabilité par seconde 1 - exp(-1 / resetMeanSec). */
+    private void sweepResets() {
+        NetworkImpairment imp = impairment;
+        if (imp == null) return;
+        try {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (OCPPWebSocketConnection c : connections.values()) {
+                NetworkImpairment.Profile p = imp.profileFor(c.cpId);
+                if (p == null || p.getResetMeanSec() <= 0 || !c.isOpen()) continue;
+                if (rnd.nextDouble() < 1 - Math.exp(-1.0 / p.getResetMeanSec())) {
+                    impairmentStats.resets.increment();
+                    log.debug("Simulated network reset for {}", c.cpId);
+                    c.closeConnection(CloseFrame.ABNORMAL_CLOSE, "Simulated network reset");
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Reset sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /** Scheduler des MeterValues / Heartbeat / timeouts, sondé par SelfTelemetryService. */
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    public boolean isConnected(String sessionId) {
+        OCPPWebSocketConnection connection = connections.get(sessionId);
+        return connection != null && connection.isOpen();
+    }
+
     public CompletableFuture<Object> authorize(String sessionId, String idTag) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("idTag", idTag);
-        return sendOCPPMessage(sessionId, "Authorize", payload);
+        return send(sessionId, "Authorize", payload, LatencyHistograms.UNSCHEDULED);
+    }
+
+    /** Authorize planifié : intendedNanos sert à la latence corrigée du coordinated omission. */
+    public CompletableFuture<Object> authorize(String sessionId, String idTag, long intendedNanos) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("idTag", idTag);
+        return send(sessionId, "Authorize", payload, intendedNanos);
     }
 
     public CompletableFuture<Object> startTransaction(String sessionId, String idTag) {
+        OcppCapture c = capture;
+        if (c == null) return doStartTransaction(sessionId, idTag);
+        c.sent(sessionId, "StartTransaction", "idTag", idTag);
+        return observe(c, sessionId, "StartTransaction", doStartTransaction(sessionId, idTag));
+    }
+
+    private CompletableFuture<Object> doStartTransaction(String sessionId, String idTag) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("connectorId", 1);
         payload.put("idTag", idTag);
         payload.put("meterStart", 0);
         payload.put("timestamp", new Date().toInstant().toString());
 
-        return sendOCPPMessage(sessionId, "StartTransaction", payload)
+        return send(sessionId, "StartTransaction", payload, LatencyHistograms.UNSCHEDULED)
                 .thenApply(result -> {
                     if (result instanceof Map) {
                         Map<String, Object> response = (Map<String, Object>) result;
@@ -131,6 +287,13 @@ public class OCPPWebSocketClient {
     }
 
     public CompletableFuture<Object> stopTransaction(String sessionId) {
+        OcppCapture c = capture;
+        if (c == null) return doStopTransaction(sessionId);
+        c.sent(sessionId, "StopTransaction", null, Map.of());
+        return observe(c, sessionId, "StopTransaction", doStopTransaction(sessionId));
+    }
+
+    private CompletableFuture<Object> doStopTransaction(String sessionId) {
         Integer transactionId = transactionIds.get(sessionId);
         if (transactionId == null) {
             return CompletableFuture.failedFuture(new IllegalStateException("No active transaction"));
@@ -142,7 +305,7 @@ public class OCPPWebSocketClient {
         payload.put("timestamp", new Date().toInstant().toString());
         payload.put("reason", "Local");
 
-        return sendOCPPMessage(sessionId, "StopTransaction", payload)
+        return send(sessionId, "StopTransaction", payload, LatencyHistograms.UNSCHEDULED)
                 .thenApply(result -> {
                     transactionIds.remove(sessionId);
                     updateSessionState(sessionId, "CONNECTED");
@@ -152,6 +315,19 @@ public class OCPPWebSocketClient {
     }
 
     public CompletableFuture<Object> sendOCPPMessage(String sessionId, String action, Object payload) {
+        OcppCapture c = capture;
+        if (c == null) return send(sessionId, action, payload, LatencyHistograms.UNSCHEDULED);
+        c.sent(sessionId, action, null, payload);
+        return observe(c, sessionId, action, send(sessionId, action, payload, LatencyHistograms.UNSCHEDULED));
+    }
+
+    /**
+     * Envoi interne, jamais capturé (BootNotification, Authorize, MeterValues... comme
+     * avant, seuls les appels publics sendOCPPMessage / start / stop sont enregistrés).
+     * @param intendedNanos instant prévu de l'envoi (System.nanoTime) pour les opérations planifiées,
+     *                      {@link LatencyHistograms#UNSCHEDULED} sinon ; sert à la latence corrigée du coordinated omission
+     */
+    private CompletableFuture<Object> send(String sessionId, String action, Object payload, long intendedNanos) {
         OCPPWebSocketConnection connection = connections.get(sessionId);
         if (connection == null || !connection.isOpen()) {
             return CompletableFuture.failedFuture(new IllegalStateException("Not connected"));
@@ -159,11 +335,14 @@ public class OCPPWebSocketClient {
 
         String messageId = UUID.randomUUID().toString();
         CompletableFuture<Object> future = new CompletableFuture<>();
-        pendingRequests.put(messageId, future);
 
         try {
+            long t0 = System.nanoTime();
             String message = buildOCPPMessage(messageId, action, payload);
-            connection.send(message);
+            pendingRequests.put(messageId, new PendingRequest(future, sessionId, action, intendedNanos, System.nanoTime()));
+            connection.transmit(message);
+            meters.ocppSend(action, System.nanoTime() - t0);
+            traffic.frameSent(message);
 
             // Log outgoing message
             if (onMessageReceived != null) {
@@ -183,12 +362,14 @@ public class OCPPWebSocketClient {
             // Timeout after 10 seconds
             scheduler.schedule(() -> {
                 if (pendingRequests.remove(messageId) != null) {
+                    traffic.error("Timeout");
                     future.completeExceptionally(new TimeoutException("Request timeout"));
                 }
             }, 10, TimeUnit.SECONDS);
 
         } catch (Exception e) {
             pendingRequests.remove(messageId);
+            traffic.error("Send");
             future.completeExceptionally(e);
         }
 
@@ -202,21 +383,55 @@ public class OCPPWebSocketClient {
         payload.put("chargePointSerialNumber", cpId);
         payload.put("firmwareVersion", "1.0.0");
 
-        return sendOCPPMessage(sessionId, "BootNotification", payload);
+        return send(sessionId, "BootNotification", payload, LatencyHistograms.UNSCHEDULED);
     }
 
     private void startMeterValueSimulation(String sessionId) {
         Integer transactionId = transactionIds.get(sessionId);
-        if (transactionId == null) return;
+        OCPPWebSocketConnection connection = connections.get(sessionId);
+        if (transactionId == null || connection == null) return;
 
+        long periodSec = connection.meterValueIntervalSec;
+        long firstNanos = System.nanoTime();
+        long[] tick = {0};
         ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(() -> {
+            // instant prévu de ce tick, même si le scheduler a pris du retard
+            long intended = firstNanos + TimeUnit.SECONDS.toNanos(periodSec) * tick[0]++;
             if (!transactionIds.containsKey(sessionId)) return;
 
-            sendMeterValues(sessionId, transactionId);
-        }, 0, 60, TimeUnit.SECONDS);
+            sendMeterValues(sessionId, transactionId, intended);
+        }, 0, periodSec, TimeUnit.SECONDS);
 
         // Store task for cancellation
-        connections.get(sessionId).meterValueTask = task;
+        connection.meterValueTask = task;
+    }
+
+    /** Intervalle des MeterValues périodiques (défaut 60 s), à régler avant StartTransaction. */
+    public void setMeterValueInterval(String sessionId, int intervalSec) {
+        OCPPWebSocketConnection connection = connections.get(sessionId);
+        if (connection != null && intervalSec > 0) connection.meterValueIntervalSec = intervalSec;
+    }
+
+    /** Heartbeats périodiques (latence suivie par rapport à l'instant prévu). */
+    public void startHeartbeat(String sessionId, int intervalSec) {
+        OCPPWebSocketConnection connection = connections.get(sessionId);
+        if (connection == null || intervalSec <= 0) return;
+        stopHeartbeat(sessionId);
+
+        long firstNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(intervalSec);
+        long[] tick = {0};
+        connection.heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
+            long intended = firstNanos + TimeUnit.SECONDS.toNanos(intervalSec) * tick[0]++;
+            send(sessionId, "Heartbeat", new HashMap<>(), intended);
+        }, intervalSec, intervalSec, TimeUnit.SECONDS);
+    }
+
+    public void stopHeartbeat(String sessionId) {
+        OCPPWebSocketConnection connection = connections.get(sessionId);
+        if (connection != null && connection.heartbeatTask != null) {
+            connection.heartbeatTask.cancel(false);
+            connection.heartbeatTask = null;
+        }
     }
 
     private void stopMeterValueSimulation(String sessionId) {
@@ -227,7 +442,16 @@ public class OCPPWebSocketClient {
         }
     }
 
-    private void sendMeterValues(String sessionId, Integer transactionId) {
+    /** MeterValues ponctuel sur la transaction en cours (scénarios de perf). */
+    public CompletableFuture<Object> sendMeterValues(String sessionId) {
+        Integer transactionId = transactionIds.get(sessionId);
+        if (transactionId == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No active transaction"));
+        }
+        return sendMeterValues(sessionId, transactionId, LatencyHistograms.UNSCHEDULED);
+    }
+
+    private CompletableFuture<Object> sendMeterValues(String sessionId, Integer transactionId, long intendedNanos) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("connectorId", 1);
         payload.put("transactionId", transactionId);
@@ -266,21 +490,26 @@ public class OCPPWebSocketClient {
         meterValues.add(meterValue);
         payload.put("meterValue", meterValues);
 
-        sendOCPPMessage(sessionId, "MeterValues", payload);
+        return send(sessionId, "MeterValues", payload, intendedNanos);
     }
 
     private void handleMessage(String sessionId, String message) {
+        traffic.frameReceived(message);
+        long t0 = System.nanoTime();
+        String frameType = "INVALID";
         try {
-            List<Object> msgArray = objectMapper.readValue(message, List.class);
+            List<Object> msgArray = serialization.ocppFrameReader().readValue(message);
             int messageType = (int) msgArray.get(0);
+            frameType = messageType == 2 ? "CALL" : messageType == 3 ? "CALLRESULT" : messageType == 4 ? "CALLERROR" : "INVALID";
 
             if (messageType == 3) { // CALLRESULT
                 String messageId = (String) msgArray.get(1);
                 Object payload = msgArray.get(2);
 
-                CompletableFuture<Object> future = pendingRequests.remove(messageId);
-                if (future != null) {
-                    future.complete(payload);
+                PendingRequest pending = pendingRequests.remove(messageId);
+                if (pending != null) {
+                    recordLatency(pending, "result");
+                    pending.future().complete(payload);
                 }
 
                 // Log incoming message
@@ -302,19 +531,31 @@ public class OCPPWebSocketClient {
                 String errorCode = (String) msgArray.get(2);
                 String errorDescription = (String) msgArray.get(3);
 
-                CompletableFuture<Object> future = pendingRequests.remove(messageId);
-                if (future != null) {
-                    future.completeExceptionally(new RuntimeException(errorCode + ": " + errorDescription));
+                traffic.error("CALLERROR:" + errorCode);
+                PendingRequest pending = pendingRequests.remove(messageId);
+                if (pending != null) {
+                    recordLatency(pending, "error");
+                    pending.future().completeExceptionally(new RuntimeException(errorCode + ": " + errorDescription));
                 }
             }
         } catch (Exception e) {
+            traffic.error("Parse");
             log.error("Failed to handle message: {}", message, e);
+        } finally {
+            meters.ocppReceive(frameType, System.nanoTime() - t0);
         }
     }
 
+    private void recordLatency(PendingRequest pending, String outcome) {
+        long now = System.nanoTime();
+        traffic.responseLatency(now - pending.sentNanos());
+        meters.ocppResponse(pending.action(), outcome, now - pending.sentNanos());
+        traffic.record(pending.sessionId(), pending.action(), pending.intendedNanos(), pending.sentNanos(), now);
+    }
+
     private String buildOCPPMessage(String messageId, String action, Object payload) throws Exception {
         List<Object> message = Arrays.asList(2, messageId, action, payload);
-        return objectMapper.writeValueAsString(message);
+        return serialization.writer().writeValueAsString(message);
     }
 
     private void updateSessionState(String sessionId, String state) {
@@ -333,6 +574,9 @@ public class OCPPWebSocketClient {
         private final String bearerToken;
         private ConnectionListener listener;
         private ScheduledFuture<?> meterValueTask;
+        private ScheduledFuture<?> heartbeatTask;
+        private int meterValueIntervalSec = 60;
+        private ImpairedLink link;
 
         public OCPPWebSocketConnection(URI serverUri, String sessionId, String cpId, String bearerToken) {
             super(serverUri);
@@ -350,6 +594,33 @@ public class OCPPWebSocketClient {
             this.listener = listener;
         }
 
+        private NetworkImpairment.Profile impairmentProfile() {
+            NetworkImpairment imp = impairment;
+            return imp == null ? null : imp.profileFor(cpId);
+        }
+
+        private synchronized ImpairedLink link() {
+            if (link == null) link = new ImpairedLink(impairmentTimer, impairmentStats);
+            return link;
+        }
+
+        /** Envoi via le lien dégradé si ce CP en a un. */
+        void transmit(String frame) {
+            NetworkImpairment.Profile p = impairmentProfile();
+            if (p == null) {
+                send(frame);
+            } else {
+                link().send(p, frame.length(), () -> send(frame));
+            }
+        }
+
+        void cancelTasks() {
+            if (meterValueTask != null) meterValueTask.cancel(false);
+            if (heartbeatTask != null) heartbeatTask.cancel(false);
+            meterValueTask = null;
+            heartbeatTask = null;
+        }
+
         @Override
         public void onOpen(ServerHandshake handshake) {
             if (listener != null) listener.onOpen();
@@ -357,7 +628,13 @@ public class OCPPWebSocketClient {
 
         @Override
         public void onMessage(String message) {
-            if (listener != null) listener.onMessage(message);
+            if (listener == null) return;
+            NetworkImpairment.Profile p = impairmentProfile();
+            if (p == null) {
+                listener.onMessage(message);
+            } else {
+                link().receive(p, message.length(), () -> listener.onMessage(message));
+            }
         }
 
         @Override
@@ -0,0 +1,15 @@
+package com.example.evsesimulator.service;
+
+/**
+ * Point de capture du trafic OCPP applicatif (TNR), installé dans OCPPWebSocketClient
+ * seulement pendant un enregistrement : hors enregistrement, le client ne paie qu'une
+ * lecture volatile et un test à null (ni proxy, ni objet, ni callback).
+ */
+public interface OcppCapture {
+
+    /** CALL émis ; payload construit par le consommateur en {payloadKey: payload} si payloadKey != null. */
+    void sent(String sessionId, String action, String payloadKey, Object payload);
+
+    /** Réponse (ou erreur) du CALL. */
+    void received(String sessionId, String action, Object result, Throwable error);
+}
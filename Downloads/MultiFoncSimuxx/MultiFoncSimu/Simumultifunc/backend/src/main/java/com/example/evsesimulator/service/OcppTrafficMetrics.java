@@ -0,0 +1,164 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.SlidingWindowCounter;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Activité réelle sur le fil OCPP (alimentée par OCPPWebSocketClient) :
+ * trames, octets, erreurs par type et latence requête→réponse,
+ * en cumul (LongAdder) et sur fenêtres glissantes 1s / 10s / 60s.
+ */
+@Component
+public class OcppTrafficMetrics {
+
+    public static final int[] WINDOWS_SEC = {1, 10, 60};
+    private static final int MAX_WINDOW_SEC = 60;
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final SlidingWindowCounter framesSentWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter framesReceivedWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter bytesOutWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter bytesInWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter errorsWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter latencySumWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter latencyCountWindow = new SlidingWindowCounter(MAX_WINDOW_SEC);
+
+    private final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+
+    /** percentiles par action, bruts et corrigés du coordinated omission */
+    private final LatencyHistograms latency = new LatencyHistograms();
+
+    public static final char SCOPE_SEPARATOR = ':';
+
+    /**
+     * Histogrammes propres à un run de perf, indexés par le préfixe de sessionId du run
+     * ("&lt;scope&gt;:..."), en plus du cumul global ci-dessus.
+     */
+    private final Map<String, LatencyHistograms> scoped = new ConcurrentHashMap<>();
+
+    public LatencyHistograms latency() {
+        return latency;
+    }
+
+    public void bindScope(String scope, LatencyHistograms histograms) {
+        scoped.put(scope, histograms);
+    }
+
+    public void unbindScope(String scope) {
+        scoped.remove(scope);
+    }
+
+    /** Enregistre dans le cumul global et dans les histogrammes du run propriétaire de la session. */
+    public void record(String sessionId, String action, long intendedNanos, long startNanos, long endNanos) {
+        latency.record(action, intendedNanos, startNanos, endNanos);
+        if (scoped.isEmpty() || sessionId == null) return;
+        int sep = sessionId.indexOf(SCOPE_SEPARATOR);
+        if (sep <= 0) return;
+        LatencyHistograms run = scoped.get(sessionId.substring(0, sep));
+        if (run != null) run.record(action, intendedNanos, startNanos, endNanos);
+    }
+
+    public void frameSent(String frame) {
+        framesSent.increment();
+        framesSentWindow.increment();
+        int bytes = utf8Length(frame);
+        bytesOut.add(bytes);
+        bytesOutWindow.add(bytes);
+    }
+
+    public void frameReceived(String frame) {
+        framesReceived.increment();
+        framesReceivedWindow.increment();
+        int bytes = utf8Length(frame);
+        bytesIn.add(bytes);
+        bytesInWindow.add(bytes);
+    }
+
+    public void error(String type) {
+        errorsByType.computeIfAbsent(type, k -> new LongAdder()).increment();
+        errorsWindow.increment();
+    }
+
+    /** Latence requête→réponse d'un CALL (CALLRESULT ou CALLERROR). */
+    public void responseLatency(long nanos) {
+        latencySumWindow.add(TimeUnit.NANOSECONDS.toMicros(nanos));
+        latencyCountWindow.increment();
+    }
+
+    /** Trames envoyées + reçues pendant la dernière seconde complète. */
+    public int messagesPerSecond() {
+        return (int) (framesSentWindow.sum(1) + framesReceivedWindow.sum(1));
+    }
+
+    public Map<String, Long> errorsByType() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        errorsByType.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    public Map<String, Object> totals() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("framesSent", framesSent.sum());
+        m.put("framesReceived", framesReceived.sum());
+        m.put("bytesOut", bytesOut.sum());
+        m.put("bytesIn", bytesIn.sum());
+        return m;
+    }
+
+    /** Débits par fenêtre : clé "1s", "10s", "60s". */
+    public Map<String, Object> windows() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (int w : WINDOWS_SEC) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("framesSentPerSec", framesSentWindow.rate(w));
+            m.put("framesReceivedPerSec", framesReceivedWindow.rate(w));
+            m.put("bytesOutPerSec", bytesOutWindow.rate(w));
+            m.put("bytesInPerSec", bytesInWindow.rate(w));
+            m.put("errorsPerSec", errorsWindow.rate(w));
+            long count = latencyCountWindow.sum(w);
+            m.put("avgLatencyMs", count == 0 ? 0.0 : latencySumWindow.sum(w) / 1000.0 / count);
+            out.put(w + "s", m);
+        }
+        return out;
+    }
+
+    public void reset() {
+        framesSent.reset();
+        framesReceived.reset();
+        bytesOut.reset();
+        bytesIn.reset();
+        framesSentWindow.reset();
+        framesReceivedWindow.reset();
+        bytesOutWindow.reset();
+        bytesInWindow.reset();
+        errorsWindow.reset();
+        latencySumWindow.reset();
+        latencyCountWindow.reset();
+        errorsByType.clear();
+        latency.reset();
+    }
+
+    private static int utf8Length(String s) {
+        if (s == null) return 0;
+        int len = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) len++;
+            else if (c < 0x800) len += 2;
+            else if (Character.isHighSurrogate(c)) { len += 4; i++; }
+            else len += 3;
+        }
+        return len;
+    }
+}
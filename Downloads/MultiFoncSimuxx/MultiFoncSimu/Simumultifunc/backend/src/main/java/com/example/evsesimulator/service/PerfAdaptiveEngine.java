@@ -0,0 +1,196 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.ConcurrencyLimit;
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.LimitConfig;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.RunPhases;
+import com.example.evsesimulator.perf.ScenarioPlan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moteur des tests adaptatifs (ADAPTIVE) : sessions {@link PerfSessionRunner} lancées jusqu'à
+ * la limite d'un contrôleur de concurrence recalculée à chaque fenêtre.
+ * Le run (compteurs, fenêtres, fin de vie) est tenu par {@link PerformanceService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfAdaptiveEngine {
+
+    // Test adaptatif : historique borné par fenêtre
+    private static final int LIMIT_HISTORY_MAX = 3600;
+
+    private final PerformanceService runs;
+    private final PerfSessionRunner sessionRunner;
+    private final PerfRunArchive runArchive;
+
+    public PerfRun start(String url, int initialBatch, int targetSessions) {
+        LimitConfig limits = new LimitConfig();
+        limits.setInitialLimit(initialBatch);
+        return start(url, targetSessions, limits, null, new RunPhases());
+    }
+
+    /**
+     * Montée en charge pilotée par un contrôleur de concurrence (AIMD, Vegas, gradient) :
+     * on garde au plus {@code limit} sessions en vol, la limite étant recalculée à chaque
+     * fenêtre à partir des percentiles de RTT OCPP et du taux d'erreur de la fenêtre.
+     * Le résultat donne la concurrence maximale soutenable observée.
+     * @param plan scénario compilé joué par chaque session, null pour le flux par défaut
+     */
+    public PerfRun start(String url, int targetSessions, LimitConfig limits, ScenarioPlan plan, RunPhases phases) {
+
+        PerfRun run = runs.newRun("adaptive", "ADAPTIVE", url, plan);
+        String runId = run.getId();
+        ConcurrencyLimit limiter = limits.create();
+        run.concurrencyLimit = limiter.getLimit();
+
+        runs.launch(run, () -> {
+            log.info("Starting adaptive performance test - Target: {} sessions, controller {}",
+                    targetSessions, limiter.name());
+
+            long startTime = System.currentTimeMillis();
+            MeasurementWindow w = runs.openWindow(run, phases, 0);
+            ExecutorService sessionExecutor = run.sessions;
+            Deque<Map<String, Object>> history = new ArrayDeque<>();
+            AtomicInteger inFlightCount = new AtomicInteger();
+            int maxSustainable = 0;
+            int unreliableWindows = 0;
+
+            // Démarrer la collecte de métriques
+            ScheduledFuture<?> metricsTask = runs.scheduleMetrics(run);
+
+            try {
+                Histogram previous = run.latency.rawTotal();
+                int previousOk = 0;
+                int previousErrors = 0;
+                long windowStart = System.currentTimeMillis();
+                long windowEnd = windowStart + limits.getWindowMs();
+
+                while (run.isRunning() && (run.totalSessions.get() < targetSessions || inFlightCount.get() > 0)) {
+                    // Remplir jusqu'à la limite courante (compté au lancement, pas au démarrage effectif) ;
+                    // rampe en pause tant que le simulateur lui-même est saturé
+                    while (run.isRunning() && run.totalSessions.get() < targetSessions
+                            && inFlightCount.get() < limiter.getLimit() && !runs.isSaturated()) {
+                        int sessionNum = run.totalSessions.incrementAndGet();
+                        String cpId = String.format("PERF-%06d", sessionNum);
+                        String tagId = String.format("TAG-%06d", sessionNum);
+                        inFlightCount.incrementAndGet();
+                        sessionRunner.start(run, sessionNum, cpId, tagId, sessionExecutor)
+                                .whenComplete((r, ex) -> inFlightCount.decrementAndGet());
+                    }
+
+                    long now = System.currentTimeMillis();
+                    if (now < windowEnd) {
+                        Thread.sleep(Math.min(10, windowEnd - now));
+                        continue;
+                    }
+                    boolean unreliable = runs.saturatedDuring(windowStart, now);
+                    windowStart = now;
+                    windowEnd = now + limits.getWindowMs();
+
+                    // Fenêtre écoulée : RTT de la fenêtre = cumul courant - cumul précédent
+                    Histogram current = run.latency.rawTotal();
+                    Histogram window = current.copy();
+                    window.subtract(previous);
+                    previous = current;
+                    int ok = run.successCount.get();
+                    int errors = run.errorCount.get();
+                    long completed = (ok - previousOk) + (errors - previousErrors);
+                    double errorRate = completed == 0 ? 0 : (double) (errors - previousErrors) / completed;
+                    previousOk = ok;
+                    previousErrors = errors;
+
+                    int inFlight = inFlightCount.get();
+                    ConcurrencyLimit.Sample sample = new ConcurrencyLimit.Sample(
+                            window.getTotalCount() == 0 ? 0 : window.getValueAtPercentile(50) / 1000.0,
+                            window.getTotalCount() == 0 ? 0 : window.getValueAtPercentile(99) / 1000.0,
+                            errorRate, completed, inFlight);
+                    int before = limiter.getLimit();
+                    // Fenêtre faussée par la saturation du simulateur : limite gelée
+                    int after = unreliable ? before : limiter.update(sample);
+                    run.concurrencyLimit = after;
+                    if (unreliable) unreliableWindows++;
+
+                    // Soutenable : fenêtre saine où la limite était réellement exercée
+                    if (!unreliable && !limits.overloaded(sample) && completed > 0 && inFlight * 10 >= before * 9) {
+                        maxSustainable = Math.max(maxSustainable, before);
+                    }
+
+                    Map<String, Object> point = new LinkedHashMap<>();
+                    point.put("t", now - startTime);
+                    point.put("limit", after);
+                    point.put("inFlight", inFlight);
+                    point.put("completed", completed);
+                    point.put("errorRate", errorRate);
+                    point.put("rttP50Ms", sample.rttP50Ms());
+                    point.put("rttP99Ms", sample.rttP99Ms());
+                    if (unreliable) point.put("unreliable", true);
+                    history.addLast(point);
+                    if (history.size() > LIMIT_HISTORY_MAX) history.pollFirst();
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Performance test failed", e);
+            } finally {
+                metricsTask.cancel(false);
+                run.stop();
+                runs.sealResults(run);
+            }
+
+            long totalTime = System.currentTimeMillis() - startTime;
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("runId", runId);
+            result.put("controller", limiter.name());
+            result.put("maxSustainableConcurrency", maxSustainable);
+            result.put("finalLimit", limiter.getLimit());
+            result.put("convergedLimit", convergedLimit(history));
+            result.put("unreliableWindows", unreliableWindows);
+            result.put("limitHistory", new ArrayList<>(history));
+            result.put("totalSessions", run.totalSessions.get());
+            result.put("successCount", run.successCount.get());
+            result.put("errorCount", run.errorCount.get());
+            result.put("successRate", run.totalSessions.get() > 0 ?
+                    (double) run.successCount.get() / run.totalSessions.get() * 100 : 0);
+            result.put("totalTime", totalTime);
+            result.put("avgLatency", run.totalSessions.get() > 0 ?
+                    run.totalLatency.get() / run.totalSessions.get() : 0);
+            result.put("maxLatency", run.maxLatency.get());
+            result.put("latency", run.latency.snapshot());
+            if (plan != null) {
+                result.put("scenario", plan.getName());
+                result.put("flows", runs.getFlowStats(run));
+            }
+
+            LatencyHistograms measured = runs.closeWindow(run, w, result);
+            runArchive.save(runId, "ADAPTIVE", startTime,
+                    runs.runConfig(url, plan, "targetSessions", targetSessions, "limits", limits, "phases", phases),
+                    result, measured);
+            return result;
+        });
+        return run;
+    }
+
+    /** Moyenne de la limite sur les dernières fenêtres (valeur de convergence). */
+    private static double convergedLimit(Deque<Map<String, Object>> history) {
+        int n = 0;
+        double sum = 0;
+        Iterator<Map<String, Object>> it = history.descendingIterator();
+        while (it.hasNext() && n < 10) {
+            sum += ((Number) it.next().get("limit")).doubleValue();
+            n++;
+        }
+        return n == 0 ? 0 : sum / n;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.FleetCsvReader;
+import com.example.evsesimulator.perf.ScenarioPlan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Moteur des batchs CSV (BATCH) : une session {@link PerfSessionRunner} par ligne de flotte,
+ * la lecture de la source avançant au rythme des complétions.
+ * Le run (compteurs, fenêtres, fin de vie) est tenu par {@link PerformanceService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfBatchEngine {
+
+    private final PerformanceService runs;
+    private final PerfSessionRunner sessionRunner;
+    private final PerfRunArchive runArchive;
+
+    /**
+     * Batch piloté par un CSV de flotte lu en flux : au plus {@code concurrency} sessions
+     * en vol, la lecture du fichier avance au rythme des complétions.
+     * @param totalBytes taille de la source si connue (progression), 0 sinon
+     */
+    public PerfRun start(String url, Iterator<String[]> source, long totalBytes, int concurrency, ScenarioPlan plan) {
+
+        PerfRun run;
+        try {
+            run = runs.newRun("batch", "BATCH", url, plan, Math.min(Math.max(1, concurrency), runs.maxThreadsPerRun()));
+        } catch (IllegalStateException e) {
+            closeQuietly(source);
+            throw e;
+        }
+        String runId = run.getId();
+        run.batchSource = source;
+        run.batchTotalBytes = totalBytes;
+
+        runs.launch(run, () -> {
+            int slots = Math.max(1, concurrency);
+            log.info("Starting CSV batch test - concurrency {}", slots);
+
+            ExecutorService sessionExecutor = run.sessions;
+            Semaphore inFlight = new Semaphore(slots);
+            ScheduledFuture<?> metricsTask = runs.scheduleMetrics(run);
+            long startTime = System.currentTimeMillis();
+
+            try {
+                while (run.isRunning() && source.hasNext()) {
+                    inFlight.acquire();
+                    String[] pair = source.next();
+                    int sessionNum = run.totalSessions.incrementAndGet();
+                    sessionRunner.start(run, sessionNum, pair[0], pair[1], sessionExecutor)
+                            .whenComplete((r, ex) -> inFlight.release());
+                }
+                // Attendre les sessions en vol
+                inFlight.acquire(slots);
+                inFlight.release(slots);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("CSV batch test failed", e);
+            } finally {
+                metricsTask.cancel(false);
+                run.stop();
+                runs.sealResults(run);
+                closeQuietly(source);
+                runs.broadcastMetrics(run);
+                run.batchSource = null;
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("mode", "BATCH");
+            result.put("runId", runId);
+            if (source instanceof FleetCsvReader csv) {
+                result.put("linesRead", csv.getLinesRead());
+                result.put("skippedLines", csv.getSkipped());
+            }
+            result.put("totalSessions", run.totalSessions.get());
+            result.put("successCount", run.successCount.get());
+            result.put("errorCount", run.errorCount.get());
+            result.put("successRate", run.totalSessions.get() > 0 ?
+                    (double) run.successCount.get() / run.totalSessions.get() * 100 : 0);
+            result.put("totalTime", System.currentTimeMillis() - startTime);
+            result.put("avgLatency", run.successCount.get() > 0 ?
+                    run.totalLatency.get() / run.successCount.get() : 0);
+            result.put("maxLatency", run.maxLatency.get());
+            result.put("latency", run.latency.snapshot());
+            if (plan != null) {
+                result.put("scenario", plan.getName());
+                result.put("flows", runs.getFlowStats(run));
+            }
+
+            runArchive.save(runId, "BATCH", startTime,
+                    runs.runConfig(url, plan, "concurrency", concurrency, "sourceBytes", totalBytes), result, run.latency);
+            return result;
+        });
+        return run;
+    }
+
+    private static void closeQuietly(Iterator<String[]> source) {
+        if (!(source instanceof Closeable c)) return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            log.debug("Unable to close CSV source: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.LoadShape;
+import com.example.evsesimulator.perf.LoadShapeConfig;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.RunPhases;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Moteur des tests à profil de charge (RAMP, STEP, SPIKE, SOAK, WAVE, PIECEWISE) :
+ * une boucle de réconciliation ramène le parc de CPs actifs vers la cible du profil.
+ * Le run (compteurs, fenêtres, fin de vie) est tenu par {@link PerformanceService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfLoadShapeEngine {
+
+    private final PerformanceService runs;
+    private final OCPPWebSocketClient ocppClient;
+    private final PerfResultStore resultStore;
+    private final PerfRunArchive runArchive;
+
+    /** points d'historique de la cible conservés au plus */
+    private static final int HISTORY_MAX = 3600;
+
+    private enum CpState { CONNECTING, ACTIVE, DRAINING, PARKED }
+
+    /** CP d'un test à profil : un seul cycle en cours tant qu'il est ACTIVE ou DRAINING. */
+    private static final class ShapeCp {
+        final String cpId;
+        final String tagId;
+        final String sessionId;
+        final AtomicReference<CpState> state = new AtomicReference<>(CpState.CONNECTING);
+
+        ShapeCp(PerfRun run, int n) {
+            this.cpId = String.format("SHAPE-%06d", n);
+            this.tagId = String.format("TAG-%06d", n);
+            this.sessionId = run.sessionId("shape-" + cpId);
+        }
+    }
+
+    private static final class ShapeRun {
+        final PerfRun run;
+        final LoadShapeConfig config;
+        final Semaphore connectSlots;
+        final Map<String, ShapeCp> cps = new ConcurrentHashMap<>();
+        final AtomicInteger seq = new AtomicInteger();
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger reused = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+
+        ShapeRun(PerfRun run, LoadShapeConfig config) {
+            this.run = run;
+            this.config = config;
+            this.connectSlots = new Semaphore(Math.max(1, config.getConnectConcurrency()));
+        }
+    }
+
+    /**
+     * Test à profil de charge : toutes les {@code reconcileIntervalMs}, le nombre de CPs actifs
+     * est ramené vers la cible du profil. À la hausse on réactive d'abord les CPs garés
+     * (connexion déjà ouverte) avant d'en connecter de nouveaux ; à la baisse les CPs finissent
+     * leur transaction puis restent connectés (heartbeat seul), dans la limite de maxParked.
+     */
+    public PerfRun start(String url, LoadShape shape, LoadShapeConfig config, RunPhases phases) {
+
+        PerfRun run = runs.newRun("shape", "LOAD_SHAPE", url, null);
+        String runId = run.getId();
+        run.snapshots.reset(config.getMaxSnapshots());
+        ShapeRun fleet = new ShapeRun(run, config);
+
+        runs.launch(run, () -> {
+            log.info("Starting load-shape test - {} over {}s", shape.name(), shape.durationSec());
+
+            long startTime = System.currentTimeMillis();
+            MeasurementWindow w = runs.openWindow(run, phases, shape.durationSec());
+            long intervalMs = Math.max(100, config.getReconcileIntervalMs());
+            // historique borné : on sous-échantillonne les longs profils
+            long ticks = (long) Math.ceil(shape.durationSec() * 1000 / intervalMs) + 1;
+            long historyStride = Math.max(1, (ticks + HISTORY_MAX - 1) / HISTORY_MAX);
+            List<Map<String, Object>> history = new ArrayList<>();
+            int peakTarget = 0;
+
+            ScheduledFuture<?> metricsTask = runs.scheduleMetrics(run);
+            ScheduledFuture<?> snapshotTask = runs.scheduleSnapshots(run, config.getSnapshotIntervalSec());
+
+            try {
+                for (long tick = 0; run.isRunning(); tick++) {
+                    double elapsedSec = (System.currentTimeMillis() - startTime) / 1000.0;
+                    if (elapsedSec > shape.durationSec()) break;
+
+                    // Simulateur saturé : la cible ne monte plus tant qu'il ne s'est pas rétabli
+                    boolean saturated = runs.isSaturated();
+                    int target = shape.targetAt(elapsedSec);
+                    if (saturated && run.loadTarget != null) target = Math.min(target, run.loadTarget);
+                    peakTarget = Math.max(peakTarget, target);
+                    reconcile(fleet, target);
+
+                    if (tick % historyStride == 0) {
+                        Map<String, Object> point = new LinkedHashMap<>();
+                        point.put("t", Math.round(elapsedSec * 10) / 10.0);
+                        point.put("target", target);
+                        point.put("running", run.loadRunning);
+                        point.put("connected", run.connectedCps.size());
+                        point.put("activeTransactions", run.activeSessions.get());
+                        if (saturated) point.put("saturated", true);
+                        history.add(point);
+                    }
+                    Thread.sleep(intervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Load-shape test failed", e);
+            } finally {
+                run.stop();
+                resultStore.closeRun(run.getId());
+                metricsTask.cancel(false);
+                snapshotTask.cancel(false);
+                for (ShapeCp cp : fleet.cps.values()) {
+                    ocppClient.disconnect(cp.sessionId);
+                }
+                fleet.cps.clear();
+                run.connectedCps.clear();
+                runs.captureSnapshot(run);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("mode", "LOAD_SHAPE");
+            result.put("runId", runId);
+            result.put("shape", shape.name());
+            result.put("durationSec", shape.durationSec());
+            result.put("peakTarget", peakTarget);
+            result.put("cycles", run.totalSessions.get());
+            result.put("successCount", run.successCount.get());
+            result.put("errorCount", run.errorCount.get());
+            result.put("connectionsOpened", fleet.opened.get());
+            result.put("connectionsReused", fleet.reused.get());
+            result.put("connectionsClosed", fleet.closed.get());
+            result.put("totalTime", System.currentTimeMillis() - startTime);
+            result.put("history", history);
+            result.put("latency", run.latency.snapshot());
+            result.put("drift", runs.getSoakDrift(run));
+
+            LatencyHistograms measured = runs.closeWindow(run, w, result);
+            runArchive.save(runId, "LOAD_SHAPE", startTime, runs.runConfig(url, null, "shape", config, "phases", phases),
+                    result, measured);
+            return result;
+        });
+        return run;
+    }
+
+    /** Un pas de réconciliation (thread de la boucle uniquement). */
+    private void reconcile(ShapeRun fleet, int target) {
+        List<ShapeCp> active = new ArrayList<>();
+        List<ShapeCp> draining = new ArrayList<>();
+        List<ShapeCp> parked = new ArrayList<>();
+        int running = 0;
+        for (ShapeCp cp : fleet.cps.values()) {
+            switch (cp.state.get()) {
+                case CONNECTING -> running++;
+                case ACTIVE -> { running++; active.add(cp); }
+                case DRAINING -> draining.add(cp);
+                case PARKED -> parked.add(cp);
+            }
+        }
+
+        int deficit = target - running;
+        // 1) CPs en cours de retrait : leur cycle tourne encore, on l'annule simplement
+        for (Iterator<ShapeCp> it = draining.iterator(); deficit > 0 && it.hasNext(); ) {
+            ShapeCp cp = it.next();
+            if (cp.state.compareAndSet(CpState.DRAINING, CpState.ACTIVE)) {
+                deficit--;
+            } else if (cp.state.get() == CpState.PARKED) {
+                parked.add(cp);
+            }
+        }
+        // 2) CPs garés : connexion réutilisée
+        for (Iterator<ShapeCp> it = parked.iterator(); deficit > 0 && it.hasNext(); ) {
+            ShapeCp cp = it.next();
+            it.remove();
+            if (!ocppClient.isConnected(cp.sessionId)) {
+                dropShapeCp(fleet, cp);
+                continue;
+            }
+            if (cp.state.compareAndSet(CpState.PARKED, CpState.ACTIVE)) {
+                fleet.reused.incrementAndGet();
+                scheduleShapeCycle(fleet, cp, 0);
+                deficit--;
+            }
+        }
+        // 3) nouvelles connexions, bornées par connectConcurrency ; le reste au pas suivant
+        while (deficit > 0 && fleet.connectSlots.tryAcquire()) {
+            ShapeCp cp = new ShapeCp(fleet.run, fleet.seq.incrementAndGet());
+            fleet.cps.put(cp.sessionId, cp);
+            connectShapeCp(fleet, cp);
+            deficit--;
+        }
+        // 4) surplus : retrait gracieux (fin de la transaction en cours puis mise au garage)
+        for (Iterator<ShapeCp> it = active.iterator(); deficit < 0 && it.hasNext(); ) {
+            if (it.next().state.compareAndSet(CpState.ACTIVE, CpState.DRAINING)) deficit++;
+        }
+        // 5) garage plein : on ferme les connexions en trop
+        for (int i = parked.size() - Math.max(0, fleet.config.getMaxParked()); i > 0; i--) {
+            dropShapeCp(fleet, parked.get(i - 1));
+        }
+        fleet.run.loadTarget = target;
+        fleet.run.loadRunning = target - deficit;
+    }
+
+    private void connectShapeCp(ShapeRun fleet, ShapeCp cp) {
+        LoadShapeConfig config = fleet.config;
+        ocppClient.connect(cp.sessionId, fleet.run.getUrl(), cp.cpId, null)
+                .orTimeout(30, TimeUnit.SECONDS)
+                .whenComplete((r, ex) -> {
+                    fleet.connectSlots.release();
+                    if (ex != null) {
+                        fleet.run.errorCount.incrementAndGet();
+                        log.debug("Shape CP {} failed to connect: {}", cp.cpId, ex.getMessage());
+                        fleet.cps.remove(cp.sessionId);
+                        ocppClient.disconnect(cp.sessionId);
+                        return;
+                    }
+                    fleet.opened.incrementAndGet();
+                    fleet.run.connectedCps.add(cp.sessionId);
+                    ocppClient.setMeterValueInterval(cp.sessionId, config.getMeterValueIntervalSec());
+                    ocppClient.startHeartbeat(cp.sessionId, config.getHeartbeatIntervalSec());
+                    if (cp.state.compareAndSet(CpState.CONNECTING, CpState.ACTIVE)) {
+                        scheduleShapeCycle(fleet, cp, 0);
+                    }
+                });
+    }
+
+    private void dropShapeCp(ShapeRun fleet, ShapeCp cp) {
+        if (fleet.cps.remove(cp.sessionId) == null) return;
+        fleet.run.connectedCps.remove(cp.sessionId);
+        ocppClient.disconnect(cp.sessionId);
+        fleet.closed.incrementAndGet();
+    }
+
+    private void scheduleShapeCycle(ShapeRun fleet, ShapeCp cp, long delaySec) {
+        if (!fleet.run.isRunning()) return;
+        try {
+            runs.scheduler().schedule(() -> shapeCycle(fleet, cp), delaySec, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Shape cycle for {} not scheduled: {}", cp.cpId, e.getMessage());
+        }
+    }
+
+    private void shapeCycle(ShapeRun fleet, ShapeCp cp) {
+        if (!fleet.run.isRunning()) return;
+        // retrait demandé pendant la pause : le CP reste connecté, sans transaction
+        if (cp.state.compareAndSet(CpState.DRAINING, CpState.PARKED)) return;
+        if (!ocppClient.isConnected(cp.sessionId)) {
+            // connexion perdue : le CP sort du parc, la réconciliation le remplacera
+            fleet.run.errorCount.incrementAndGet();
+            dropShapeCp(fleet, cp);
+            return;
+        }
+
+        fleet.run.totalSessions.incrementAndGet();
+        long cycleStart = System.currentTimeMillis();
+        ocppClient.authorize(cp.sessionId, cp.tagId)
+                .thenCompose(r -> ocppClient.startTransaction(cp.sessionId, cp.tagId))
+                .whenComplete((r, ex) -> {
+                    if (ex != null) {
+                        fleet.run.errorCount.incrementAndGet();
+                        scheduleShapeCycle(fleet, cp, fleet.config.getIdleSec());
+                        return;
+                    }
+                    fleet.run.activeSessions.incrementAndGet();
+                    scheduleShapeStop(fleet, cp, cycleStart);
+                });
+    }
+
+    private void scheduleShapeStop(ShapeRun fleet, ShapeCp cp, long cycleStart) {
+        Runnable stop = () -> ocppClient.stopTransaction(cp.sessionId).whenComplete((r, ex) -> {
+            fleet.run.activeSessions.decrementAndGet();
+            if (ex != null) {
+                fleet.run.errorCount.incrementAndGet();
+            } else {
+                fleet.run.successCount.incrementAndGet();
+                long cycleMs = System.currentTimeMillis() - cycleStart;
+                fleet.run.totalLatency.addAndGet(cycleMs);
+                fleet.run.maxLatency.updateAndGet(max -> Math.max(max, cycleMs));
+            }
+            scheduleShapeCycle(fleet, cp, fleet.config.getIdleSec());
+        });
+        try {
+            runs.scheduler().schedule(stop, fleet.config.getChargeDurationSec(), TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            fleet.run.activeSessions.decrementAndGet();
+        }
+    }
+}
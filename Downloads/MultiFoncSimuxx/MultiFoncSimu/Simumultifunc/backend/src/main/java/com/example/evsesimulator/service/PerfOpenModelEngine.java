@@ -0,0 +1,141 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.ArrivalProfile;
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.RunPhases;
+import com.example.evsesimulator.perf.ScenarioPlan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moteur du modèle ouvert (OPEN_MODEL) : arrivées au débit d'un profil, sans attendre
+ * les complétions ; chaque arrivée est une session {@link PerfSessionRunner}.
+ * Le run (compteurs, fenêtres, fin de vie) est tenu par {@link PerformanceService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfOpenModelEngine {
+
+    private final PerformanceService runs;
+    private final PerfSessionRunner sessionRunner;
+    private final PerfRunArchive runArchive;
+
+    /**
+     * Modèle ouvert : démarre les sessions au débit cible sans attendre les complétions.
+     * Si le simulateur ne suit pas, les démarrages sont comptés en retard (lateStarts)
+     * ou abandonnés quand maxInFlight est atteint (droppedStarts).
+     */
+    public PerfRun start(String url, ArrivalProfile profile) {
+        return start(url, profile, null, new RunPhases());
+    }
+
+    public PerfRun start(String url, ArrivalProfile profile, ScenarioPlan plan, RunPhases phases) {
+
+        PerfRun run = runs.newRun("open", "OPEN_MODEL", url, plan);
+        String runId = run.getId();
+
+        runs.launch(run, () -> {
+            log.info("Starting open-model performance test - {} at {} sessions/s",
+                    profile.getMode(), profile.getRatePerSec());
+
+            // Pool propre au run : le nombre de threads est borné par perf.run.max-threads
+            ExecutorService sessionExecutor = run.sessions;
+            ScheduledFuture<?> metricsTask = runs.scheduleMetrics(run);
+
+            long startedAt = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            MeasurementWindow w = runs.openWindow(run, phases, profile.getDurationSec());
+            long durationNanos = TimeUnit.SECONDS.toNanos(profile.getDurationSec());
+            long lateThresholdNanos = TimeUnit.MILLISECONDS.toNanos(profile.getLateThresholdMs());
+            long intended = startNanos;
+            int launched = 0;
+            AtomicInteger inFlight = new AtomicInteger();
+
+            try {
+                while (run.isRunning()) {
+                    double elapsedSec = (intended - startNanos) / 1e9;
+                    run.targetArrivalRate = profile.rateAt(elapsedSec);
+                    intended += profile.nextGapNanos(elapsedSec);
+
+                    if (durationNanos > 0 && intended - startNanos > durationNanos) break;
+                    if (profile.getMaxSessions() > 0 && launched >= profile.getMaxSessions()) break;
+
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+
+                    int sessionNum = run.totalSessions.incrementAndGet();
+                    launched++;
+
+                    // compté à la soumission : une session en file d'attente du pool est déjà en vol
+                    if (inFlight.get() >= profile.getMaxInFlight()) {
+                        run.droppedStarts.incrementAndGet();
+                        continue;
+                    }
+
+                    String cpId = String.format("PERF-%06d", sessionNum);
+                    String tagId = String.format("TAG-%06d", sessionNum);
+                    inFlight.incrementAndGet();
+                    try {
+                        sessionRunner.start(run, sessionNum, cpId, tagId, sessionExecutor, true, intended, lateThresholdNanos)
+                                .whenComplete((r, ex) -> inFlight.decrementAndGet());
+                    } catch (RejectedExecutionException e) {
+                        inFlight.decrementAndGet();
+                        run.droppedStarts.incrementAndGet();
+                    }
+                }
+
+                // Laisser finir les sessions en vol
+                while (inFlight.get() > 0 && run.isRunning()) {
+                    Thread.sleep(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Open-model performance test failed", e);
+            } finally {
+                metricsTask.cancel(false);
+                run.stop();
+                runs.sealResults(run);
+            }
+
+            long totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("mode", profile.getMode().name());
+            result.put("runId", runId);
+            result.put("totalSessions", run.totalSessions.get());
+            result.put("successCount", run.successCount.get());
+            result.put("errorCount", run.errorCount.get());
+            result.put("droppedStarts", run.droppedStarts.get());
+            result.put("lateStarts", run.lateStarts.get());
+            result.put("maxStartLagMs", run.maxStartLagMs.get());
+            result.put("offeredRate", totalTime > 0 ? run.totalSessions.get() * 1000.0 / totalTime : 0);
+            result.put("successRate", run.totalSessions.get() > 0 ?
+                    (double) run.successCount.get() / run.totalSessions.get() * 100 : 0);
+            result.put("totalTime", totalTime);
+            result.put("avgLatency", run.successCount.get() > 0 ?
+                    run.totalLatency.get() / run.successCount.get() : 0);
+            result.put("maxLatency", run.maxLatency.get());
+            result.put("latency", run.latency.snapshot());
+            if (plan != null) {
+                result.put("scenario", plan.getName());
+                result.put("flows", runs.getFlowStats(run));
+            }
+
+            LatencyHistograms measured = runs.closeWindow(run, w, result);
+            runArchive.save(runId, "OPEN_MODEL", startedAt, runs.runConfig(url, plan, "profile", profile, "phases", phases),
+                    result, measured);
+            return result;
+        });
+        return run;
+    }
+}
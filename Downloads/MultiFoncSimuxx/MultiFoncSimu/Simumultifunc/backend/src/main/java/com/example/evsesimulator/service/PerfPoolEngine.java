@@ -0,0 +1,240 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.ArrivalProfile;
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.PoolConfig;
+import com.example.evsesimulator.perf.RunPhases;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moteur des tests de débit transactionnel sur parc pré-booté (TX_POOL) : connexion des CPs,
+ * puis transactions au débit d'un profil d'arrivée sur les CPs libres.
+ * Le run (compteurs, fenêtres, fin de vie) est tenu par {@link PerformanceService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfPoolEngine {
+
+    private final PerformanceService runs;
+    private final OCPPWebSocketClient ocppClient;
+    private final PerfResultStore resultStore;
+    private final PerfRunArchive runArchive;
+
+    /**
+     * Débit transactionnel isolé du coût de connexion : poolSize CPs sont d'abord connectés
+     * et bootés, puis les transactions (Authorize → Start → MeterValues → Stop) sont lancées
+     * au débit du profil d'arrivée sur les CPs libres du parc. Les histogrammes sont remis
+     * à zéro après le boot : les percentiles ne contiennent que la phase transactionnelle.
+     */
+    public PerfRun start(String url, PoolConfig config, RunPhases phases) {
+
+        PerfRun run = runs.newRun("pool", "TX_POOL", url, null);
+        String runId = run.getId();
+        ArrivalProfile profile = config.getArrival();
+
+        runs.launch(run, () -> {
+            log.info("Starting pooled transaction test - {} CPs, {} at {} tx/s",
+                    config.getPoolSize(), profile.getMode(), profile.getRatePerSec());
+
+            long startedAt = System.currentTimeMillis();
+            ScheduledFuture<?> metricsTask = runs.scheduleMetrics(run);
+            Queue<Integer> idle = new ConcurrentLinkedQueue<>();
+            Map<String, Object> bootPhase = new LinkedHashMap<>();
+            AtomicInteger poolLost = new AtomicInteger();
+            AtomicInteger poolExhausted = new AtomicInteger();
+            long driveNanos = 0;
+            MeasurementWindow w = null;
+
+            try {
+                // 1) Boot du parc
+                long bootStart = System.nanoTime();
+                Semaphore connectSlots = new Semaphore(Math.max(1, config.getConnectConcurrency()));
+                CountDownLatch booted = new CountDownLatch(config.getPoolSize());
+                AtomicInteger bootFailed = new AtomicInteger();
+                for (int i = 1; i <= config.getPoolSize() && run.isRunning(); i++) {
+                    connectSlots.acquire();
+                    int n = i;
+                    String sessionId = poolSessionId(run, n);
+                    ocppClient.connect(sessionId, url, String.format("POOL-%06d", n), null)
+                            .orTimeout(30, TimeUnit.SECONDS)
+                            .whenComplete((r, ex) -> {
+                                connectSlots.release();
+                                if (ex != null) {
+                                    bootFailed.incrementAndGet();
+                                    ocppClient.disconnect(sessionId);
+                                } else {
+                                    run.connectedCps.add(sessionId);
+                                    ocppClient.startHeartbeat(sessionId, config.getHeartbeatIntervalSec());
+                                    idle.add(n);
+                                }
+                                booted.countDown();
+                            });
+                }
+                while (run.isRunning() && !booted.await(200, TimeUnit.MILLISECONDS)) {
+                    // attente du boot complet (ou d'un stop)
+                }
+                long bootMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bootStart);
+                bootPhase.put("booted", idle.size());
+                bootPhase.put("failed", bootFailed.get());
+                bootPhase.put("bootMs", bootMs);
+                bootPhase.put("connectRatePerSec", bootMs > 0 ? idle.size() * 1000.0 / bootMs : 0);
+                bootPhase.put("latency", run.latency.snapshot());
+                log.info("Pool booted: {} CPs in {} ms ({} failed)", idle.size(), bootMs, bootFailed.get());
+
+                // 2) Phase transactionnelle : seules ces mesures restent dans les histogrammes
+                run.latency.reset();
+                long startNanos = System.nanoTime();
+                // les phases se comptent à partir du début de la phase transactionnelle
+                w = runs.openWindow(run, phases, profile.getDurationSec());
+                long durationNanos = TimeUnit.SECONDS.toNanos(profile.getDurationSec());
+                long lateThresholdNanos = TimeUnit.MILLISECONDS.toNanos(profile.getLateThresholdMs());
+                long intended = startNanos;
+                int launched = 0;
+
+                boolean poolReady = !idle.isEmpty();
+                if (!poolReady) log.warn("No charge point booted, skipping transaction phase");
+
+                while (run.isRunning() && poolReady) {
+                    double elapsedSec = (intended - startNanos) / 1e9;
+                    run.targetArrivalRate = profile.rateAt(elapsedSec);
+                    intended += profile.nextGapNanos(elapsedSec);
+
+                    if (durationNanos > 0 && intended - startNanos > durationNanos) break;
+                    if (profile.getMaxSessions() > 0 && launched >= profile.getMaxSessions()) break;
+
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+
+                    run.totalSessions.incrementAndGet();
+                    launched++;
+                    // runPooledTransaction compte la transaction dès sa soumission, la borne est exacte
+                    if (run.activeSessions.get() >= profile.getMaxInFlight()) {
+                        run.droppedStarts.incrementAndGet();
+                        continue;
+                    }
+                    Integer n = nextPooledCp(run, idle, poolLost);
+                    if (n == null) {
+                        // tous les CPs sont en transaction : le parc est trop petit pour ce débit
+                        poolExhausted.incrementAndGet();
+                        run.droppedStarts.incrementAndGet();
+                        continue;
+                    }
+                    long lag = System.nanoTime() - intended;
+                    if (lag > lateThresholdNanos) run.lateStarts.incrementAndGet();
+                    run.maxStartLagMs.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(lag), Math::max);
+                    runPooledTransaction(run, n, config, intended, idle);
+                }
+
+                while (run.activeSessions.get() > 0 && run.isRunning()) {
+                    Thread.sleep(100);
+                }
+                driveNanos = System.nanoTime() - startNanos;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Pooled transaction test failed", e);
+            } finally {
+                metricsTask.cancel(false);
+                run.stop();
+                resultStore.closeRun(run.getId());
+                for (int i = 1; i <= config.getPoolSize(); i++) {
+                    ocppClient.disconnect(poolSessionId(run, i));
+                }
+                run.connectedCps.clear();
+            }
+
+            double driveSec = driveNanos / 1e9;
+            Map<String, Object> throughput = new TreeMap<>();
+            for (String action : run.latency.actions()) {
+                long count = run.latency.raw(action).getTotalCount();
+                throughput.put(action, driveSec > 0 ? count / driveSec : 0);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("mode", "TX_POOL");
+            result.put("runId", runId);
+            result.put("poolSize", config.getPoolSize());
+            result.put("bootPhase", bootPhase);
+            result.put("transactions", run.totalSessions.get());
+            result.put("successCount", run.successCount.get());
+            result.put("errorCount", run.errorCount.get());
+            result.put("droppedStarts", run.droppedStarts.get());
+            result.put("poolExhausted", poolExhausted.get());
+            result.put("poolLost", poolLost.get());
+            result.put("lateStarts", run.lateStarts.get());
+            result.put("maxStartLagMs", run.maxStartLagMs.get());
+            result.put("driveSec", driveSec);
+            result.put("transactionsPerSec", driveSec > 0 ? run.successCount.get() / driveSec : 0);
+            result.put("throughputPerSec", throughput);
+            result.put("avgTransactionMs", run.successCount.get() > 0 ? run.totalLatency.get() / run.successCount.get() : 0);
+            result.put("maxTransactionMs", run.maxLatency.get());
+            result.put("latency", run.latency.snapshot());
+
+            LatencyHistograms measured = runs.closeWindow(run, w, result);
+            runArchive.save(runId, "TX_POOL", startedAt, runs.runConfig(url, null, "pool", config, "phases", phases),
+                    result, measured);
+            return result;
+        });
+        return run;
+    }
+
+    private static String poolSessionId(PerfRun run, int n) {
+        return run.sessionId(String.format("pool-POOL-%06d", n));
+    }
+
+    /** Prochain CP libre encore connecté ; les CPs déconnectés sortent du parc. */
+    private Integer nextPooledCp(PerfRun run, Queue<Integer> idle, AtomicInteger poolLost) {
+        Integer n;
+        while ((n = idle.poll()) != null) {
+            if (ocppClient.isConnected(poolSessionId(run, n))) return n;
+            poolLost.incrementAndGet();
+            run.connectedCps.remove(poolSessionId(run, n));
+            ocppClient.disconnect(poolSessionId(run, n));
+        }
+        return null;
+    }
+
+    private void runPooledTransaction(PerfRun run, int n, PoolConfig config, long intended, Queue<Integer> idle) {
+        String sessionId = poolSessionId(run, n);
+        String tagId = String.format("TAG-%06d", n);
+        long txStart = System.nanoTime();
+        run.activeSessions.incrementAndGet();
+
+        CompletableFuture<Object> chain = ocppClient.authorize(sessionId, tagId, intended)
+                .thenCompose(r -> ocppClient.startTransaction(sessionId, tagId));
+        for (int i = 0; i < config.getMeterValuesPerTransaction(); i++) {
+            chain = chain.thenCompose(r -> ocppClient.sendMeterValues(sessionId));
+        }
+        if (config.getHoldMs() > 0) {
+            chain = chain.thenApplyAsync(r -> r,
+                    CompletableFuture.delayedExecutor(config.getHoldMs(), TimeUnit.MILLISECONDS));
+        }
+        chain.thenCompose(r -> ocppClient.stopTransaction(sessionId))
+                .handle((r, ex) -> {
+                    if (ex == null) {
+                        run.successCount.incrementAndGet();
+                        long txMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - txStart);
+                        run.totalLatency.addAndGet(txMs);
+                        run.maxLatency.updateAndGet(max -> Math.max(max, txMs));
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    run.errorCount.incrementAndGet();
+                    // transaction éventuellement restée ouverte : on la clôt avant de rendre le CP
+                    return ocppClient.stopTransaction(sessionId).handle((x, e) -> null);
+                })
+                .thenCompose(f -> f)
+                .whenComplete((r, ex) -> {
+                    run.activeSessions.decrementAndGet();
+                    idle.add(n);
+                });
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.ResultJournal;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Résultats de perf par run, hors du tas : data/perf/&lt;runId&gt;/results.ndjson.
+ * Une seule ligne compacte par session (nulls omis, dates en epoch).
+ * Un journal ouvert par run actif : plusieurs runs peuvent écrire en parallèle.
+ */
+@Slf4j
+@Service
+public class PerfResultStore {
+
+    public static final String RESULTS_FILE = "results.ndjson";
+    /** index clairsemé du journal, écrit au scellement du run */
+    public static final String INDEX_FILE = "results.idx";
+    private static final DateTimeFormatter RUN_ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path baseDir;
+    private final ObjectWriter resultWriter;
+    private final ObjectReader resultReader;
+    private final int queueCapacity;
+    private final long fsyncIntervalMs;
+
+    /** dernier run démarré (run par défaut des requêtes sans runId) */
+    private volatile String currentRunId;
+    private final Map<String, ResultJournal> open = new ConcurrentHashMap<>();
+    /** résultats arrivés après le scellement de leur run (sessions encore en vol au-delà du délai de grâce) */
+    private final LongAdder droppedAfterClose = new LongAdder();
+
+    public PerfResultStore(SerializationRegistry serialization,
+                           @Value("${perf.dir:./data/perf}") String perfDir,
+                           @Value("${perf.results.queue-capacity:65536}") int queueCapacity,
+                           @Value("${perf.results.fsync-interval-ms:1000}") long fsyncIntervalMs) throws IOException {
+        this.baseDir = Paths.get(perfDir).toAbsolutePath().normalize();
+        this.resultWriter = serialization.mapper().copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writerFor(PerformanceService.PerfResult.class);
+        this.resultReader = serialization.mapper().readerFor(PerformanceService.PerfResult.class);
+        this.queueCapacity = queueCapacity;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        Files.createDirectories(baseDir);
+    }
+
+    /** Ouvre le journal d'un nouveau run ; les runs déjà ouverts continuent d'écrire. */
+    public synchronized String startRun(String prefix) {
+        String runId = prefix + "-" + LocalDateTime.now().format(RUN_ID);
+        Path dir = baseDir.resolve(runId);
+        for (int i = 2; Files.exists(dir); i++) dir = baseDir.resolve(runId + "-" + i);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create run directory " + dir, e);
+        }
+        String id = dir.getFileName().toString();
+        ResultJournal journal = new ResultJournal(dir.resolve(RESULTS_FILE), dir.resolve(INDEX_FILE), resultWriter, queueCapacity, fsyncIntervalMs);
+        open.put(id, journal);
+        currentRunId = id;
+        log.info("Perf results for run {} streamed to {}", id, journal.getFile());
+        return id;
+    }
+
+    public void append(String runId, PerformanceService.PerfResult result) {
+        ResultJournal j = open.get(runId);
+        if (j != null) j.append(result);
+        else droppedAfterClose.increment();
+    }
+
+    public long getDroppedAfterClose() {
+        return droppedAfterClose.sum();
+    }
+
+    /** Vide la file d'écriture et fsync ; le fichier reste consultable. */
+    public void closeRun(String runId) {
+        ResultJournal j = open.remove(runId);
+        if (j != null) {
+            j.close();
+            log.info("Run {} sealed: {} results, {} dropped", runId, j.getWritten(), j.getDropped());
+        }
+    }
+
+    public String getCurrentRunId() {
+        return currentRunId;
+    }
+
+    /** Vrai tant que le journal du run accepte des résultats (run non scellé). */
+    public boolean isOpen(String runId) {
+        return runId != null && open.containsKey(runId);
+    }
+
+    public Path getBaseDir() {
+        return baseDir;
+    }
+
+    public Path runDir(String runId) {
+        Path dir = baseDir.resolve(runId).normalize();
+        if (!dir.startsWith(baseDir) || !Files.isDirectory(dir)) {
+            throw new IllegalArgumentException("Unknown run: " + runId);
+        }
+        return dir;
+    }
+
+    public Path resultsFile(String runId) {
+        return runDir(runId).resolve(RESULTS_FILE);
+    }
+
+    public List<Map<String, Object>> listRuns() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(baseDir)) {
+            dirs.filter(Files::isDirectory).sorted(Comparator.reverseOrder()).forEach(d -> {
+                Path f = d.resolve(RESULTS_FILE);
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("runId", d.getFileName().toString());
+                m.put("bytes", f.toFile().length());
+                m.put("active", open.containsKey(d.getFileName().toString()));
+                out.add(m);
+            });
+        } catch (IOException e) {
+            log.error("Unable to list perf runs in {}", baseDir, e);
+        }
+        return out;
+    }
+
+    /** Écritures en cours par run : lignes écrites, pertes, octets, fsyncs, file d'attente. */
+    public List<Map<String, Object>> journalStats() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        open.forEach((runId, j) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("runId", runId);
+            m.put("written", j.getWritten());
+            m.put("dropped", j.getDropped());
+            m.put("bytes", j.getBytes());
+            m.put("fsyncs", j.getFsyncs());
+            m.put("queueDepth", j.getQueueDepth());
+            out.add(m);
+        });
+        return out;
+    }
+
+
+    /**
+     * Page de résultats filtrée. Sans filtre, l'index clairsemé (en mémoire pour un run
+     * ouvert, results.idx pour un run scellé) évite de relire le fichier depuis le début.
+     */
+    public Map<String, Object> query(String runId, long offset, int limit,
+                                     Predicate<PerformanceService.PerfResult> filter) throws IOException {
+        String id = runId == null || runId.isBlank() ? currentRunId : runId;
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("runId", id);
+        page.put("offset", offset);
+        page.put("limit", limit);
+        if (id == null) {
+            page.put("items", List.of());
+            return page;
+        }
+
+        Path file = resultsFile(id);
+        long startByte = 0;
+        long line = 0;
+        if (filter == null) {
+            ResultJournal j = open.get(id);
+            long[] hint = j != null ? j.seekHint(offset) : ResultJournal.seekHint(runDir(id).resolve(INDEX_FILE), offset);
+            startByte = hint[0];
+            line = hint[1];
+        }
+
+        List<PerformanceService.PerfResult> items = new ArrayList<>();
+        long matched = filter == null ? line : 0;
+        long next = -1;
+        if (Files.exists(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ch.position(startByte);
+                InputStream in = Channels.newInputStream(ch);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String raw;
+                while ((raw = reader.readLine()) != null) {
+                    if (raw.isBlank()) continue;
+                    PerformanceService.PerfResult r;
+                    try {
+                        r = resultReader.readValue(raw);
+                    } catch (IOException e) {
+                        continue; // ligne partielle en cours d'écriture
+                    }
+                    if (filter != null && !filter.test(r)) continue;
+                    if (matched++ < offset) continue;
+                    if (items.size() >= limit) {
+                        next = offset + limit;
+                        break;
+                    }
+                    items.add(r);
+                }
+            }
+        }
+        page.put("items", items);
+        page.put("nextOffset", next < 0 ? null : next);
+        return page;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        new ArrayList<>(open.keySet()).forEach(this::closeRun);
+    }
+}
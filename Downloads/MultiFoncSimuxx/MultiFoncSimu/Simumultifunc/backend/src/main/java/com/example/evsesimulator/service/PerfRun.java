@@ -0,0 +1,164 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.RunSnapshots;
+import com.example.evsesimulator.perf.ScenarioPlan;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Un run de perf isolé : identifiant, compteurs, histogrammes, pool de sessions et cycle
+ * de vie propres. Plusieurs runs tournent en parallèle dans la même JVM (endpoints CSMS
+ * différents) ; leurs sessions OCPP sont préfixées par {@link #getScope()} pour ne pas
+ * entrer en collision et pour router les latences vers le bon run.
+ */
+public class PerfRun {
+
+    public enum Status { RUNNING, STOPPING, COMPLETED, FAILED }
+
+    private final String id;
+    private final String mode;
+    private final String url;
+    private final String scope;
+    private final long startedAt = System.currentTimeMillis();
+    private final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+
+    volatile Status status = Status.RUNNING;
+    final ScenarioPlan plan;
+    /** pool des sessions du run, borné (budget de threads) et vidé quand il est inactif */
+    final ThreadPoolExecutor sessions;
+
+    final LatencyHistograms latency = new LatencyHistograms();
+    final AtomicInteger totalSessions = new AtomicInteger();
+    final AtomicInteger activeSessions = new AtomicInteger();
+    final AtomicInteger successCount = new AtomicInteger();
+    final AtomicInteger errorCount = new AtomicInteger();
+    final AtomicLong totalLatency = new AtomicLong();
+    final AtomicLong maxLatency = new AtomicLong();
+
+    // Modèle ouvert : démarrages abandonnés / en retard sur l'instant prévu
+    final AtomicInteger droppedStarts = new AtomicInteger();
+    final AtomicInteger lateStarts = new AtomicInteger();
+    final AtomicLong maxStartLagMs = new AtomicLong();
+    volatile double targetArrivalRate;
+
+    // Test adaptatif : limite de concurrence courante
+    volatile int concurrencyLimit;
+
+    final Map<String, FlowCounters> flowCounters = new ConcurrentHashMap<>();
+
+    // Soak / profil de charge : snapshots bornés et CPs connectés
+    final RunSnapshots snapshots = new RunSnapshots();
+    final Set<String> connectedCps = ConcurrentHashMap.newKeySet();
+    final Set<String> soakSessions = ConcurrentHashMap.newKeySet();
+    volatile Integer loadTarget;
+    volatile Integer loadRunning;
+
+    volatile MeasurementWindow window;
+
+    // Batch CSV : source en cours de lecture
+    volatile Iterator<String[]> batchSource;
+    volatile long batchTotalBytes;
+
+    record FlowCounters(LongAdder started, LongAdder ok, LongAdder failed) {
+        FlowCounters() {
+            this(new LongAdder(), new LongAdder(), new LongAdder());
+        }
+    }
+
+    PerfRun(String id, String mode, String url, String scope, ScenarioPlan plan, int maxThreads) {
+        this.id = id;
+        this.mode = mode;
+        this.url = url;
+        this.scope = scope;
+        this.plan = plan;
+        int threads = Math.max(1, maxThreads);
+        AtomicInteger seq = new AtomicInteger();
+        this.sessions = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "perf-" + scope + "-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.sessions.allowCoreThreadTimeOut(true);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    public CompletableFuture<Map<String, Object>> getResult() {
+        return result;
+    }
+
+    /** sessionId OCPP propre au run (ex. "r2:perf-PERF-000001"). */
+    String sessionId(String local) {
+        return scope + OcppTrafficMetrics.SCOPE_SEPARATOR + local;
+    }
+
+    void stop() {
+        if (status == Status.RUNNING) status = Status.STOPPING;
+    }
+
+    void complete(Map<String, Object> r) {
+        status = Status.COMPLETED;
+        result.complete(r);
+    }
+
+    void fail(Throwable e) {
+        status = Status.FAILED;
+        result.completeExceptionally(e);
+    }
+
+    /** Vue courte pour la liste des runs actifs. */
+    public Map<String, Object> summary() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("runId", id);
+        m.put("mode", mode);
+        m.put("url", url);
+        m.put("status", status);
+        m.put("startedAt", startedAt);
+        m.put("elapsedMs", System.currentTimeMillis() - startedAt);
+        m.put("totalSessions", totalSessions.get());
+        m.put("activeSessions", activeSessions.get());
+        m.put("successCount", successCount.get());
+        m.put("errorCount", errorCount.get());
+        m.put("sessionThreads", sessions.getPoolSize());
+        m.put("queuedSessions", sessions.getQueue().size());
+        MeasurementWindow w = window;
+        if (w != null) m.put("phase", w.getPhase());
+        return m;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.MannWhitney;
+import com.example.evsesimulator.perf.RunEnvironment;
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DataFormatException;
+
+/**
+ * Archive des runs de perf : data/perf/&lt;runId&gt;/run.json (configuration, environnement,
+ * résumé) et histograms.json (histogrammes HdrHistogram compressés en base64, par action).
+ * Permet de comparer deux runs même après redémarrage.
+ */
+@Slf4j
+@Service
+public class PerfRunArchive {
+
+    public static final String RUN_FILE = "run.json";
+    public static final String HISTOGRAMS_FILE = "histograms.json";
+    private static final double[] COMPARED_PERCENTILES = {50, 90, 99, 99.9};
+
+    private final PerfResultStore resultStore;
+    private final SerializationRegistry serialization;
+
+    public PerfRunArchive(PerfResultStore resultStore, SerializationRegistry serialization) {
+        this.resultStore = resultStore;
+        this.serialization = serialization;
+    }
+
+    /** Écrit la fiche du run et ses histogrammes ; un échec est journalisé sans interrompre le test. */
+    public void save(String runId, String mode, long startedAt, Map<String, Object> config,
+                     Map<String, Object> result, LatencyHistograms latency) {
+        try {
+            Path dir = resultStore.runDir(runId);
+
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("runId", runId);
+            run.put("mode", mode);
+            run.put("startedAt", startedAt);
+            run.put("endedAt", System.currentTimeMillis());
+            run.put("config", config);
+            run.put("environment", RunEnvironment.capture());
+            run.put("result", result);
+            serialization.prettyWriter().writeValue(dir.resolve(RUN_FILE).toFile(), run);
+
+            Map<String, Map<String, String>> histograms = new TreeMap<>();
+            for (String action : latency.actions()) {
+                Map<String, String> pair = new LinkedHashMap<>();
+                pair.put("raw", encode(latency.raw(action).copy()));
+                pair.put("corrected", encode(latency.corrected(action).copy()));
+                histograms.put(action, pair);
+            }
+            serialization.writer().writeValue(dir.resolve(HISTOGRAMS_FILE).toFile(), histograms);
+            log.info("Perf run {} archived ({} actions)", runId, histograms.size());
+        } catch (Exception e) {
+            log.error("Unable to archive perf run {}", runId, e);
+        }
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Map<String, Object> r : resultStore.listRuns()) {
+            String runId = (String) r.get("runId");
+            try {
+                Map<String, Object> run = load(runId);
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("runId", runId);
+                m.put("mode", run.get("mode"));
+                m.put("startedAt", run.get("startedAt"));
+                m.put("endedAt", run.get("endedAt"));
+                Object config = run.get("config");
+                if (config instanceof Map<?, ?> c) m.put("url", c.get("url"));
+                Object result = run.get("result");
+                if (result instanceof Map<?, ?> res) {
+                    m.put("totalSessions", res.get("totalSessions"));
+                    m.put("successCount", res.get("successCount"));
+                    m.put("errorCount", res.get("errorCount"));
+                }
+                out.add(m);
+            } catch (IllegalArgumentException | IOException e) {
+                // run non archivé (en cours ou interrompu)
+            }
+        }
+        return out;
+    }
+
+    public Map<String, Object> load(String runId) throws IOException {
+        Path file = resultStore.runDir(runId).resolve(RUN_FILE);
+        if (!Files.exists(file)) throw new IllegalArgumentException("Run not archived: " + runId);
+        return serialization.mapper().readValue(file.toFile(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    /** Histogrammes d'un run : action -> histogramme (raw ou corrected). */
+    public Map<String, Histogram> histograms(String runId, boolean corrected) throws IOException {
+        Path file = resultStore.runDir(runId).resolve(HISTOGRAMS_FILE);
+        if (!Files.exists(file)) throw new IllegalArgumentException("Run not archived: " + runId);
+        Map<String, Map<String, String>> encoded = serialization.mapper()
+                .readValue(file.toFile(), new TypeReference<Map<String, Map<String, String>>>() {});
+        Map<String, Histogram> out = new TreeMap<>();
+        for (Map.Entry<String, Map<String, String>> e : encoded.entrySet()) {
+            out.put(e.getKey(), decode(e.getValue().get(corrected ? "corrected" : "raw")));
+        }
+        return out;
+    }
+
+    /**
+     * Compare un run candidat à une baseline, action par action : écarts par percentile
+     * et test de Mann-Whitney sur les distributions complètes. Une régression est signalée
+     * quand le candidat est significativement plus lent (p &lt; alpha) et qu'au moins un
+     * percentile se dégrade de plus de thresholdPct.
+     */
+    public Map<String, Object> compare(String baselineId, String candidateId, double thresholdPct,
+                                       double alpha, boolean corrected) throws IOException {
+        Map<String, Histogram> baseline = histograms(baselineId, corrected);
+        Map<String, Histogram> candidate = histograms(candidateId, corrected);
+
+        Map<String, Object> actions = new TreeMap<>();
+        List<String> regressions = new ArrayList<>();
+        List<String> improvements = new ArrayList<>();
+
+        for (String action : baseline.keySet()) {
+            Histogram b = baseline.get(action);
+            Histogram c = candidate.get(action);
+            if (c == null) continue;
+
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            double worstDelta = Double.NEGATIVE_INFINITY;
+            for (double p : COMPARED_PERCENTILES) {
+                double bv = b.getValueAtPercentile(p) / 1000.0;
+                double cv = c.getValueAtPercentile(p) / 1000.0;
+                double delta = bv == 0 ? 0 : (cv - bv) / bv * 100;
+                worstDelta = Math.max(worstDelta, delta);
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("baselineMs", bv);
+                row.put("candidateMs", cv);
+                row.put("deltaPct", Math.round(delta * 10) / 10.0);
+                percentiles.put("p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p).replace(".", "")), row);
+            }
+
+            MannWhitney mw = MannWhitney.test(b, c);
+            boolean significant = mw.pValue() < alpha;
+            boolean regression = significant && mw.z() > 0 && worstDelta > thresholdPct;
+            boolean improvement = significant && mw.z() < 0;
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("baselineCount", b.getTotalCount());
+            m.put("candidateCount", c.getTotalCount());
+            m.put("percentiles", percentiles);
+            m.put("u", mw.u());
+            m.put("z", mw.z());
+            m.put("pValue", mw.pValue());
+            m.put("probCandidateSlower", mw.probCandidateSlower());
+            m.put("significant", significant);
+            m.put("regression", regression);
+            actions.put(action, m);
+
+            if (regression) regressions.add(action);
+            else if (improvement) improvements.add(action);
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("baseline", baselineId);
+        out.put("candidate", candidateId);
+        out.put("histogram", corrected ? "corrected" : "raw");
+        out.put("thresholdPct", thresholdPct);
+        out.put("alpha", alpha);
+        out.put("regression", !regressions.isEmpty());
+        out.put("regressions", regressions);
+        out.put("improvements", improvements);
+        out.put("actions", actions);
+        return out;
+    }
+
+    private static String encode(Histogram h) {
+        ByteBuffer buf = ByteBuffer.allocate(h.getNeededByteBufferCapacity());
+        int len = h.encodeIntoCompressedByteBuffer(buf);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buf.array(), len));
+    }
+
+    private static Histogram decode(String base64) throws IOException {
+        if (base64 == null) return LatencyHistograms.newHistogram();
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(base64)), 0);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted histogram", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.ScenarioDefinition;
+import com.example.evsesimulator.perf.ScenarioPlan;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Catalogue des scénarios de perf déclaratifs (data/perf-scenarios/*.json).
+ * Chaque fichier est compilé une seule fois en {@link ScenarioPlan} ; les tests
+ * ne manipulent ensuite que le plan compilé.
+ */
+@Slf4j
+@Service
+public class PerfScenarioService {
+
+    private final Path dir;
+    private final ObjectReader definitionReader;
+    private final Map<String, ScenarioPlan> plans = new ConcurrentHashMap<>();
+    private final Map<String, String> loadErrors = new ConcurrentHashMap<>();
+
+    public PerfScenarioService(SerializationRegistry serialization,
+                               @Value("${perf.scenarios.dir:./data/perf-scenarios}") String scenariosDir) throws IOException {
+        this.dir = Paths.get(scenariosDir).toAbsolutePath();
+        this.definitionReader = serialization.mapper().readerFor(ScenarioDefinition.class);
+        Files.createDirectories(dir);
+        reload();
+    }
+
+    /** Relit et recompile tous les fichiers du répertoire. */
+    public synchronized Map<String, Object> reload() {
+        Map<String, ScenarioPlan> fresh = new HashMap<>();
+        loadErrors.clear();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.toString().endsWith(".json")).sorted().forEach(p -> {
+                try {
+                    ScenarioPlan plan = ScenarioPlan.compile(definitionReader.readValue(p.toFile()));
+                    fresh.put(plan.getName(), plan);
+                } catch (Exception e) {
+                    loadErrors.put(p.getFileName().toString(), e.getMessage());
+                    log.warn("Invalid perf scenario {}: {}", p.getFileName(), e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.error("Unable to list perf scenarios in {}", dir, e);
+        }
+        plans.clear();
+        plans.putAll(fresh);
+        log.info("Loaded {} perf scenario(s) from {}", plans.size(), dir);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("loaded", new TreeSet<>(plans.keySet()));
+        out.put("errors", new TreeMap<>(loadErrors));
+        return out;
+    }
+
+    public Optional<ScenarioPlan> get(String name) {
+        return Optional.ofNullable(plans.get(name));
+    }
+
+    public List<ScenarioPlan> list() {
+        List<ScenarioPlan> out = new ArrayList<>(plans.values());
+        out.sort(Comparator.comparing(ScenarioPlan::getName));
+        return out;
+    }
+}
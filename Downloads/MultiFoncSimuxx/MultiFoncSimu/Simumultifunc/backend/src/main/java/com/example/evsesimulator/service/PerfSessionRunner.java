@@ -0,0 +1,167 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.ScenarioPlan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session unitaire des tests à sessions (adaptatif, modèle ouvert, batch CSV) : connexion,
+ * flux par défaut ou flux du scénario, déconnexion, résultat journalisé dans le run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfSessionRunner {
+
+    private final OCPPWebSocketClient ocppClient;
+    private final OcppTrafficMetrics traffic;
+    private final PerfResultStore resultStore;
+
+    CompletableFuture<PerformanceService.PerfResult> start(PerfRun run, int sessionNum, String cpId, String tagId,
+                                                        Executor sessionExecutor) {
+        return start(run, sessionNum, cpId, tagId, sessionExecutor, false, 0L, 0L);
+    }
+
+    /**
+     * @param scheduled vrai pour une arrivée planifiée (modèle ouvert)
+     * @param intendedStartNanos instant prévu (System.nanoTime) du démarrage, ignoré si non planifié
+     */
+    CompletableFuture<PerformanceService.PerfResult> start(PerfRun run, int sessionNum, String cpId, String tagId,
+                                                        Executor sessionExecutor, boolean scheduled,
+                                                        long intendedStartNanos, long lateThresholdNanos) {
+        ScenarioPlan plan = run.plan;
+        return CompletableFuture.supplyAsync(() -> {
+            PerformanceService.PerfResult result = new PerformanceService.PerfResult();
+            result.setCpId(cpId);
+            result.setTagId(tagId);
+            ScenarioPlan.Flow flow = plan == null ? null : plan.pick();
+            PerfRun.FlowCounters counters = null;
+            if (flow != null) {
+                result.setFlow(flow.name());
+                result.setTagId(flow.tagId(sessionNum));
+                counters = run.flowCounters.computeIfAbsent(flow.name(), k -> new PerfRun.FlowCounters());
+                counters.started().increment();
+            }
+
+            String sessionId = run.sessionId("perf-" + cpId);
+            run.activeSessions.incrementAndGet();
+
+            if (scheduled) {
+                long lagNanos = System.nanoTime() - intendedStartNanos;
+                if (lagNanos > lateThresholdNanos) run.lateStarts.incrementAndGet();
+                run.maxStartLagMs.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(lagNanos), Math::max);
+            }
+
+            try {
+                long startNanos = System.nanoTime();
+                long start = System.currentTimeMillis();
+
+                // Connexion
+                ocppClient.connect(sessionId, run.getUrl(), cpId, null).get(5, TimeUnit.SECONDS);
+                result.setBootMs(System.currentTimeMillis() - start);
+
+                if (flow != null) {
+                    runFlow(sessionId, flow, result);
+                } else {
+                    // Authorize
+                    start = System.currentTimeMillis();
+                    ocppClient.authorize(sessionId, tagId).get(5, TimeUnit.SECONDS);
+                    result.setAuthMs(System.currentTimeMillis() - start);
+
+                    // Start Transaction
+                    start = System.currentTimeMillis();
+                    ocppClient.startTransaction(sessionId, tagId).get(5, TimeUnit.SECONDS);
+                    result.setStartMs(System.currentTimeMillis() - start);
+
+                    // Arrivée planifiée : temps jusqu'à la charge, brut et depuis l'instant prévu
+                    if (scheduled) {
+                        traffic.record(sessionId, "SessionStart", intendedStartNanos, startNanos, System.nanoTime());
+                    }
+
+                    // Simuler la charge
+                    Thread.sleep(1000 + (int)(Math.random() * 2000));
+
+                    // Stop Transaction
+                    start = System.currentTimeMillis();
+                    ocppClient.stopTransaction(sessionId).get(5, TimeUnit.SECONDS);
+                    result.setStopMs(System.currentTimeMillis() - start);
+                }
+
+                result.setWsOk(true);
+                run.successCount.incrementAndGet();
+                if (counters != null) counters.ok().increment();
+
+                // Mettre à jour les métriques
+                long totalTime = result.getBootMs() + result.getAuthMs() +
+                        result.getStartMs() + result.getStopMs();
+                run.totalLatency.addAndGet(totalTime);
+                run.maxLatency.updateAndGet(max -> Math.max(max, totalTime));
+
+            } catch (Exception e) {
+                result.setWsOk(false);
+                result.setError(e.getMessage());
+                run.errorCount.incrementAndGet();
+                if (counters != null) counters.failed().increment();
+                log.debug("Session {} failed: {}", cpId, e.getMessage());
+            } finally {
+                // Déconnexion
+                ocppClient.disconnect(sessionId);
+                // avant la décrémentation : le run ne se termine qu'une fois le résultat journalisé
+                resultStore.append(run.getId(), result);
+                run.activeSessions.decrementAndGet();
+            }
+
+            return result;
+        }, sessionExecutor);
+    }
+
+    /** Joue les étapes d'un flux compilé sur une session déjà connectée. */
+    private void runFlow(String sessionId, ScenarioPlan.Flow flow, PerformanceService.PerfResult result) throws Exception {
+        for (ScenarioPlan.Step step : flow.steps()) {
+            for (int i = 0; i < step.repeat(); i++) {
+                long start = System.currentTimeMillis();
+                switch (step.kind()) {
+                    case AUTHORIZE -> {
+                        Object resp = ocppClient.authorize(sessionId, result.getTagId()).get(5, TimeUnit.SECONDS);
+                        checkExpected(step, resp);
+                        result.setAuthMs(System.currentTimeMillis() - start);
+                    }
+                    case START_TRANSACTION -> {
+                        Object resp = ocppClient.startTransaction(sessionId, result.getTagId()).get(5, TimeUnit.SECONDS);
+                        checkExpected(step, resp);
+                        result.setStartMs(System.currentTimeMillis() - start);
+                    }
+                    case STOP_TRANSACTION -> {
+                        ocppClient.stopTransaction(sessionId).get(5, TimeUnit.SECONDS);
+                        result.setStopMs(System.currentTimeMillis() - start);
+                    }
+                    case METER_VALUES -> ocppClient.sendMeterValues(sessionId).get(5, TimeUnit.SECONDS);
+                    case SEND -> ocppClient.sendOCPPMessage(sessionId, step.action(),
+                            step.payload() == null ? new HashMap<>() : step.payload()).get(5, TimeUnit.SECONDS);
+                    case WAIT -> { }
+                }
+                long think = step.think().sampleMillis();
+                if (think > 0) Thread.sleep(think);
+            }
+        }
+    }
+
+    private static void checkExpected(ScenarioPlan.Step step, Object response) {
+        if (step.expect() == null) return;
+        String status = null;
+        if (response instanceof Map<?, ?> m && m.get("idTagInfo") instanceof Map<?, ?> info) {
+            Object st = info.get("status");
+            status = st == null ? null : st.toString();
+        }
+        if (!step.expect().equalsIgnoreCase(status)) {
+            throw new IllegalStateException(step.action() + ": expected " + step.expect() + " but got " + status);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.RunPhases;
+import com.example.evsesimulator.perf.SoakConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Moteur des tests d'endurance (SOAK) : N CPs connectés enchaînent des cycles de charge,
+ * chacun étant une machine à états sur le planificateur partagé.
+ * Le run (compteurs, snapshots, fin de vie) est tenu par {@link PerformanceService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PerfSoakEngine {
+
+    private final PerformanceService runs;
+    private final OCPPWebSocketClient ocppClient;
+    private final PerfResultStore resultStore;
+    private final PerfRunArchive runArchive;
+
+    /**
+     * Test d'endurance : N CPs restent connectés (Heartbeat, MeterValues périodiques)
+     * et enchaînent des cycles Authorize → Start → Stop pendant des heures.
+     * Chaque CP est une petite machine à états sur le scheduler (pas de thread par CP) ;
+     * le suivi se fait par histogrammes et snapshots périodiques pour garder un tas plat.
+     */
+    public PerfRun start(String url, SoakConfig config, RunPhases phases) {
+
+        PerfRun run = runs.newRun("soak", "SOAK", url, null);
+        String runId = run.getId();
+        run.snapshots.reset(config.getMaxSnapshots());
+
+        runs.launch(run, () -> {
+            log.info("Starting soak test - {} charge points for {} min",
+                    config.getChargePoints(), config.getDurationMinutes());
+
+            long startTime = System.currentTimeMillis();
+            long deadline = startTime + TimeUnit.MINUTES.toMillis(config.getDurationMinutes());
+            MeasurementWindow w = runs.openWindow(run, phases, config.getDurationMinutes() * 60.0);
+
+            ScheduledFuture<?> metricsTask = runs.scheduleMetrics(run);
+            ScheduledFuture<?> snapshotTask = runs.scheduleSnapshots(run, config.getSnapshotIntervalSec());
+
+            Semaphore connectSlots = new Semaphore(Math.max(1, config.getConnectConcurrency()));
+            try {
+                for (int i = 1; i <= config.getChargePoints() && run.isRunning(); i++) {
+                    connectSlots.acquire();
+                    String cpId = String.format("SOAK-%06d", i);
+                    String tagId = String.format("TAG-%06d", i);
+                    connectSoakChargePoint(run, cpId, tagId, config)
+                            .whenComplete((r, ex) -> connectSlots.release());
+                }
+
+                while (run.isRunning() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Soak test failed", e);
+            } finally {
+                run.stop();
+                resultStore.closeRun(run.getId());
+                metricsTask.cancel(false);
+                snapshotTask.cancel(false);
+                for (String sessionId : run.soakSessions) {
+                    ocppClient.disconnect(sessionId);
+                }
+                run.soakSessions.clear();
+                run.connectedCps.clear();
+                runs.captureSnapshot(run);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("mode", "SOAK");
+            result.put("runId", runId);
+            result.put("chargePoints", config.getChargePoints());
+            result.put("cycles", run.totalSessions.get());
+            result.put("successCount", run.successCount.get());
+            result.put("errorCount", run.errorCount.get());
+            result.put("totalTime", System.currentTimeMillis() - startTime);
+            result.put("latency", run.latency.snapshot());
+            result.put("drift", runs.getSoakDrift(run));
+
+            LatencyHistograms measured = runs.closeWindow(run, w, result);
+            runArchive.save(runId, "SOAK", startTime, runs.runConfig(url, null, "soak", config, "phases", phases),
+                    result, measured);
+            return result;
+        });
+        return run;
+    }
+
+    private CompletableFuture<String> connectSoakChargePoint(PerfRun run, String cpId, String tagId, SoakConfig config) {
+        String sessionId = run.sessionId("soak-" + cpId);
+        run.soakSessions.add(sessionId);
+        return ocppClient.connect(sessionId, run.getUrl(), cpId, null)
+                .orTimeout(30, TimeUnit.SECONDS)
+                .whenComplete((r, ex) -> {
+                    if (ex != null) {
+                        run.errorCount.incrementAndGet();
+                        log.debug("Soak CP {} failed to connect: {}", cpId, ex.getMessage());
+                        // nouvelle tentative au prochain cycle
+                        scheduleSoakCycle(run, cpId, tagId, config, config.getIdleSec());
+                        return;
+                    }
+                    run.connectedCps.add(sessionId);
+                    ocppClient.setMeterValueInterval(sessionId, config.getMeterValueIntervalSec());
+                    ocppClient.startHeartbeat(sessionId, config.getHeartbeatIntervalSec());
+                    // étaler les premiers cycles sur la période d'inactivité
+                    scheduleSoakCycle(run, cpId, tagId, config,
+                            ThreadLocalRandom.current().nextInt(Math.max(1, config.getIdleSec())));
+                });
+    }
+
+    private void scheduleSoakCycle(PerfRun run, String cpId, String tagId, SoakConfig config, long delaySec) {
+        if (!run.isRunning()) return;
+        try {
+            runs.scheduler().schedule(() -> soakCycle(run, cpId, tagId, config), delaySec, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Soak cycle for {} not scheduled: {}", cpId, e.getMessage());
+        }
+    }
+
+    private void soakCycle(PerfRun run, String cpId, String tagId, SoakConfig config) {
+        if (!run.isRunning()) return;
+        String sessionId = run.sessionId("soak-" + cpId);
+
+        if (!ocppClient.isConnected(sessionId)) {
+            // connexion perdue (fermeture côté CSMS) : on la rétablit avant le cycle suivant
+            run.connectedCps.remove(sessionId);
+            ocppClient.disconnect(sessionId);
+            connectSoakChargePoint(run, cpId, tagId, config);
+            return;
+        }
+
+        run.totalSessions.incrementAndGet();
+        long cycleStart = System.currentTimeMillis();
+        ocppClient.authorize(sessionId, tagId)
+                .thenCompose(r -> ocppClient.startTransaction(sessionId, tagId))
+                .whenComplete((r, ex) -> {
+                    if (ex != null) {
+                        run.errorCount.incrementAndGet();
+                        scheduleSoakCycle(run, cpId, tagId, config, config.getIdleSec());
+                        return;
+                    }
+                    run.activeSessions.incrementAndGet();
+                    scheduleSoakStop(run, cpId, tagId, config, cycleStart);
+                });
+    }
+
+    private void scheduleSoakStop(PerfRun run, String cpId, String tagId, SoakConfig config, long cycleStart) {
+        String sessionId = run.sessionId("soak-" + cpId);
+        Runnable stop = () -> ocppClient.stopTransaction(sessionId).whenComplete((r, ex) -> {
+            run.activeSessions.decrementAndGet();
+            if (ex != null) {
+                run.errorCount.incrementAndGet();
+            } else {
+                run.successCount.incrementAndGet();
+                long cycleMs = System.currentTimeMillis() - cycleStart;
+                run.totalLatency.addAndGet(cycleMs);
+                run.maxLatency.updateAndGet(max -> Math.max(max, cycleMs));
+            }
+            scheduleSoakCycle(run, cpId, tagId, config, config.getIdleSec());
+        });
+        try {
+            runs.scheduler().schedule(stop, config.getChargeDurationSec(), TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            run.activeSessions.decrementAndGet();
+        }
+    }
+}
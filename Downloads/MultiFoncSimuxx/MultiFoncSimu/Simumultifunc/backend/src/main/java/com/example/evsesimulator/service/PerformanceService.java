@@ -1,16 +1,33 @@
 package com.example.evsesimulator.service;
 
 import com.example.evsesimulator.model.PerformanceMetrics;
+import com.example.evsesimulator.perf.FleetCsvReader;
+import com.example.evsesimulator.perf.JvmStats;
+import com.example.evsesimulator.perf.LatencyHistograms;
+import com.example.evsesimulator.perf.MeasurementWindow;
+import com.example.evsesimulator.perf.RunPhases;
+import com.example.evsesimulator.perf.SaturationGuard;
+import com.example.evsesimulator.perf.ScenarioPlan;
+import jakarta.annotation.PostConstruct;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Registre des runs de performance : création et fin de vie, fenêtres de mesure, garde
+ * d'auto-saturation, snapshots, métriques et résultats. Les boucles de charge vivent dans
+ * les moteurs (PerfAdaptiveEngine, PerfOpenModelEngine, PerfBatchEngine, PerfPoolEngine,
+ * PerfSoakEngine, PerfLoadShapeEngine), qui s'appuient sur ce registre.
+ */
 @Slf4j
 @Service
 public class PerformanceService {
@@ -21,23 +38,71 @@ public class PerformanceService {
     @Autowired
     private WebSocketBroadcaster broadcaster;
 
+    @Autowired
+    private OcppTrafficMetrics traffic;
+
+    @Autowired
+    private PerfResultStore resultStore;
+
+    @Autowired
+    private PerfRunArchive runArchive;
+
+    @Autowired
+    private SelfTelemetryService telemetry;
+
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(10);
     private final ExecutorService executor = Executors.newFixedThreadPool(100);
 
-    private volatile boolean testRunning = false;
-    private final AtomicInteger totalSessions = new AtomicInteger(0);
-    private final AtomicInteger activeSessions = new AtomicInteger(0);
-    private final AtomicInteger successCount = new AtomicInteger(0);
-    private final AtomicInteger errorCount = new AtomicInteger(0);
-    private final AtomicLong totalLatency = new AtomicLong(0);
-    private final AtomicLong maxLatency = new AtomicLong(0);
+    @Value("${perf.max-concurrent-runs:4}")
+    private int maxConcurrentRuns;
+
+    @Value("${perf.run.max-threads:1000}")
+    private int maxThreadsPerRun;
+
+    // Garde d'auto-saturation du simulateur (seuils <= 0 = critère désactivé)
+    @Value("${perf.saturation.enabled:true}")
+    private boolean saturationEnabled;
 
-    private final List<PerfResult> results = Collections.synchronizedList(new ArrayList<>());
+    @Value("${perf.saturation.max-cpu-percent:90}")
+    private double saturationMaxCpu;
+
+    @Value("${perf.saturation.max-gc-overhead-percent:15}")
+    private double saturationMaxGc;
+
+    @Value("${perf.saturation.max-send-queue:10000}")
+    private int saturationMaxSendQueue;
+
+    @Value("${perf.saturation.max-scheduler-lag-ms:250}")
+    private double saturationMaxLagMs;
+
+    @Value("${perf.saturation.recover-sec:3}")
+    private int saturationRecoverSec;
+
+    private SaturationGuard guard;
+
+    // Runs isolés en cours ; le dernier démarré sert de cible par défaut (/metrics, /latency...)
+    private final Map<String, PerfRun> runs = new ConcurrentHashMap<>();
+    private final AtomicInteger scopeSeq = new AtomicInteger();
+    private volatile PerfRun lastRun;
+    // Runs terminés récemment : snapshots, dérive et métriques restent consultables
+    private static final int RECENT_RUNS_MAX = 10;
+    /** délai laissé aux sessions en file / en vol pour journaliser leur résultat avant scellement */
+    private static final long SEAL_GRACE_SEC = 30;
+    private final Map<String, PerfRun> recentRuns = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PerfRun> eldest) {
+                    return size() > RECENT_RUNS_MAX;
+                }
+            });
+
+    // Les PerfResult ne restent pas en mémoire : un fichier NDJSON par run (PerfResultStore)
 
     @Data
     public static class PerfResult {
         private String cpId;
         private String tagId;
+        private String flow;
         private boolean wsOk;
         private long bootMs;
         private long authMs;
@@ -47,226 +112,387 @@ public class PerformanceService {
         private Date timestamp = new Date();
     }
 
-    public CompletableFuture<Map<String, Object>> startAdaptiveTest(
-            String url, int initialBatch, int targetSessions) {
+    @PostConstruct
+    void startSaturationGuard() {
+        guard = new SaturationGuard(new SaturationGuard.Thresholds(saturationMaxCpu, saturationMaxGc,
+                saturationMaxSendQueue, saturationMaxLagMs, saturationRecoverSec));
+        if (saturationEnabled) {
+            scheduler.scheduleAtFixedRate(this::sampleSaturation, 1, 1, TimeUnit.SECONDS);
+        }
+    }
 
-        if (testRunning) {
-            return CompletableFuture.failedFuture(
-                    new IllegalStateException("Test already running")
-            );
+    /** Santé du simulateur sur la dernière seconde, évaluée par la garde (runs en cours seulement). */
+    private void sampleSaturation() {
+        if (runs.isEmpty() && !guard.isSaturated()) return;
+        try {
+            SaturationGuard.Sample sample = new SaturationGuard.Sample(System.currentTimeMillis(),
+                    getCpuUsage(), telemetry.gcOverheadPercent(1), ocppClient.getOutboundQueueDepth(),
+                    broadcaster.getTotalQueueDepth(), telemetry.schedulerLagMs());
+            if (guard.update(sample)) {
+                if (guard.isSaturated()) {
+                    log.warn("Simulator saturated ({}): ramp paused, results marked unreliable - {}",
+                            guard.getReasons(), sample);
+                } else {
+                    log.info("Simulator recovered from saturation");
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Saturation sample failed: {}", e.getMessage());
         }
+    }
 
-        testRunning = true;
-        resetMetrics();
+    /** État courant de la garde : seuils, dernier échantillon, raisons. */
+    public Map<String, Object> getSaturationStatus() {
+        Map<String, Object> m = guard.status();
+        m.put("enabled", saturationEnabled);
+        return m;
+    }
 
-        return CompletableFuture.supplyAsync(() -> {
-            log.info("Starting adaptive performance test - Target: {} sessions", targetSessions);
+    /**
+     * Enregistre un nouveau run isolé : journal de résultats, histogrammes routés par le
+     * préfixe de ses sessions, pool de sessions borné à {@code maxThreads}.
+     * @throws IllegalStateException si le nombre maximal de runs simultanés est atteint
+     */
+    synchronized PerfRun newRun(String prefix, String mode, String url, ScenarioPlan plan, int maxThreads) {
+        if (runs.size() >= maxConcurrentRuns) {
+            throw new IllegalStateException("Too many concurrent runs (max " + maxConcurrentRuns + ")");
+        }
+        // compteurs de trafic globaux remis à zéro seulement quand la JVM est au repos
+        if (runs.isEmpty()) traffic.reset();
+        String runId = resultStore.startRun(prefix);
+        PerfRun run = new PerfRun(runId, mode, url, "r" + scopeSeq.incrementAndGet(), plan, maxThreads);
+        traffic.bindScope(run.getScope(), run.latency);
+        runs.put(runId, run);
+        lastRun = run;
+        return run;
+    }
 
-            int batchSize = initialBatch;
-            long startTime = System.currentTimeMillis();
+    PerfRun newRun(String prefix, String mode, String url, ScenarioPlan plan) {
+        return newRun(prefix, mode, url, plan, maxThreadsPerRun);
+    }
 
-            // Démarrer la collecte de métriques
-            ScheduledFuture<?> metricsTask = scheduler.scheduleAtFixedRate(
-                    this::broadcastMetrics, 0, 1, TimeUnit.SECONDS
-            );
+    int maxThreadsPerRun() {
+        return maxThreadsPerRun;
+    }
 
-            try {
-                while (testRunning && totalSessions.get() < targetSessions) {
-                    long batchStart = System.currentTimeMillis();
+    /** Boucle d'un run sur l'executor des runs ; fin de vie (finish) à sa complétion. */
+    void launch(PerfRun run, Supplier<Map<String, Object>> loop) {
+        CompletableFuture.supplyAsync(loop, executor).whenComplete((r, ex) -> finish(run, r, ex));
+    }
 
-                    // Créer un batch de sessions
-                    List<CompletableFuture<PerfResult>> futures = new ArrayList<>();
+    /** Diffusion des métriques du run chaque seconde, à annuler en fin de run. */
+    ScheduledFuture<?> scheduleMetrics(PerfRun run) {
+        return scheduler.scheduleAtFixedRate(() -> broadcastMetrics(run), 0, 1, TimeUnit.SECONDS);
+    }
 
-                    for (int i = 0; i < batchSize && totalSessions.get() < targetSessions; i++) {
-                        int sessionNum = totalSessions.incrementAndGet();
-                        String cpId = String.format("PERF-%06d", sessionNum);
-                        String tagId = String.format("TAG-%06d", sessionNum);
+    /** Snapshots périodiques d'un run long, à annuler en fin de run. */
+    ScheduledFuture<?> scheduleSnapshots(PerfRun run, long intervalSec) {
+        return scheduler.scheduleAtFixedRate(() -> captureSnapshot(run), intervalSec, intervalSec, TimeUnit.SECONDS);
+    }
 
-                        futures.add(testSingleSession(url, cpId, tagId));
-                    }
+    /** Planificateur partagé des machines à états des moteurs (cycles de CPs). */
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
 
-                    // Attendre que le batch se termine
-                    try {
-                        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                                .get(30, TimeUnit.SECONDS);
-                    } catch (TimeoutException e) {
-                        log.warn("Batch timeout, continuing...");
-                    }
+    /** Vrai tant que la garde juge le simulateur saturé : les moteurs gèlent leur rampe. */
+    boolean isSaturated() {
+        return guard.isSaturated();
+    }
 
-                    // Adapter la taille du batch
-                    long batchTime = System.currentTimeMillis() - batchStart;
-                    double successRate = totalSessions.get() > 0 ?
-                            (double) successCount.get() / totalSessions.get() : 0;
+    /** Vrai si le simulateur a été saturé sur l'intervalle : la fenêtre n'est pas fiable. */
+    boolean saturatedDuring(long fromMs, long toMs) {
+        return guard.overlaps(fromMs, toMs);
+    }
 
-                    if (successRate > 0.95 && batchTime < 5000) {
-                        batchSize = Math.min(batchSize * 2, 100);
-                    } else if (successRate < 0.8 || batchTime > 10000) {
-                        batchSize = Math.max(batchSize / 2, 1);
-                    }
+    /**
+     * Scelle le journal d'un run à sessions unitaires : le pool est arrêté puis on attend (borné)
+     * les sessions encore en file ou en vol, sinon leurs résultats arriveraient après la fermeture.
+     */
+    void sealResults(PerfRun run) {
+        run.sessions.shutdown();
+        try {
+            if (!run.sessions.awaitTermination(SEAL_GRACE_SEC, TimeUnit.SECONDS)) {
+                log.warn("Run {}: sessions still in flight after {} s, late results will be dropped",
+                        run.getId(), SEAL_GRACE_SEC);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        resultStore.closeRun(run.getId());
+    }
 
-                    log.info("Batch complete - Sessions: {}, Success rate: {:.2f}%, Next batch: {}",
-                            totalSessions.get(), successRate * 100, batchSize);
+    /** Fin de vie d'un run : désenregistrement, journal scellé, pool arrêté, résultat publié. */
+    private void finish(PerfRun run, Map<String, Object> result, Throwable ex) {
+        recentRuns.put(run.getId(), run);
+        runs.remove(run.getId());
+        traffic.unbindScope(run.getScope());
+        resultStore.closeRun(run.getId());
+        run.sessions.shutdown();
+        MeasurementWindow w = run.window;
+        if (w != null) w.close();
+        run.window = null;
+        if (result != null) markSaturation(run, result);
+        if (ex != null) {
+            log.error("Performance run {} failed", run.getId(), ex);
+            run.fail(ex);
+        } else {
+            run.complete(result);
+        }
+        broadcastMetrics(run);
+    }
 
-                    // Pause entre les batchs
-                    Thread.sleep(100);
-                }
+    /**
+     * Marque les intervalles où le simulateur était saturé, sur le run complet et sur
+     * la fenêtre de mesure : la latence n'y reflète pas le CSMS.
+     */
+    @SuppressWarnings("unchecked")
+    private void markSaturation(PerfRun run, Map<String, Object> result) {
+        long now = System.currentTimeMillis();
+        result.put("selfSaturation", guard.report(run.getStartedAt(), now));
+        if (result.get("measurement") instanceof Map<?, ?> m
+                && m.get("startedAtMs") instanceof Long from && m.get("endedAtMs") instanceof Long to) {
+            ((Map<String, Object>) m).put("selfSaturation", guard.report(from, to));
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Performance test failed", e);
-            } finally {
-                metricsTask.cancel(false);
-                testRunning = false;
-            }
+    /** Fenêtre de mesure du run, null si aucune phase n'est demandée. */
+    MeasurementWindow openWindow(PerfRun run, RunPhases phases, double totalSec) {
+        if (phases == null || !phases.isSegmented()) return null;
+        MeasurementWindow w = new MeasurementWindow(phases, totalSec, run.latency, () -> windowCounters(run), scheduler);
+        run.window = w;
+        return w;
+    }
 
-            long totalTime = System.currentTimeMillis() - startTime;
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("totalSessions", totalSessions.get());
-            result.put("successCount", successCount.get());
-            result.put("errorCount", errorCount.get());
-            result.put("successRate", totalSessions.get() > 0 ?
-                    (double) successCount.get() / totalSessions.get() * 100 : 0);
-            result.put("totalTime", totalTime);
-            result.put("avgLatency", totalSessions.get() > 0 ?
-                    totalLatency.get() / totalSessions.get() : 0);
-            result.put("maxLatency", maxLatency.get());
-
-            return result;
-        }, executor);
-    }
-
-    private CompletableFuture<PerfResult> testSingleSession(String url, String cpId, String tagId) {
-        return CompletableFuture.supplyAsync(() -> {
-            PerfResult result = new PerfResult();
-            result.setCpId(cpId);
-            result.setTagId(tagId);
-
-            String sessionId = "perf-" + cpId;
-
-            try {
-                long start = System.currentTimeMillis();
-
-                // Connexion
-                ocppClient.connect(sessionId, url, cpId, null).get(5, TimeUnit.SECONDS);
-                result.setBootMs(System.currentTimeMillis() - start);
-
-                // Authorize
-                start = System.currentTimeMillis();
-                ocppClient.authorize(sessionId, tagId).get(5, TimeUnit.SECONDS);
-                result.setAuthMs(System.currentTimeMillis() - start);
-
-                // Start Transaction
-                start = System.currentTimeMillis();
-                ocppClient.startTransaction(sessionId, tagId).get(5, TimeUnit.SECONDS);
-                result.setStartMs(System.currentTimeMillis() - start);
-
-                // Simuler la charge
-                Thread.sleep(1000 + (int)(Math.random() * 2000));
-
-                // Stop Transaction
-                start = System.currentTimeMillis();
-                ocppClient.stopTransaction(sessionId).get(5, TimeUnit.SECONDS);
-                result.setStopMs(System.currentTimeMillis() - start);
-
-                result.setWsOk(true);
-                successCount.incrementAndGet();
-                activeSessions.incrementAndGet();
-
-                // Mettre à jour les métriques
-                long totalTime = result.getBootMs() + result.getAuthMs() +
-                        result.getStartMs() + result.getStopMs();
-                totalLatency.addAndGet(totalTime);
-                maxLatency.updateAndGet(max -> Math.max(max, totalTime));
-
-            } catch (Exception e) {
-                result.setWsOk(false);
-                result.setError(e.getMessage());
-                errorCount.incrementAndGet();
-                log.debug("Session {} failed: {}", cpId, e.getMessage());
-            } finally {
-                // Déconnexion
-                ocppClient.disconnect(sessionId);
-                activeSessions.decrementAndGet();
+    private static MeasurementWindow.Counters windowCounters(PerfRun run) {
+        return new MeasurementWindow.Counters(run.totalSessions.get(), run.successCount.get(), run.errorCount.get(),
+                run.totalLatency.get(), run.droppedStarts.get(), run.lateStarts.get());
+    }
+
+    /**
+     * Clôt la fenêtre : le résultat ne garde que la phase de mesure (run complet sous "fullRun")
+     * et on renvoie les histogrammes à archiver pour les comparaisons.
+     */
+    LatencyHistograms closeWindow(PerfRun run, MeasurementWindow w, Map<String, Object> result) {
+        if (w == null) return run.latency;
+        run.window = null;
+        w.applyTo(result);
+        return w.close();
+    }
+
+    /** Configuration archivée avec le run : url, scénario éventuel puis paires clé / valeur. */
+    Map<String, Object> runConfig(String url, ScenarioPlan plan, Object... keyValues) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("url", url);
+        if (plan != null) config.put("scenario", plan.getName());
+        // une comparaison de runs doit savoir si une partie de la flotte était dégradée
+        if (ocppClient.getImpairment() != null) config.put("impairment", ocppClient.getImpairment());
+        for (int i = 0; i + 1 < keyValues.length; i += 2) config.put(String.valueOf(keyValues[i]), keyValues[i + 1]);
+        return config;
+    }
+
+    void captureSnapshot(PerfRun run) {
+        try {
+            Map<String, Object> extra = new LinkedHashMap<>();
+            extra.put("runId", run.getId());
+            extra.put("connectedChargePoints", run.connectedCps.size());
+            if (run.loadTarget != null) {
+                extra.put("targetLoad", run.loadTarget);
+                extra.put("runningChargePoints", run.loadRunning);
             }
+            extra.put("activeTransactions", run.activeSessions.get());
+            extra.put("cycles", run.totalSessions.get());
+            extra.put("completedCycles", run.successCount.get());
+            extra.put("errors", run.errorCount.get());
+            extra.put("messagesPerSecond", traffic.messagesPerSecond());
+            extra.put("selfSaturated", guard.isSaturated());
+            broadcaster.broadcastPerformanceSnapshot(run.snapshots.capture(run.latency, extra));
+        } catch (Exception e) {
+            log.error("Failed to capture performance snapshot", e);
+        }
+    }
+
+    /** Snapshots périodiques d'un run long (sinceMs = 0 pour tout l'historique). */
+    public List<Map<String, Object>> getSnapshots(PerfRun run, long sinceMs) {
+        return run.snapshots.list(sinceMs);
+    }
+
+    /** Dérive entre le premier et le dernier snapshot : tas utilisé et p99 par action. */
+    public Map<String, Object> getSoakDrift(PerfRun run) {
+        Map<String, Object> first = run.snapshots.first();
+        Map<String, Object> last = run.snapshots.last();
+        Map<String, Object> drift = new LinkedHashMap<>();
+        if (first == null || last == null) return drift;
+
+        drift.put("elapsedSec", last.get("elapsedSec"));
+        drift.put("heapUsedMbFirst", first.get("heapUsedMb"));
+        drift.put("heapUsedMbLast", last.get("heapUsedMb"));
+
+        Map<String, Object> p99 = new TreeMap<>();
+        Map<?, ?> firstLat = (Map<?, ?>) first.get("latency");
+        Map<?, ?> lastLat = (Map<?, ?>) last.get("latency");
+        for (Object action : lastLat.keySet()) {
+            Object before = firstLat.get(action);
+            if (before == null) continue;
+            p99.put(action.toString(), Map.of(
+                    "first", p99Of(before),
+                    "last", p99Of(lastLat.get(action))
+            ));
+        }
+        drift.put("p99CorrectedMs", p99);
+        return drift;
+    }
 
-            results.add(result);
-            return result;
-        }, executor);
+    private static Object p99Of(Object actionSnapshot) {
+        Object corrected = ((Map<?, ?>) actionSnapshot).get("corrected");
+        return corrected instanceof Map<?, ?> m && m.get("p99") != null ? m.get("p99") : 0;
     }
 
+    /** Sessions démarrées / réussies / en échec par flux du scénario du run. */
+    public Map<String, Object> getFlowStats(PerfRun run) {
+        Map<String, Object> out = new TreeMap<>();
+        run.flowCounters.forEach((name, c) -> out.put(name, Map.of(
+                "started", c.started().sum(),
+                "ok", c.ok().sum(),
+                "failed", c.failed().sum()
+        )));
+        return out;
+    }
+
+    /** Arrête tous les runs en cours. */
     public void stopTest() {
-        testRunning = false;
-        log.info("Performance test stopped");
+        runs.values().forEach(PerfRun::stop);
+        log.info("Performance tests stopped");
+    }
+
+    public void stopTest(PerfRun run) {
+        run.stop();
+        log.info("Performance test {} stopped", run.getId());
+    }
+
+    /** Runs en cours, du plus ancien au plus récent. */
+    public List<PerfRun> getActiveRuns() {
+        List<PerfRun> out = new ArrayList<>(runs.values());
+        out.sort(Comparator.comparingLong(PerfRun::getStartedAt));
+        return out;
+    }
+
+    /**
+     * Run en cours ou récemment terminé d'identifiant donné, ou dernier run démarré si
+     * runId est absent ; null si inconnu (les runs plus anciens sont dans l'archive).
+     */
+    public PerfRun getRun(String runId) {
+        if (runId == null || runId.isBlank()) return lastRun;
+        PerfRun run = runs.get(runId);
+        return run != null ? run : recentRuns.get(runId);
+    }
+
+    /** Percentiles bruts / corrigés par action (ms). */
+    public Map<String, Object> getLatencyPercentiles(PerfRun run) {
+        return run.latency.snapshot();
     }
 
-    public List<PerfResult> getResults() {
-        return new ArrayList<>(results);
+    /** Page de résultats d'un run (runId null = run courant ou dernier run). */
+    public Map<String, Object> getResults(String runId, long offset, int limit,
+                                          Predicate<PerfResult> filter) throws IOException {
+        return resultStore.query(runId, offset, limit, filter);
     }
 
+    /** Métriques du dernier run démarré (zéros si aucun run depuis le démarrage). */
     public PerformanceMetrics getCurrentMetrics() {
-        return PerformanceMetrics.builder()
-                .totalSessions(totalSessions.get())
-                .activeSessions(activeSessions.get())
-                .successCount(successCount.get())
-                .errorCount(errorCount.get())
-                .successRate(totalSessions.get() > 0 ?
-                        (double) successCount.get() / totalSessions.get() * 100 : 0)
-                .avgLatency(totalSessions.get() > 0 ?
-                        totalLatency.get() / totalSessions.get() : 0)
-                .maxLatency(maxLatency.get())
+        return getCurrentMetrics(lastRun);
+    }
+
+    public PerformanceMetrics getCurrentMetrics(PerfRun run) {
+        // santé du simulateur et trafic fil : globaux à la JVM, partagés par tous les runs
+        PerformanceMetrics.PerformanceMetricsBuilder metrics = PerformanceMetrics.builder()
+                .totalSessions(0)
+                .activeSessions(0)
+                .successCount(0)
+                .errorCount(0)
+                .successRate(0.0)
+                .avgLatency(0L)
+                .maxLatency(0L)
+                .activeRuns(runs.size())
                 .cpuUsage(getCpuUsage())
                 .memoryUsage(getMemoryUsage())
                 .messagesPerSecond(getMessagesPerSecond())
-                .timestamp(new Date())
+                .throughput(traffic.windows())
+                .errorsByType(traffic.errorsByType())
+                .gcPauses(telemetry.gcPauses())
+                .allocationRateMbPerSec(telemetry.allocationRateMbPerSec())
+                .liveThreads(JvmStats.liveThreads())
+                .openSockets(telemetry.openSockets())
+                .openFileDescriptors(telemetry.openFileDescriptors())
+                .schedulerLagMs(telemetry.schedulerLagMs())
+                .selfSaturated(guard.isSaturated())
+                .saturationReasons(guard.getReasons())
+                .timestamp(new Date());
+        if (run == null) return metrics.build();
+
+        MeasurementWindow w = run.window;
+        return metrics
+                .runId(run.getId())
+                .runStatus(run.getStatus().name())
+                .totalSessions(run.totalSessions.get())
+                .activeSessions(run.activeSessions.get())
+                .successCount(run.successCount.get())
+                .errorCount(run.errorCount.get())
+                .successRate(run.totalSessions.get() > 0 ?
+                        (double) run.successCount.get() / run.totalSessions.get() * 100 : 0)
+                .avgLatency(run.totalSessions.get() > 0 ?
+                        run.totalLatency.get() / run.totalSessions.get() : 0)
+                .maxLatency(run.maxLatency.get())
+                .latencyPercentiles(run.latency.snapshot())
+                .targetArrivalRate(run.targetArrivalRate)
+                .droppedStarts(run.droppedStarts.get())
+                .lateStarts(run.lateStarts.get())
+                .concurrencyLimit(run.concurrencyLimit)
+                .loadTarget(run.loadTarget)
+                .phase(w != null ? w.getPhase().name() : null)
+                .batchLinesRead(run.batchSource instanceof FleetCsvReader csv ? csv.getLinesRead() : null)
+                .batchProgress(batchProgress(run))
                 .build();
     }
 
-    private void broadcastMetrics() {
+    private static Double batchProgress(PerfRun run) {
+        if (!(run.batchSource instanceof FleetCsvReader csv) || run.batchTotalBytes <= 0) return null;
+        return Math.min(100.0, csv.getCharsRead() * 100.0 / run.batchTotalBytes);
+    }
+
+    void broadcastMetrics(PerfRun run) {
         try {
-            broadcaster.broadcastPerformanceMetrics(getCurrentMetrics());
+            broadcaster.broadcastPerformanceMetrics(getCurrentMetrics(run));
         } catch (Exception e) {
             log.error("Failed to broadcast metrics", e);
         }
     }
 
-    private void resetMetrics() {
-        totalSessions.set(0);
-        activeSessions.set(0);
-        successCount.set(0);
-        errorCount.set(0);
-        totalLatency.set(0);
-        maxLatency.set(0);
-        results.clear();
-    }
+    /** Aperçu renvoyé par importCSV (le fichier complet n'est jamais gardé en mémoire). */
+    private static final int CSV_PREVIEW_LIMIT = 1000;
 
-    public Map<String, Object> importCSV(String csvContent) {
+    public Map<String, Object> importCSV(FleetCsvReader source) throws IOException {
         List<Map<String, String>> sessions = new ArrayList<>();
-        String[] lines = csvContent.split("\n");
-
-        // Skip header if present
-        int startLine = 0;
-        if (lines.length > 0 && lines[0].toLowerCase().contains("cpid")) {
-            startLine = 1;
-        }
-
-        for (int i = startLine; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
-
-            String[] parts = line.split(",");
-            if (parts.length >= 2) {
-                Map<String, String> session = new HashMap<>();
-                session.put("cpId", parts[0].trim());
-                session.put("tagId", parts[1].trim());
-                sessions.add(session);
+        int count = 0;
+        try (source) {
+            while (source.hasNext()) {
+                String[] pair = source.next();
+                if (count++ < CSV_PREVIEW_LIMIT) {
+                    Map<String, String> session = new HashMap<>();
+                    session.put("cpId", pair[0]);
+                    session.put("tagId", pair[1]);
+                    sessions.add(session);
+                }
             }
         }
 
-        log.info("Imported {} sessions from CSV", sessions.size());
+        log.info("Imported {} sessions from CSV", count);
 
         Map<String, Object> result = new HashMap<>();
         result.put("sessions", sessions);
-        result.put("count", sessions.size());
+        result.put("count", count);
+        result.put("truncated", count > sessions.size());
+        result.put("skippedLines", source.getSkipped());
         return result;
     }
 
@@ -290,7 +516,7 @@ public class PerformanceService {
     }
 
     private int getMessagesPerSecond() {
-        // Simplified calculation - you can enhance this
-        return activeSessions.get() * 2; // Estimate based on active sessions
+        // Trames OCPP réellement envoyées + reçues sur la dernière seconde
+        return traffic.messagesPerSecond();
     }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.perf.JvmStats;
+import com.example.evsesimulator.perf.SlidingWindowCounter;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Télémétrie du simulateur lui-même, pour distinguer une latence due au CSMS
+ * d'un arrêt côté simulateur : pauses GC (notifications JMX), débit d'allocation,
+ * threads, sockets ouvertes et retard des schedulers (sonde toutes les 100 ms).
+ * Fenêtres 1s / 10s / 60s comme OcppTrafficMetrics.
+ */
+@Slf4j
+@Service
+public class SelfTelemetryService {
+
+    private static final int MAX_WINDOW_SEC = 60;
+    private static final long PROBE_PERIOD_MS = 100;
+
+    @Autowired
+    private OCPPWebSocketClient ocppClient;
+
+    @Autowired
+    private WebSocketBroadcaster broadcaster;
+
+    private final SlidingWindowCounter gcPauseCount = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter gcPauseMs = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final SlidingWindowCounter allocatedBytes = new SlidingWindowCounter(MAX_WINDOW_SEC);
+    private final AtomicLong maxGcPauseMs = new AtomicLong();
+
+    // retard max par seconde, par scheduler sondé (60 dernières secondes)
+    private final Map<String, LagProbe> probes = new LinkedHashMap<>();
+
+    private final Map<Long, Long> threadAllocated = new HashMap<>();
+    private final List<Runnable> unregister = new ArrayList<>();
+    private ScheduledExecutorService sampler;
+
+    private static final class LagProbe {
+        final AtomicLong currentMaxNanos = new AtomicLong();
+        final Deque<Long> perSecondMaxNanos = new ArrayDeque<>();
+        volatile long expectedNanos;
+
+        synchronized void rollSecond() {
+            perSecondMaxNanos.addLast(currentMaxNanos.getAndSet(0));
+            while (perSecondMaxNanos.size() > MAX_WINDOW_SEC) perSecondMaxNanos.pollFirst();
+        }
+
+        synchronized double maxMs(int windowSec) {
+            long max = 0;
+            Iterator<Long> it = perSecondMaxNanos.descendingIterator();
+            for (int i = 0; i < windowSec && it.hasNext(); i++) max = Math.max(max, it.next());
+            return max / 1_000_000.0;
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        listenToGc();
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "self-telemetry");
+            t.setDaemon(true);
+            return t;
+        });
+        startProbe("telemetry", sampler);
+        startProbe("ocppScheduler", ocppClient.scheduler());
+        sampler.scheduleAtFixedRate(this::sampleSecond, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        unregister.forEach(Runnable::run);
+        if (sampler != null) sampler.shutdownNow();
+    }
+
+    /** Pauses GC (hors cycles concurrents) via les notifications de fin de collection. */
+    private void listenToGc() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) return;
+            long duration = info.getGcInfo().getDuration();
+            gcPauseCount.increment();
+            gcPauseMs.add(duration);
+            maxGcPauseMs.accumulateAndGet(duration, Math::max);
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                unregister.add(() -> {
+                    try {
+                        emitter.removeNotificationListener(listener);
+                    } catch (Exception e) {
+                        log.debug("GC listener already removed: {}", e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Sonde de retard : une tâche ponctuelle replanifiée toutes les 100 ms mesure
+     * l'écart entre l'instant prévu et l'exécution effective sur le scheduler visé.
+     */
+    private void startProbe(String name, ScheduledExecutorService target) {
+        LagProbe probe = new LagProbe();
+        probes.put(name, probe);
+        scheduleProbe(probe, target);
+    }
+
+    private void scheduleProbe(LagProbe probe, ScheduledExecutorService target) {
+        probe.expectedNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PROBE_PERIOD_MS);
+        try {
+            target.schedule(() -> {
+                long lag = Math.max(0, System.nanoTime() - probe.expectedNanos);
+                probe.currentMaxNanos.accumulateAndGet(lag, Math::max);
+                scheduleProbe(probe, target);
+            }, PROBE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.debug("Lag probe stopped: {}", e.getMessage());
+        }
+    }
+
+    private void sampleSecond() {
+        try {
+            probes.values().forEach(LagProbe::rollSecond);
+            allocatedBytes.add(allocatedSinceLastSample());
+        } catch (Exception e) {
+            log.debug("Self-telemetry sample failed: {}", e.getMessage());
+        }
+    }
+
+    /** Somme des octets alloués par thread depuis l'échantillon précédent (threads morts ignorés). */
+    private long allocatedSinceLastSample() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return 0;
+        }
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> seen = new HashMap<>(ids.length * 2);
+        long delta = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] < 0) continue;
+            Long previous = threadAllocated.get(ids[i]);
+            delta += previous == null ? 0 : Math.max(0, bytes[i] - previous);
+            seen.put(ids[i], bytes[i]);
+        }
+        threadAllocated.clear();
+        threadAllocated.putAll(seen);
+        return delta;
+    }
+
+    /* ========== Lecture ========== */
+
+    /** Pauses GC par fenêtre : {"1s": {count, pauseMs}, "10s": ..., "60s": ...}. */
+    public Map<String, Object> gcPauses() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (int w : OcppTrafficMetrics.WINDOWS_SEC) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", gcPauseCount.sum(w));
+            m.put("pauseMs", gcPauseMs.sum(w));
+            out.put(w + "s", m);
+        }
+        return out;
+    }
+
+    /** Part du temps passée en pause GC sur les {@code windowSec} dernières secondes (%). */
+    public double gcOverheadPercent(int windowSec) {
+        return windowSec <= 0 ? 0 : gcPauseMs.sum(windowSec) * 100.0 / (windowSec * 1000.0);
+    }
+
+    /** Débit d'allocation moyen sur 10 s (Mo/s). */
+    public double allocationRateMbPerSec() {
+        return allocatedBytes.rate(10) / (1024.0 * 1024.0);
+    }
+
+    /** Retard max du scheduler OCPP sur la dernière seconde complète (ms). */
+    public double schedulerLagMs() {
+        LagProbe p = probes.get("ocppScheduler");
+        return p == null ? 0 : p.maxMs(1);
+    }
+
+    public int openSockets() {
+        return ocppClient.getOpenConnectionCount() + broadcaster.getSubscriberCount();
+    }
+
+    /** Descripteurs de fichiers ouverts par le process (Unix), -1 si indisponible. */
+    public long openFileDescriptors() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.UnixOperatingSystemMXBean unix) {
+            return unix.getOpenFileDescriptorCount();
+        }
+        return -1;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("gcPauses", gcPauses());
+        m.put("maxGcPauseMs", maxGcPauseMs.get());
+        Map<String, Object> alloc = new LinkedHashMap<>();
+        for (int w : OcppTrafficMetrics.WINDOWS_SEC) alloc.put(w + "s", allocatedBytes.rate(w) / (1024.0 * 1024.0));
+        m.put("allocationRateMbPerSec", alloc);
+        m.put("heapUsedMb", JvmStats.heap().getUsed() / (1024 * 1024));
+        m.put("liveThreads", JvmStats.liveThreads());
+        m.put("ocppConnections", ocppClient.getOpenConnectionCount());
+        m.put("uiConnections", broadcaster.getSubscriberCount());
+        m.put("openFileDescriptors", openFileDescriptors());
+        Map<String, Object> lag = new LinkedHashMap<>();
+        probes.forEach((name, p) -> {
+            Map<String, Object> w = new LinkedHashMap<>();
+            for (int sec : OcppTrafficMetrics.WINDOWS_SEC) w.put(sec + "s", p.maxMs(sec));
+            lag.put(name, w);
+        });
+        m.put("schedulerLagMaxMs", lag);
+        return m;
+    }
+}
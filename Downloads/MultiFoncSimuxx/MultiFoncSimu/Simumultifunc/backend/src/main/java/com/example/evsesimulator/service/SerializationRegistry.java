@@ -0,0 +1,123 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.model.OCPPMessage;
+import com.example.evsesimulator.model.PerformanceMetrics;
+import com.example.evsesimulator.model.Session;
+import com.example.evsesimulator.model.TNREvent;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point unique de sérialisation hors Spring MVC : un ObjectMapper partagé (caches chauds,
+ * Blackbird) et des ObjectReader / ObjectWriter pré-construits pour les types chauds
+ * (Session, OCPPMessage, TNREvent, PerformanceMetrics), les enveloppes du flux /ws par encodage
+ * et les trames OCPP-J.
+ * Réglages d'un {@code new ObjectMapper()} (dates java.util en epoch, nulls écrits) plus
+ * JavaTimeModule : les types java.time (ex. LogEntry.timestamp) s'écrivent en epoch décimal
+ * au lieu de faire échouer la sérialisation.
+ * Les fichiers TNR gardent le mapper Spring (spring.jackson.* : dates ISO, nulls omis).
+ */
+@Component
+public class SerializationRegistry {
+
+    /** Enveloppe d'une mise à jour du flux /ws. */
+    public record Envelope<T>(String type, T data, long timestamp) {}
+
+    /** Types diffusés dont l'enveloppe a un writer typé par encodage. */
+    private static final List<Class<?>> WIRE_TYPES = List.of(Session.class, OCPPMessage.class, PerformanceMetrics.class);
+
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addModule(new BlackbirdModule())
+            .build();
+    private final ObjectMapper tnrMapper;
+
+    private final Map<WireEncoding, ObjectMapper> wireMappers = new EnumMap<>(WireEncoding.class);
+    private final Map<WireEncoding, ObjectWriter> wireWriters = new EnumMap<>(WireEncoding.class);
+    private final Map<WireEncoding, ObjectWriter> envelopeWriters = new EnumMap<>(WireEncoding.class);
+    private final Map<WireEncoding, Map<Class<?>, ObjectWriter>> typedEnvelopeWriters = new EnumMap<>(WireEncoding.class);
+
+    private final ObjectWriter sessionWriter = mapper.writerFor(Session.class);
+    private final ObjectReader sessionReader = mapper.readerFor(Session.class);
+    private final ObjectWriter sessionsWriter;
+    private final ObjectReader sessionsReader;
+    private final ObjectWriter ocppMessageWriter = mapper.writerFor(OCPPMessage.class);
+    private final ObjectReader ocppMessageReader = mapper.readerFor(OCPPMessage.class);
+    private final ObjectWriter performanceMetricsWriter = mapper.writerFor(PerformanceMetrics.class);
+    private final ObjectReader performanceMetricsReader = mapper.readerFor(PerformanceMetrics.class);
+    private final ObjectWriter tnrEventWriter;
+    private final ObjectReader tnrEventReader;
+
+    /** Trame OCPP-J : [type, id, action|payload, ...] */
+    private final ObjectReader ocppFrameReader = mapper.readerFor(List.class);
+    private final ObjectWriter prettyWriter = mapper.writerWithDefaultPrettyPrinter();
+
+    /** @param springMapper mapper Spring Boot (Blackbird via JacksonConfig), réservé aux fichiers TNR */
+    public SerializationRegistry(ObjectMapper springMapper) {
+        this.tnrMapper = springMapper;
+        this.tnrEventWriter = tnrMapper.writerFor(TNREvent.class);
+        this.tnrEventReader = tnrMapper.readerFor(TNREvent.class);
+
+        JavaType sessions = mapper.getTypeFactory().constructCollectionType(List.class, Session.class);
+        this.sessionsWriter = mapper.writerFor(sessions).withDefaultPrettyPrinter();
+        this.sessionsReader = mapper.readerFor(sessions);
+
+        wireMappers.put(WireEncoding.JSON, mapper);
+        wireMappers.put(WireEncoding.SMILE, new ObjectMapper(new SmileFactory())
+                .registerModule(new JavaTimeModule()).registerModule(new BlackbirdModule()));
+        wireMappers.put(WireEncoding.CBOR, new ObjectMapper(new CBORFactory())
+                .registerModule(new JavaTimeModule()).registerModule(new BlackbirdModule()));
+        wireMappers.forEach((enc, m) -> {
+            wireWriters.put(enc, m.writer());
+            envelopeWriters.put(enc, m.writerFor(Envelope.class));
+            Map<Class<?>, ObjectWriter> typed = new HashMap<>();
+            for (Class<?> type : WIRE_TYPES) {
+                typed.put(type, m.writerFor(m.getTypeFactory().constructParametricType(Envelope.class, type)));
+            }
+            typedEnvelopeWriters.put(enc, typed);
+        });
+    }
+
+    public ObjectMapper mapper() { return mapper; }
+    public ObjectWriter writer() { return mapper.writer(); }
+    public ObjectWriter prettyWriter() { return prettyWriter; }
+
+    public ObjectMapper mapper(WireEncoding encoding) { return wireMappers.get(encoding); }
+    public ObjectWriter writer(WireEncoding encoding) { return wireWriters.get(encoding); }
+
+    /** Writer de l'enveloppe /ws : typé pour les types chauds, générique sinon. */
+    public ObjectWriter envelopeWriter(WireEncoding encoding, Class<?> dataType) {
+        ObjectWriter typed = typedEnvelopeWriters.get(encoding).get(dataType);
+        return typed != null ? typed : envelopeWriters.get(encoding);
+    }
+
+    public ObjectReader ocppFrameReader() { return ocppFrameReader; }
+
+    public ObjectWriter sessionWriter() { return sessionWriter; }
+    public ObjectReader sessionReader() { return sessionReader; }
+    /** Liste de sessions (data/sessions.json), indentée. */
+    public ObjectWriter sessionsWriter() { return sessionsWriter; }
+    public ObjectReader sessionsReader() { return sessionsReader; }
+    public ObjectWriter ocppMessageWriter() { return ocppMessageWriter; }
+    public ObjectReader ocppMessageReader() { return ocppMessageReader; }
+    public ObjectWriter performanceMetricsWriter() { return performanceMetricsWriter; }
+    public ObjectReader performanceMetricsReader() { return performanceMetricsReader; }
+
+    /** Mapper des fichiers TNR (scénarios, exécutions, catalogue). */
+    public ObjectMapper tnrMapper() { return tnrMapper; }
+    public ObjectWriter tnrEventWriter() { return tnrEventWriter; }
+    public ObjectReader tnrEventReader() { return tnrEventReader; }
+}
@@ -22,6 +22,9 @@ public class SessionService {
     @Autowired
     private VehicleService vehicleService;
 
+    @Autowired
+    private SimulatorMeters meters;
+
     private final Map<String, Session> sessions = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(10);
 
@@ -195,47 +198,50 @@ public class SessionService {
         session.setStartTime(new Date());
 
         // Simulation de charge
-        scheduler.scheduleAtFixedRate(() -> {
-            Session s = sessions.get(sessionId);
-            if (s == null || !"CHARGING".equals(s.getState())) {
-                return;
-            }
+        scheduler.scheduleAtFixedRate(() -> meters.simulationTick().record(() -> chargingTick(sessionId)),
+                0, 1, TimeUnit.SECONDS);
+    }
 
-            VehicleProfile vehicle = vehicleService.getProfile(s.getVehicleProfile());
-            if (vehicle == null) {
-                vehicle = VehicleProfile.TESLA_MODEL_3_LR;
-            }
+    /** Un tick (1 s) de simulation de charge : puissance, énergie, SoC. */
+    private void chargingTick(String sessionId) {
+        Session s = sessions.get(sessionId);
+        if (s == null || !"CHARGING".equals(s.getState())) {
+            return;
+        }
 
-            // Calculer la puissance de charge
-            double maxPowerW = calculateMaxPower(s, vehicle);
+        VehicleProfile vehicle = vehicleService.getProfile(s.getVehicleProfile());
+        if (vehicle == null) {
+            vehicle = VehicleProfile.TESLA_MODEL_3_LR;
+        }
 
-            // Appliquer le mode flou si activé
-            if (s.getFuzzyEnabled()) {
-                double variation = (Math.random() - 0.5) * 2 * s.getFuzzyIntensity();
-                maxPowerW *= (1 + variation * 0.1);
-            }
+        // Calculer la puissance de charge
+        double maxPowerW = calculateMaxPower(s, vehicle);
 
-            // Corriger Math.min pour ne prendre que 2 arguments à la fois
-            double tempMin = Math.min(maxPowerW, s.getPhysicalLimitW() != null ? s.getPhysicalLimitW() : Double.MAX_VALUE);
-            s.setCurrentPowerW(Math.min(tempMin, s.getAppliedLimitW() != null ? s.getAppliedLimitW() : Double.MAX_VALUE));
+        // Appliquer le mode flou si activé
+        if (s.getFuzzyEnabled()) {
+            double variation = (Math.random() - 0.5) * 2 * s.getFuzzyIntensity();
+            maxPowerW *= (1 + variation * 0.1);
+        }
 
-            // Mettre à jour l'énergie et le SoC
-            double energyKwh = s.getCurrentPowerW() * (1.0 / 3600.0); // 1 seconde
-            s.setMeterWh(s.getMeterWh() + energyKwh * 1000);
+        // Corriger Math.min pour ne prendre que 2 arguments à la fois
+        double tempMin = Math.min(maxPowerW, s.getPhysicalLimitW() != null ? s.getPhysicalLimitW() : Double.MAX_VALUE);
+        s.setCurrentPowerW(Math.min(tempMin, s.getAppliedLimitW() != null ? s.getAppliedLimitW() : Double.MAX_VALUE));
 
-            double socIncrease = (energyKwh / vehicle.getBatteryCapacityKwh()) * 100;
-            s.setSoc(Math.min(s.getSoc() + socIncrease, s.getTargetSoc()));
+        // Mettre à jour l'énergie et le SoC
+        double energyKwh = s.getCurrentPowerW() * (1.0 / 3600.0); // 1 seconde
+        s.setMeterWh(s.getMeterWh() + energyKwh * 1000);
 
-            // Arrêter si SoC cible atteint
-            if (s.getSoc() >= s.getTargetSoc()) {
-                s.setState("SUSPENDED_EV");
-                s.setCurrentPowerW(0.0);
-            }
+        double socIncrease = (energyKwh / vehicle.getBatteryCapacityKwh()) * 100;
+        s.setSoc(Math.min(s.getSoc() + socIncrease, s.getTargetSoc()));
 
-            updateSessionMetrics(sessionId, s.getSoc(), s.getMeterWh(),
-                    s.getCurrentPowerW(), s.getOfferedPowerW());
+        // Arrêter si SoC cible atteint
+        if (s.getSoc() >= s.getTargetSoc()) {
+            s.setState("SUSPENDED_EV");
+            s.setCurrentPowerW(0.0);
+        }
 
-        }, 0, 1, TimeUnit.SECONDS);
+        updateSessionMetrics(sessionId, s.getSoc(), s.getMeterWh(),
+                s.getCurrentPowerW(), s.getOfferedPowerW());
     }
 
     private double calculateMaxPower(Session session, VehicleProfile vehicle) {
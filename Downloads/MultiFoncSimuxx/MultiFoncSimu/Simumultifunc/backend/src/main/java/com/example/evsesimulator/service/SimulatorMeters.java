@@ -0,0 +1,95 @@
+package com.example.evsesimulator.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timers / compteurs Micrometer des chemins chauds, exposés sur /actuator/prometheus.
+ * Les meters tagués sont mis en cache par clé : sur le fil OCPP on ne paie qu'un get de map.
+ */
+@Component
+public class SimulatorMeters {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Timer broadcastSend;
+    private final Timer simulationTick;
+    private final Timer tnrRecord;
+
+    public SimulatorMeters(MeterRegistry registry) {
+        this.registry = registry;
+        this.broadcastSend = timer("evse.ws.broadcast.send", "Envoi d'une trame à un client UI");
+        this.simulationTick = timer("evse.simulation.tick", "Tick de simulation de charge d'une session");
+        this.tnrRecord = timer("evse.tnr.record", "Capture d'un événement TNR");
+    }
+
+    /** Construction + écriture d'un CALL sur la socket. */
+    public void ocppSend(String action, long nanos) {
+        cached("send|" + action, () -> timerBuilder("evse.ocpp.send", "Construction et envoi d'un CALL OCPP")
+                .tag("action", action)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Latence CALL -> CALLRESULT / CALLERROR. */
+    public void ocppResponse(String action, String outcome, long nanos) {
+        cached("resp|" + action + "|" + outcome, () -> timerBuilder("evse.ocpp.response", "Latence requête-réponse OCPP")
+                .tag("action", action).tag("outcome", outcome)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Parsing + traitement d'une trame reçue ; type = CALL, CALLRESULT, CALLERROR, INVALID. */
+    public void ocppReceive(String type, long nanos) {
+        cached("recv|" + type, () -> timerBuilder("evse.ocpp.receive", "Traitement d'une trame OCPP reçue")
+                .tag("type", type)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void broadcastSerialize(WireEncoding encoding, long nanos) {
+        cached("ser|" + encoding, () -> timerBuilder("evse.ws.broadcast.serialize", "Sérialisation d'une mise à jour UI")
+                .tag("encoding", encoding.name())).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer broadcastSend() {
+        return broadcastSend;
+    }
+
+    public Timer simulationTick() {
+        return simulationTick;
+    }
+
+    public Timer tnrRecord() {
+        return tnrRecord;
+    }
+
+    /** Rejeu complet d'un scénario TNR. */
+    public void tnrReplay(String outcome, long nanos) {
+        cached("replay|" + outcome, () -> timerBuilder("evse.tnr.replay", "Rejeu d'un scénario TNR")
+                .tag("outcome", outcome)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Aller-retour proxy vers le runner Node ; status = code HTTP ou "error". */
+    public void runnerProxy(String method, String status, long nanos) {
+        cached("runner|" + method + "|" + status, () -> timerBuilder("evse.runner.proxy", "Latence du proxy runner")
+                .tag("method", method).tag("status", status)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer cached(String key, Supplier<Timer.Builder> builder) {
+        Timer t = timers.get(key);
+        if (t == null) t = timers.computeIfAbsent(key, k -> builder.get().register(registry));
+        return t;
+    }
+
+    private Timer timer(String name, String description) {
+        return timerBuilder(name, description).register(registry);
+    }
+
+    private static Timer.Builder timerBuilder(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.evsesimulator.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index topic → sessionId → abonnés du flux /ws.
+ * "*" sert de joker côté topic comme côté session.
+ * Les mutations (rares) sont sérialisées ; la lecture (match) est sans verrou.
+ */
+class SubscriptionIndex {
+
+    static final String ANY = "*";
+
+    private final Map<String, Map<String, Set<WebSocketSubscriber>>> index = new ConcurrentHashMap<>();
+    /** abonnements par abonné, pour le nettoyage et le listing */
+    private final Map<WebSocketSubscriber, Set<String>> bySubscriber = new ConcurrentHashMap<>();
+
+    synchronized void subscribe(WebSocketSubscriber sub, String topic, String sessionId) {
+        String t = normalize(topic);
+        String s = normalize(sessionId);
+        index.computeIfAbsent(t, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(s, k -> ConcurrentHashMap.newKeySet())
+                .add(sub);
+        bySubscriber.computeIfAbsent(sub, k -> ConcurrentHashMap.newKeySet()).add(t + "|" + s);
+    }
+
+    synchronized void unsubscribe(WebSocketSubscriber sub, String topic, String sessionId) {
+        String t = normalize(topic);
+        String s = normalize(sessionId);
+        Set<String> mine = bySubscriber.get(sub);
+        if (mine == null) return;
+
+        if (ANY.equals(t) && ANY.equals(s)) {
+            // désabonnement global
+            for (String key : new ArrayList<>(mine)) {
+                int i = key.indexOf('|');
+                removeEntry(sub, key.substring(0, i), key.substring(i + 1));
+            }
+            mine.clear();
+            return;
+        }
+        removeEntry(sub, t, s);
+        mine.remove(t + "|" + s);
+    }
+
+    synchronized void removeAll(WebSocketSubscriber sub) {
+        unsubscribe(sub, ANY, ANY);
+        bySubscriber.remove(sub);
+    }
+
+    List<Map<String, String>> subscriptionsOf(WebSocketSubscriber sub) {
+        List<Map<String, String>> out = new ArrayList<>();
+        for (String key : bySubscriber.getOrDefault(sub, Set.of())) {
+            int i = key.indexOf('|');
+            out.add(Map.of("topic", key.substring(0, i), "sessionId", key.substring(i + 1)));
+        }
+        return out;
+    }
+
+    /**
+     * Abonnés concernés par un message. sessionId null = message global au topic
+     * (ex. PERFORMANCE_METRICS) : tout abonné du topic le reçoit.
+     */
+    Collection<WebSocketSubscriber> match(String topic, String sessionId) {
+        Collection<WebSocketSubscriber> out = null;
+        out = collect(out, index.get(topic), sessionId);
+        out = collect(out, index.get(ANY), sessionId);
+        return out == null ? List.of() : out;
+    }
+
+    private Collection<WebSocketSubscriber> collect(Collection<WebSocketSubscriber> acc,
+                                                    Map<String, Set<WebSocketSubscriber>> bySession,
+                                                    String sessionId) {
+        if (bySession == null || bySession.isEmpty()) return acc;
+        if (sessionId == null) {
+            for (Set<WebSocketSubscriber> subs : bySession.values()) acc = addAll(acc, subs);
+            return acc;
+        }
+        acc = addAll(acc, bySession.get(sessionId));
+        return addAll(acc, bySession.get(ANY));
+    }
+
+    private Collection<WebSocketSubscriber> addAll(Collection<WebSocketSubscriber> acc, Set<WebSocketSubscriber> subs) {
+        if (subs == null || subs.isEmpty()) return acc;
+        if (acc == null) acc = new LinkedHashSet<>();
+        acc.addAll(subs);
+        return acc;
+    }
+
+    private void removeEntry(WebSocketSubscriber sub, String topic, String sessionId) {
+        Map<String, Set<WebSocketSubscriber>> bySession = index.get(topic);
+        if (bySession == null) return;
+        Set<WebSocketSubscriber> subs = bySession.get(sessionId);
+        if (subs == null) return;
+        subs.remove(sub);
+        if (subs.isEmpty()) bySession.remove(sessionId, subs);
+    }
+
+    private static String normalize(String v) {
+        return (v == null || v.isBlank()) ? ANY : v.trim();
+    }
+}
@@ -2,8 +2,15 @@ package com.example.evsesimulator.service;
 
 import com.example.evsesimulator.model.TNRScenario;
 import com.example.evsesimulator.model.TNREvent;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -14,6 +21,10 @@ import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service TNR :
@@ -21,33 +32,132 @@ import java.util.concurrent.ConcurrentHashMap;
  * - stockage fichiers JSON (scenarios + exécutions)
  * - index d'exécutions, comparaison simple
  * - sidecar .meta.json pour baseline/tags (pas besoin d'ajouter des champs au modèle)
+ * - enregistrement écrit au fil de l'eau dans un journal NDJSON (recordings/), scellé au stop
+ *   en {id}.events.ndjson à côté de l'en-tête {id}.json : mémoire constante, rien de perdu au crash
+ * - capture via un anneau MPSC (TnrCaptureRing) : les threads OCPP ne font que réclamer un slot,
+ *   construction des événements, sérialisation et écriture se font sur le thread consommateur
+ * - le hook OCPP (OcppCapture) n'est installé dans le client que pendant un enregistrement
+ * - catalogue des scénarios (TnrCatalog, catalog.json) : /list ne relit plus aucun scénario
  */
+@Slf4j
 @Service
 public class TNRService {
 
+    /** mapper des fichiers TNR (format ISO), fourni par le registre de sérialisation */
     private final ObjectMapper mapper;
-    private final Path baseDir, scenariosDir, execDir;
+    private final SimulatorMeters meters;
+    private final OCPPWebSocketClient ocppClient;
+    private final ObjectWriter prettyWriter;
+    private final ObjectReader scenarioReader;
+    private final ObjectReader executionReader;
+    private final ObjectWriter eventWriter;
+    private final ObjectReader eventReader;
+    private final Path baseDir, scenariosDir, execDir, recordingsDir;
 
     private volatile boolean isRecording = false;
     private long recordingStart = 0L;
-    private final List<TNREvent> recordingEvents = Collections.synchronizedList(new ArrayList<>());
+    private volatile TnrJournal journal;
+    private final TnrCaptureRing ring;
+    private final TnrCatalog catalog;
+    private final OcppCapture ocppCapture = new OcppCapture() {
+        @Override
+        public void sent(String sessionId, String action, String payloadKey, Object payload) {
+            capture("ocpp", sessionId, action, false, payloadKey, payload);
+        }
+
+        @Override
+        public void received(String sessionId, String action, Object result, Throwable error) {
+            // l'erreur (Throwable) est convertie en {error: message} par le consommateur
+            capture("ocpp", sessionId, action, true, null, error == null ? result : error);
+        }
+    };
+    private final LongAdder droppedEvents = new LongAdder();
     private Map<String, Object> recordingMeta = new LinkedHashMap<>();
+    private final ScheduledExecutorService journalFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tnr-journal-flush");
+        t.setDaemon(true);
+        return t;
+    });
 
     /** runs actifs par scenarioId */
     private final Map<String, RunTracker> runs = new ConcurrentHashMap<>();
     /** index des exécutions */
     private final List<ExecutionMeta> executionIndex = Collections.synchronizedList(new ArrayList<>());
 
+    private static final long DRAIN_TIMEOUT_MS = 5000;
     private static final DateTimeFormatter ISO = DateTimeFormatter.ISO_INSTANT;
 
-    public TNRService(ObjectMapper mapper,
-                      @Value("${tnr.dir:./data/tnr}") String tnrDir) throws IOException {
-        this.mapper = mapper;
+    public TNRService(SerializationRegistry serialization,
+                      SimulatorMeters meters,
+                      OCPPWebSocketClient ocppClient,
+                      @Value("${tnr.dir:./data/tnr}") String tnrDir,
+                      @Value("${tnr.journal.flush-interval-ms:1000}") long flushIntervalMs,
+                      @Value("${tnr.capture.ring-size:65536}") int ringSize) throws IOException {
+        this.mapper = serialization.tnrMapper();
+        this.meters = meters;
+        this.ocppClient = ocppClient;
+        this.prettyWriter = mapper.writerWithDefaultPrettyPrinter();
+        this.scenarioReader = mapper.readerFor(TNRScenario.class);
+        this.executionReader = mapper.readerFor(ExecutionDetail.class);
         this.baseDir = Paths.get(tnrDir).toAbsolutePath();
         this.scenariosDir = baseDir.resolve("scenarios");
         this.execDir = baseDir.resolve("executions");
+        this.recordingsDir = baseDir.resolve("recordings");
+        this.eventWriter = serialization.tnrEventWriter();
+        this.eventReader = serialization.tnrEventReader();
         Files.createDirectories(scenariosDir);
         Files.createDirectories(execDir);
+        Files.createDirectories(recordingsDir);
+        this.catalog = new TnrCatalog(scenariosDir, baseDir.resolve("catalog.json"), mapper, this::loadCatalogEntry);
+        catalog.load();
+        recoverInterruptedRecordings();
+        catalog.watch();
+        this.ring = new TnrCaptureRing(ringSize, this::persist);
+        journalFlusher.scheduleWithFixedDelay(this::flushJournal,
+                flushIntervalMs, Math.max(10, flushIntervalMs), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        isRecording = false;
+        ocppClient.setCapture(null);
+        ring.close();
+        catalog.close();
+        journalFlusher.shutdownNow();
+        TnrJournal j = journal;
+        if (j != null) {
+            // on garde le journal non scellé : il sera récupéré au prochain démarrage
+            try { j.close(); } catch (IOException e) { log.warn("TNR journal close failed: {}", e.getMessage()); }
+        }
+    }
+
+    private void flushJournal() {
+        TnrJournal j = journal;
+        if (j == null) return;
+        try { j.flush(); } catch (IOException e) { log.warn("TNR journal flush failed: {}", e.getMessage()); }
+    }
+
+    /** Journaux d'un enregistrement interrompu (crash, arrêt) : scellés en scénarios "recovered". */
+    private void recoverInterruptedRecordings() {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(recordingsDir, "recording-*.ndjson")) {
+            for (Path p : ds) {
+                try {
+                    if (Files.size(p) == 0) {
+                        Files.delete(p);
+                        continue;
+                    }
+                    String startMs = stripExt(p.getFileName().toString()).substring("recording-".length());
+                    long started = Long.parseLong(startMs);
+                    TNRScenario s = sealJournal(p, -1, "recovered-" + startMs,
+                            "Recovered after an interrupted recording", started, false, List.of("recovered"));
+                    log.info("Recovered interrupted TNR recording {} as scenario {}", p.getFileName(), s.getId());
+                } catch (Exception e) {
+                    log.warn("Unable to recover TNR journal {}: {}", p, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to scan TNR recordings: {}", e.getMessage());
+        }
     }
 
     /* ========== STATUS ========== */
@@ -56,7 +166,11 @@ public class TNRService {
         Map<String, Object> m = new LinkedHashMap<>();
         m.put("isRecording", isRecording);
         m.put("isReplaying", runs.values().stream().anyMatch(r -> "running".equals(r.status)));
-        m.put("recordingEvents", recordingEvents.size());
+        TnrJournal j = journal;
+        m.put("recordingEvents", j == null ? 0 : j.getEvents());
+        m.put("recordingBytes", j == null ? 0 : j.getBytes());
+        m.put("droppedEvents", droppedEvents.sum() + ring.getDropped());
+        m.put("captureQueueDepth", ring.depth());
         m.put("recordingName", recordingMeta.getOrDefault("name", ""));
         m.put("recordingDuration", isRecording ? (System.currentTimeMillis() - recordingStart) : 0);
         return m;
@@ -64,22 +178,72 @@ public class TNRService {
 
     /* ========== RECORDING ========== */
 
-    public synchronized void startRecording(Map<String, Object> meta) {
-        isRecording = true;
+    public boolean isRecording() {
+        return isRecording;
+    }
+
+    public synchronized void startRecording(Map<String, Object> meta) throws IOException {
+        isRecording = false;
+        ocppClient.setCapture(null);
+        ring.drain(DRAIN_TIMEOUT_MS);
+        ring.advanceEpoch();
+        discardJournal();
         recordingStart = System.currentTimeMillis();
-        recordingEvents.clear();
+        droppedEvents.reset();
+        ring.resetDropped();
         recordingMeta = meta == null ? new LinkedHashMap<>() : new LinkedHashMap<>(meta);
         if (!recordingMeta.containsKey("startedAt"))
             recordingMeta.put("startedAt", ISO.format(Instant.now()));
+        recordingMeta.put("t0", recordingStart);
+        journal = new TnrJournal(recordingsDir.resolve("recording-" + recordingStart + ".ndjson"), eventWriter);
+        isRecording = true;
+        ocppClient.setCapture(ocppCapture);
+    }
+
+    /** Un nouveau start remplace l'enregistrement non sauvegardé (comme avant : on repart de zéro). */
+    private void discardJournal() throws IOException {
+        TnrJournal j = journal;
+        journal = null;
+        if (j == null) return;
+        j.close();
+        Files.deleteIfExists(j.getFile());
     }
 
     /** alias utilisé par le front EVSE (tap) */
     public void recordEvent(TNREvent ev) {
+        long epoch = ring.epoch();
         if (!isRecording || ev == null) return;
+        long t0 = System.nanoTime();
         if (ev.getTimestamp() == null) ev.setTimestamp(System.currentTimeMillis());
-        // temps relatif depuis start (facultatif)
-        if (!recordingMeta.containsKey("t0")) recordingMeta.put("t0", recordingStart);
-        recordingEvents.add(ev);
+        ring.capture(epoch, ev);
+        meters.tnrRecord().record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Capture à plat (hook OCPP, sessions UI) : aucun objet construit sur le thread appelant,
+     * le payload est assemblé par le consommateur ({payloadKey: payload}, {error: msg} pour un Throwable).
+     * L'époque est lue avant le test d'activité : une capture qui franchit le stop est jetée, pas
+     * écrite dans le journal suivant.
+     */
+    public void capture(String type, String sessionId, String action, boolean recv,
+                        String payloadKey, Object payload) {
+        long epoch = ring.epoch();
+        if (!isRecording) return;
+        long t0 = System.nanoTime();
+        ring.capture(epoch, System.currentTimeMillis(), type, sessionId, action, recv, payloadKey, payload);
+        meters.tnrRecord().record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+    }
+
+    /** Thread consommateur de l'anneau : sérialisation et écriture dans le journal. */
+    private void persist(TNREvent ev) {
+        TnrJournal j = journal;
+        if (j == null) return;
+        try {
+            j.append(ev);
+        } catch (IOException e) {
+            droppedEvents.increment();
+            log.debug("TNR event dropped: {}", e.getMessage());
+        }
     }
 
     public synchronized TNRScenario stopAndSaveRecording(String name,
@@ -87,66 +251,137 @@ public class TNRService {
                                                          boolean baseline,
                                                          List<String> tags) throws IOException {
         isRecording = false;
-        long duration = System.currentTimeMillis() - recordingStart;
+        ocppClient.setCapture(null);
+        if (!ring.drain(DRAIN_TIMEOUT_MS)) log.warn("TNR capture ring not fully drained before sealing");
+        ring.advanceEpoch();
+        TnrJournal j = journal;
+        journal = null;
+        if (j == null) throw new IllegalStateException("No recording in progress");
+        j.close();
+        return sealJournal(j.getFile(), j.getEvents(), name, description, recordingStart, baseline, tags);
+    }
 
+    /**
+     * Scelle un journal : déplacé en {id}.events.ndjson, en-tête {id}.json sans les événements
+     * et sidecar avec le nombre d'événements. Le scénario renvoyé ne porte pas les événements.
+     * @param eventsCount nombre tenu par le journal vivant, -1 pour un journal récupéré (relu)
+     */
+    private TNRScenario sealJournal(Path journalFile, long eventsCount, String name, String description,
+                                    long startedAt, boolean baseline, List<String> tags) throws IOException {
+        long duration = System.currentTimeMillis() - startedAt;
         String scenarioId = genId(name);
+        Path events = scenarioEventsPath(scenarioId);
+        Files.move(journalFile, events, StandardCopyOption.ATOMIC_MOVE);
+        long count = eventsCount >= 0 ? eventsCount : TnrJournal.count(events, eventReader);
+
         TNRScenario s = new TNRScenario();
         s.setId(scenarioId);
         s.setName((name == null || name.isBlank()) ? scenarioId : name);
         s.setDescription(description);
         s.setCreatedAt(new Date());
-        s.setEvents(new ArrayList<>(recordingEvents));
 
         writeScenario(s);
         writeScenarioSidecar(scenarioId, Map.of(
                 "baseline", baseline,
                 "tags", tags == null ? List.of() : tags,
                 "meta", Map.of(
-                        "startedAt", recordingMeta.getOrDefault("startedAt", ISO.format(Instant.now())),
-                        "duration", duration
+                        "startedAt", ISO.format(Instant.ofEpochMilli(startedAt)),
+                        "duration", duration,
+                        "eventsCount", count,
+                        "droppedEvents", droppedEvents.sum()
                 )
         ));
+        catalog.update(scenarioId);
         return s;
     }
 
     /* ========== SCENARIOS ========== */
 
-    public List<Map<String, Object>> listScenarios() throws IOException {
-        List<Map<String, Object>> out = new ArrayList<>();
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(scenariosDir, "*.json")) {
-            for (Path p : ds) {
-                try {
-                    TNRScenario s = mapper.readValue(Files.readString(p), TNRScenario.class);
-                    Map<String, Object> side = readScenarioSidecar(stripExt(p.getFileName().toString()));
-                    Map<String, Object> meta = new LinkedHashMap<>();
-                    meta.put("id", s.getId());
-                    meta.put("name", s.getName());
-                    meta.put("description", s.getDescription());
-                    meta.put("createdAt", s.getCreatedAt() == null ? null : ISO.format(s.getCreatedAt().toInstant()));
-                    meta.put("eventsCount", s.getEvents() == null ? 0 : s.getEvents().size());
-                    meta.put("tags", side.getOrDefault("tags", List.of()));
-                    meta.put("baseline", side.getOrDefault("baseline", false));
-                    out.add(meta);
-                } catch (Exception ignore) {}
+    /** Page du catalogue (en mémoire) : scénarios portant tous les tags demandés, triés par nom. */
+    public ScenarioPage listScenarios(Collection<String> tags, int offset, int limit) {
+        List<TnrCatalog.Entry> all = catalog.list(tags);
+        int from = Math.min(Math.max(0, offset), all.size());
+        int to = limit <= 0 ? all.size() : (int) Math.min(all.size(), (long) from + limit);
+        List<Map<String, Object>> items = new ArrayList<>(to - from);
+        for (TnrCatalog.Entry e : all.subList(from, to)) {
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("id", e.id());
+            meta.put("name", e.name());
+            meta.put("description", e.description());
+            meta.put("createdAt", e.createdAt());
+            meta.put("eventsCount", e.eventsCount());
+            meta.put("tags", e.tags());
+            meta.put("baseline", e.baseline());
+            items.add(meta);
+        }
+        return new ScenarioPage(all.size(), items);
+    }
+
+    /**
+     * Métadonnées d'un scénario pour le catalogue, lues en flux : les tableaux volumineux
+     * (events, sessions...) sont sautés, les événements seulement comptés.
+     */
+    private TnrCatalog.Entry loadCatalogEntry(String id, String stamp) throws IOException {
+        ObjectNode header = mapper.createObjectNode();
+        long events = 0;
+        boolean inlineEvents = false;
+        try (JsonParser p = mapper.createParser(scenarioPath(id).toFile())) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                if ("events".equals(field) && t == JsonToken.START_ARRAY) {
+                    inlineEvents = true;
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        p.skipChildren();
+                        events++;
+                    }
+                } else if ("sessions".equals(field) || "validationRules".equals(field)) {
+                    p.skipChildren();
+                } else {
+                    header.set(field, mapper.readTree(p));
+                }
             }
         }
-        out.sort(Comparator.comparing(m -> String.valueOf(m.getOrDefault("name", ""))));
-        return out;
+        TNRScenario s = mapper.treeToValue(header, TNRScenario.class);
+        Map<String, Object> side = readScenarioSidecar(id);
+        if (!inlineEvents) {
+            events = journalCount(side);
+            Path journalFile = scenarioEventsPath(id);
+            if (events == 0 && Files.exists(journalFile)) events = TnrJournal.count(journalFile, eventReader);
+        }
+        Object tags = side.containsKey("tags") ? side.get("tags") : s.getTags();
+        List<String> tagList = new ArrayList<>();
+        if (tags instanceof Collection<?> c) for (Object t : c) tagList.add(String.valueOf(t));
+        boolean baseline = side.containsKey("baseline")
+                ? Boolean.TRUE.equals(side.get("baseline"))
+                : Boolean.TRUE.equals(s.getBaseline());
+        return new TnrCatalog.Entry(id, s.getName(), s.getDescription(),
+                s.getCreatedAt() == null ? null : ISO.format(s.getCreatedAt().toInstant()),
+                events, tagList, baseline, stamp);
     }
 
+    /** En-tête + événements du journal scellé s'il existe (scénarios enregistrés). */
     public TNRScenario getScenario(String id) throws IOException {
-        return mapper.readValue(Files.readString(scenarioPath(id)), TNRScenario.class);
+        TNRScenario s = scenarioReader.readValue(Files.readString(scenarioPath(id)));
+        Path events = scenarioEventsPath(id);
+        if (Files.exists(events)) s.setEvents(TnrJournal.read(events, eventReader));
+        return s;
     }
 
     public void importScenario(TNRScenario s) throws IOException {
         if (s.getId() == null || s.getId().isBlank()) s.setId(genId(s.getName()));
         if (s.getCreatedAt() == null) s.setCreatedAt(new Date());
         writeScenario(s);
+        Files.deleteIfExists(scenarioEventsPath(s.getId()));
+        catalog.update(s.getId());
     }
 
     public void deleteScenario(String id) throws IOException {
         Files.deleteIfExists(scenarioPath(id));
         Files.deleteIfExists(scenarioSidecarPath(id));
+        Files.deleteIfExists(scenarioEventsPath(id));
+        catalog.remove(id);
     }
 
     /* ========== RUN / EXECUTIONS ========== */
@@ -157,6 +392,7 @@ public class TNRService {
         runs.put(scenarioId, tracker);
 
         new Thread(() -> {
+            long t0 = System.nanoTime();
             try {
                 tracker.status = "running";
                 tracker.startedAt = ISO.format(Instant.now());
@@ -180,10 +416,12 @@ public class TNRService {
 
                 saveExecution(tracker, scenario, true, List.of());
                 tracker.log("Run finished: OK");
+                meters.tnrReplay("success", System.nanoTime() - t0);
             } catch (Exception e) {
                 tracker.status = "failed";
                 tracker.finishedAt = ISO.format(Instant.now());
                 tracker.log("Run failed: " + e.getMessage());
+                meters.tnrReplay("failed", System.nanoTime() - t0);
                 try {
                     saveExecution(tracker, scenario, false,
                             List.of(Map.of("type", "error", "path", "/", "expected", null, "actual", e.getMessage())));
@@ -203,7 +441,7 @@ public class TNRService {
         if (executionIndex.isEmpty()) {
             try (DirectoryStream<Path> ds = Files.newDirectoryStream(execDir, "exec_*.json")) {
                 for (Path p : ds) {
-                    ExecutionDetail d = mapper.readValue(Files.readString(p), ExecutionDetail.class);
+                    ExecutionDetail d = executionReader.readValue(Files.readString(p));
                     executionIndex.add(new ExecutionMeta(d.executionId, d.scenarioId, d.timestamp, d.passed, d.metrics));
                 }
             }
@@ -214,7 +452,7 @@ public class TNRService {
 
     public ExecutionDetail getExecution(String executionId) throws IOException {
         Path p = execDir.resolve("exec_" + executionId + ".json");
-        return mapper.readValue(Files.readString(p), ExecutionDetail.class);
+        return executionReader.readValue(Files.readString(p));
     }
 
     public Map<String, Object> compareExecutions(String baselineId, String currentId) throws IOException {
@@ -250,16 +488,17 @@ public class TNRService {
 
     private Path scenarioPath(String id) { return scenariosDir.resolve(id + ".json"); }
     private Path scenarioSidecarPath(String id) { return scenariosDir.resolve(id + ".meta.json"); }
+    private Path scenarioEventsPath(String id) { return scenariosDir.resolve(id + ".events.ndjson"); }
 
     private void writeScenario(TNRScenario s) throws IOException {
         Files.writeString(scenarioPath(s.getId()),
-                mapper.writerWithDefaultPrettyPrinter().writeValueAsString(s),
+                prettyWriter.writeValueAsString(s),
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 
     private void writeScenarioSidecar(String id, Map<String, Object> meta) throws IOException {
         Files.writeString(scenarioSidecarPath(id),
-                mapper.writerWithDefaultPrettyPrinter().writeValueAsString(meta),
+                prettyWriter.writeValueAsString(meta),
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 
@@ -271,6 +510,10 @@ public class TNRService {
         } catch (Exception e) { return Map.of(); }
     }
 
+    private static long journalCount(Map<String, Object> side) {
+        return side.get("meta") instanceof Map<?, ?> meta && meta.get("eventsCount") instanceof Number n ? n.longValue() : 0;
+    }
+
     private String stripExt(String fn) { int i = fn.lastIndexOf('.'); return i < 0 ? fn : fn.substring(0, i); }
 
     private String genId(String name) {
@@ -293,7 +536,7 @@ public class TNRService {
         d.metrics = Map.of("totalEvents", d.events.size());
         d.signature = sha1(mapper.writeValueAsBytes(d.events));
         Files.writeString(execDir.resolve("exec_" + d.executionId + ".json"),
-                mapper.writerWithDefaultPrettyPrinter().writeValueAsString(d),
+                prettyWriter.writeValueAsString(d),
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         executionIndex.add(0, new ExecutionMeta(d.executionId, d.scenarioId, d.timestamp, d.passed, d.metrics));
     }
@@ -336,6 +579,8 @@ public class TNRService {
         }
     }
 
+    public record ScenarioPage(int total, List<Map<String, Object>> items) {}
+
     public static class ExecutionMeta {
         public String executionId, scenarioId, timestamp; public boolean passed; public Map<String, Object> metrics;
         public ExecutionMeta() {}
@@ -0,0 +1,208 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.model.TNREvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Anneau multi-producteurs / consommateur unique (style Disruptor) entre la capture TNR
+ * et le journal. Les slots sont pré-alloués : côté producteur (threads OCPP), une capture
+ * = une réclamation de séquence par CAS + écriture des champs + publication volatile, sans
+ * verrou ni allocation. Le thread consommateur construit le TNREvent et l'envoie au puits
+ * (sérialisation + journal). Anneau plein : l'événement est compté en dropped, jamais bloquant.
+ * Consommateur inactif : il se gare sans délai et le premier producteur qui publie le réveille.
+ * Chaque slot porte l'époque (enregistrement) lue par le producteur avant son test d'activité ;
+ * le consommateur jette les slots d'une époque close, publiés après le drain de fin d'enregistrement.
+ */
+@Slf4j
+final class TnrCaptureRing implements AutoCloseable {
+
+    private static final class Slot {
+        /** séquence publiée dans ce slot (-1 = jamais écrit) */
+        volatile long sequence = -1;
+        long epoch;
+        long timestamp;
+        String type;
+        String sessionId;
+        String action;
+        boolean recv;
+        String payloadKey;
+        Object payload;
+        TNREvent event;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    /** prochaine séquence à réclamer (producteurs) */
+    private final AtomicLong claimed = new AtomicLong();
+    /** prochaine séquence à consommer, publiée par le consommateur une fois l'événement traité */
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Consumer<TNREvent> sink;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    /** consommateur garé (ou sur le point de l'être) : le prochain producteur doit le réveiller */
+    private volatile boolean parked;
+    private volatile long epoch;
+
+    TnrCaptureRing(int capacity, Consumer<TNREvent> sink) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) slots[i] = new Slot();
+        this.mask = size - 1;
+        this.sink = sink;
+        this.consumer = new Thread(this::run, "tnr-capture");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /** Séquence réclamée, ou -1 si l'anneau est plein. */
+    private long claim() {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed.get() >= slots.length) {
+                dropped.increment();
+                return -1;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        return seq;
+    }
+
+    /**
+     * Capture à plat : le payload est construit par le consommateur ({payloadKey: payload}
+     * si payloadKey est renseigné, {error: message} pour un Throwable).
+     */
+    boolean capture(long epoch, long timestamp, String type, String sessionId, String action,
+                    boolean recv, String payloadKey, Object payload) {
+        long seq = claim();
+        if (seq < 0) return false;
+        Slot s = slots[(int) seq & mask];
+        s.epoch = epoch;
+        s.timestamp = timestamp;
+        s.type = type;
+        s.sessionId = sessionId;
+        s.action = action;
+        s.recv = recv;
+        s.payloadKey = payloadKey;
+        s.payload = payload;
+        publish(s, seq);
+        return true;
+    }
+
+    /** Événement déjà construit (tap du front). */
+    boolean capture(long epoch, TNREvent event) {
+        long seq = claim();
+        if (seq < 0) return false;
+        Slot s = slots[(int) seq & mask];
+        s.epoch = epoch;
+        s.event = event;
+        publish(s, seq);
+        return true;
+    }
+
+    private void publish(Slot s, long seq) {
+        s.sequence = seq;
+        if (parked) LockSupport.unpark(consumer);
+    }
+
+    /** Époque courante, à lire par le producteur avant de tester si l'enregistrement est actif. */
+    long epoch() {
+        return epoch;
+    }
+
+    /** Clôt l'époque courante (après drain) : les captures tardives qui la portent seront jetées. */
+    void advanceEpoch() {
+        epoch++;
+    }
+
+    private void run() {
+        long next = 0;
+        int idle = 0;
+        while (running || next < claimed.get()) {
+            Slot s = slots[(int) next & mask];
+            if (s.sequence != next) {
+                // attente active courte, puis parking jusqu'à la prochaine publication
+                if (++idle <= 100) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                parked = true;
+                if (s.sequence != next && running) LockSupport.park(this);
+                parked = false;
+                continue;
+            }
+            idle = 0;
+            if (s.epoch != epoch) {
+                // capture tardive d'un enregistrement déjà scellé
+                dropped.increment();
+            } else {
+                TNREvent ev = s.event != null ? s.event : toEvent(s);
+                try {
+                    sink.accept(ev);
+                } catch (RuntimeException e) {
+                    dropped.increment();
+                    log.debug("TNR capture sink failed: {}", e.getMessage());
+                }
+            }
+            s.event = null;
+            s.payload = null;
+            s.sessionId = null;
+            // publié après le puits : drain() garantit que l'événement est dans le journal
+            consumed.lazySet(++next);
+        }
+    }
+
+    private static TNREvent toEvent(Slot s) {
+        TNREvent ev = new TNREvent();
+        ev.setTimestamp(s.timestamp);
+        ev.setSessionId(s.sessionId);
+        ev.setType(s.type);
+        ev.setAction(s.recv ? "RECV:" + s.action : s.action);
+        Object payload = s.payload;
+        if (payload instanceof Throwable t) payload = Map.of("error", String.valueOf(t.getMessage()));
+        else if (s.payloadKey != null) payload = Map.of(s.payloadKey, String.valueOf(payload));
+        ev.setPayload(payload);
+        return ev;
+    }
+
+    /** Attend que tout ce qui a été capturé jusqu'ici soit passé au puits. */
+    boolean drain(long timeoutMs) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (consumed.get() < target) {
+            if (System.nanoTime() > deadline || !consumer.isAlive()) return false;
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    int depth() {
+        return (int) (claimed.get() - consumed.get());
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    void resetDropped() {
+        dropped.reset();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
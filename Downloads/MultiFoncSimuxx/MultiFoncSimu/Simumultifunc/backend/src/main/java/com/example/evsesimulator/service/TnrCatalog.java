@@ -0,0 +1,216 @@
+package com.example.evsesimulator.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalogue des scénarios TNR : métadonnées (nom, nombre d'événements, tags...) en mémoire,
+ * persistées dans un fichier d'index et tenues à jour à l'écriture, l'import et la suppression.
+ * Un WatchService rattrape les modifications faites hors de l'application ; chaque entrée porte
+ * l'empreinte (date, taille) de ses fichiers, un fichier inchangé n'est jamais relu.
+ */
+@Slf4j
+final class TnrCatalog implements Closeable {
+
+    private static final long WATCH_DEBOUNCE_MS = 300;
+
+    public record Entry(String id, String name, String description, String createdAt, long eventsCount,
+                        List<String> tags, boolean baseline, String stamp) {}
+
+    /** Relit les métadonnées d'un scénario depuis ses fichiers ; null s'il n'est pas lisible. */
+    interface Loader {
+        Entry load(String id, String stamp) throws IOException;
+    }
+
+    private final Path scenariosDir;
+    private final Path indexFile;
+    private final ObjectMapper mapper;
+    private final Loader loader;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    TnrCatalog(Path scenariosDir, Path indexFile, ObjectMapper mapper, Loader loader) {
+        this.scenariosDir = scenariosDir;
+        this.indexFile = indexFile;
+        this.mapper = mapper;
+        this.loader = loader;
+    }
+
+    /** Charge l'index puis le réconcilie avec le répertoire (ajouts, modifications, suppressions). */
+    synchronized void load() {
+        if (Files.exists(indexFile)) {
+            try {
+                List<Entry> saved = mapper.readValue(indexFile.toFile(), new TypeReference<List<Entry>>() {});
+                for (Entry e : saved) entries.put(e.id(), e);
+            } catch (IOException e) {
+                log.warn("TNR catalog index unreadable, rebuilding: {}", e.getMessage());
+            }
+        }
+        Set<String> ids = new HashSet<>(entries.keySet());
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(scenariosDir, "*.json")) {
+            for (Path p : ds) {
+                String id = idOf(p.getFileName().toString());
+                if (id != null) ids.add(id);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to scan TNR scenarios: {}", e.getMessage());
+        }
+        boolean changed = false;
+        for (String id : ids) changed |= refresh(id);
+        if (changed || !Files.exists(indexFile)) save();
+        log.info("TNR catalog loaded: {} scenarios", entries.size());
+    }
+
+    /** Surveille le répertoire des scénarios (modifications externes). */
+    void watch() {
+        try {
+            watchService = scenariosDir.getFileSystem().newWatchService();
+            scenariosDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("TNR catalog watcher unavailable: {}", e.getMessage());
+            return;
+        }
+        watcher = new Thread(this::watchLoop, "tnr-catalog-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<String> touched = new HashSet<>();
+                boolean overflow = false;
+                // petite fenêtre d'agrégation : une écriture produit plusieurs événements
+                do {
+                    for (WatchEvent<?> ev : key.pollEvents()) {
+                        if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (ev.context() instanceof Path p) {
+                            String id = idOf(p.getFileName().toString());
+                            if (id != null) touched.add(id);
+                        }
+                    }
+                    if (!key.reset()) return;
+                    key = watchService.poll(WATCH_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                if (overflow) {
+                    load();
+                } else if (!touched.isEmpty()) {
+                    synchronized (this) {
+                        boolean changed = false;
+                        for (String id : touched) changed |= refresh(id);
+                        if (changed) save();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // arrêt
+        }
+    }
+
+    /** À appeler après chaque écriture d'un scénario ou de son sidecar. */
+    synchronized void update(String id) {
+        if (refresh(id)) save();
+    }
+
+    synchronized void remove(String id) {
+        if (entries.remove(id) != null) save();
+    }
+
+    /** Scénarios portant tous les tags demandés (aucun = tous), triés par nom. */
+    List<Entry> list(Collection<String> tags) {
+        List<Entry> out = new ArrayList<>(entries.size());
+        for (Entry e : entries.values()) {
+            if (tags == null || tags.isEmpty() || (e.tags() != null && e.tags().containsAll(tags))) out.add(e);
+        }
+        out.sort(Comparator.comparing((Entry e) -> e.name() == null ? "" : e.name()).thenComparing(Entry::id));
+        return out;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /** @return vrai si l'entrée a changé (ajoutée, relue ou retirée) */
+    private boolean refresh(String id) {
+        String stamp = stampOf(id);
+        Entry current = entries.get(id);
+        if (stamp == null) return entries.remove(id) != null;
+        if (current != null && stamp.equals(current.stamp())) return false;
+        try {
+            Entry e = loader.load(id, stamp);
+            if (e == null) return entries.remove(id) != null;
+            entries.put(id, e);
+            return true;
+        } catch (Exception e) {
+            log.debug("TNR scenario {} not indexed: {}", id, e.getMessage());
+            return entries.remove(id) != null;
+        }
+    }
+
+    /** Empreinte des fichiers d'un scénario (en-tête, sidecar, journal), null sans en-tête. */
+    private String stampOf(String id) {
+        BasicFileAttributes header = attributes(scenariosDir.resolve(id + ".json"));
+        if (header == null) return null;
+        BasicFileAttributes side = attributes(scenariosDir.resolve(id + ".meta.json"));
+        BasicFileAttributes events = attributes(scenariosDir.resolve(id + ".events.ndjson"));
+        return stamp(header) + "|" + stamp(side) + "|" + stamp(events);
+    }
+
+    private static String stamp(BasicFileAttributes a) {
+        return a == null ? "-" : a.lastModifiedTime().toMillis() + ":" + a.size();
+    }
+
+    private static BasicFileAttributes attributes(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Identifiant du scénario d'un fichier du répertoire, null pour un fichier étranger. */
+    static String idOf(String fileName) {
+        for (String ext : new String[]{".events.ndjson", ".meta.json", ".json"}) {
+            if (fileName.endsWith(ext) && fileName.length() > ext.length()) {
+                return fileName.substring(0, fileName.length() - ext.length());
+            }
+        }
+        return null;
+    }
+
+    /** Écriture atomique de l'index (fichier temporaire puis renommage). */
+    private void save() {
+        try {
+            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            mapper.writeValue(tmp.toFile(), new ArrayList<>(entries.values()));
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to save TNR catalog index: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("TNR catalog watcher close failed: {}", e.getMessage());
+            }
+        }
+    }
+}
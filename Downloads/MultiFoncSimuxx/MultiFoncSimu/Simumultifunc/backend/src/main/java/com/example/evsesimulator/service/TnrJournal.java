@@ -0,0 +1,138 @@
+package com.example.evsesimulator.service;
+
+import com.example.evsesimulator.model.TNREvent;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Journal NDJSON d'un enregistrement TNR, en ajout seul : une ligne par événement.
+ * Les lignes passent par un tampon borné vidé dès qu'il est plein, et au plus tard à
+ * chaque {@link #flush()} périodique (avec fsync) : la mémoire reste constante quelle que
+ * soit la durée de l'enregistrement, et un crash ne perd que le dernier intervalle.
+ */
+@Slf4j
+final class TnrJournal implements Closeable {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final ObjectWriter writer;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream buf = new ByteArrayOutputStream(BUFFER_BYTES);
+    private long events;
+    private long bytes;
+    private boolean dirty;
+    private boolean closed;
+
+    TnrJournal(Path file, ObjectWriter writer) throws IOException {
+        this.file = file;
+        this.writer = writer;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.bytes = channel.size();
+    }
+
+    synchronized void append(TNREvent ev) throws IOException {
+        if (closed) return;
+        buf.write(writer.writeValueAsBytes(ev));
+        buf.write('\n');
+        events++;
+        if (buf.size() >= BUFFER_BYTES) drain();
+    }
+
+    private void drain() throws IOException {
+        if (buf.size() == 0) return;
+        ByteBuffer bb = ByteBuffer.wrap(buf.toByteArray());
+        while (bb.hasRemaining()) bytes += channel.write(bb);
+        buf.reset();
+        dirty = true;
+    }
+
+    /** Écrit le tampon et force sur disque si quelque chose a changé depuis le dernier flush. */
+    synchronized void flush() throws IOException {
+        if (closed) return;
+        drain();
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    synchronized long getEvents() {
+        return events;
+    }
+
+    synchronized long getBytes() {
+        return bytes + buf.size();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /** Scelle le journal : flush final puis fermeture (les append suivants sont ignorés). */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /** Relit tous les événements d'un journal (lignes illisibles sautées et comptées). */
+    static List<TNREvent> read(Path file, ObjectReader eventReader) throws IOException {
+        List<TNREvent> out = new ArrayList<>();
+        forEach(file, eventReader, out::add);
+        return out;
+    }
+
+    /** Nombre d'événements complets d'un journal, sans les garder en mémoire. */
+    static long count(Path file, ObjectReader eventReader) throws IOException {
+        long[] n = {0};
+        forEach(file, eventReader, ev -> n[0]++);
+        return n[0];
+    }
+
+    /**
+     * Une ligne corrompue (ou tronquée par un crash) est sautée, pas fatale : la suite du
+     * journal reste lisible.
+     * @return nombre de lignes illisibles
+     */
+    private static long forEach(Path file, ObjectReader eventReader, Consumer<TNREvent> action) throws IOException {
+        long malformed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                TNREvent ev;
+                try {
+                    ev = eventReader.readValue(line);
+                } catch (IOException e) {
+                    malformed++;
+                    continue;
+                }
+                action.accept(ev);
+            }
+        }
+        if (malformed > 0) log.warn("TNR journal {}: {} malformed lines skipped", file.getFileName(), malformed);
+        return malformed;
+    }
+}
@@ -16,10 +16,11 @@ import java.util.stream.Collectors;
 public class TnrPlusDiffService {
 
     private final TNRService tnr;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper mapper;
 
-    public TnrPlusDiffService(TNRService tnr) {
+    public TnrPlusDiffService(TNRService tnr, SerializationRegistry serialization) {
         this.tnr = tnr;
+        this.mapper = serialization.mapper();
     }
 
     /** Options de comparaison (toutes facultatives). */
@@ -2,91 +2,278 @@ package com.example.evsesimulator.service;
 
 import com.example.evsesimulator.model.Session;
 import com.example.evsesimulator.model.OCPPMessage;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.IOException;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class WebSocketBroadcaster {
 
     private static final Logger log = LoggerFactory.getLogger(WebSocketBroadcaster.class);
 
-    private final Set<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /** Comportement quand la file d'un abonné est pleine. */
+    public enum OverflowPolicy { DROP_OLDEST, CONFLATE, DISCONNECT }
 
+    private final Map<String, WebSocketSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+
+    @Autowired
+    private SerializationRegistry serialization;
+
+    @Autowired
+    private SimulatorMeters meters;
+
+    // Coût réel par encodage : trames produites, octets, temps de sérialisation
+    private final Map<WireEncoding, EncodingStats> encodingStats = new EnumMap<>(WireEncoding.class);
+    {
+        for (WireEncoding e : WireEncoding.values()) encodingStats.put(e, new EncodingStats());
+    }
+
+    private static final class EncodingStats {
+        final LongAdder frames = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder serializeNanos = new LongAdder();
+    }
+
+    // Writers partagés : un seul drain actif par abonné, jamais sur le thread appelant
+    private final AtomicInteger writerSeq = new AtomicInteger();
+    private final ExecutorService writers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ws-writer-" + writerSeq.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${ws.broadcast.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${ws.broadcast.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    /**
+     * Enregistre un client UI. Abonnements initiaux lus dans l'URL du handshake
+     * (/ws?topics=SESSION_UPDATE,LOG_ENTRY&sessionIds=abc) ; à défaut tout est reçu
+     * ("*" / "*") pour rester compatible avec les clients existants, jusqu'au premier
+     * subscribe explicite qui remplace ce joker implicite.
+     * Encodage : sous-protocole négocié (smile / cbor / json) puis ?encoding=..., JSON par défaut.
+     */
     public void addSession(WebSocketSession session) {
-        sessions.add(session);
-        log.info("WebSocket session added. Total sessions: {}", sessions.size());
+        List<String> topics = List.of(SubscriptionIndex.ANY);
+        List<String> sessionIds = List.of(SubscriptionIndex.ANY);
+        String encodingName = session.getAcceptedProtocol();
+        if (session.getUri() != null) {
+            Map<String, List<String>> params = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+            if (params.containsKey("topics")) topics = splitParam(params.get("topics"));
+            if (params.containsKey("sessionIds")) sessionIds = splitParam(params.get("sessionIds"));
+            if ((encodingName == null || encodingName.isBlank()) && params.containsKey("encoding")) {
+                encodingName = params.get("encoding").get(0);
+            }
+        }
+        WireEncoding encoding = WireEncoding.fromName(encodingName);
+
+        WebSocketSubscriber sub = new WebSocketSubscriber(session, queueCapacity, overflowPolicy, encoding, writers,
+                meters.broadcastSend());
+        if (topics.equals(List.of(SubscriptionIndex.ANY)) && sessionIds.equals(List.of(SubscriptionIndex.ANY))) {
+            sub.markImplicitAll();
+        }
+        subscribers.put(session.getId(), sub);
+        for (String t : topics) for (String s : sessionIds) subscriptions.subscribe(sub, t, s);
+
+        log.info("WebSocket session added. Total sessions: {}", subscribers.size());
     }
 
     public void removeSession(WebSocketSession session) {
-        sessions.remove(session);
-        log.info("WebSocket session removed. Total sessions: {}", sessions.size());
+        WebSocketSubscriber sub = subscribers.remove(session.getId());
+        if (sub != null) {
+            sub.markClosed();
+            subscriptions.removeAll(sub);
+        }
+        log.info("WebSocket session removed. Total sessions: {}", subscribers.size());
+    }
+
+    /* ========== Abonnements ========== */
+
+    public void subscribe(WebSocketSession session, Collection<String> topics, Collection<String> sessionIds) {
+        WebSocketSubscriber sub = subscribers.get(session.getId());
+        if (sub == null) return;
+        if (sub.clearImplicitAll()) subscriptions.unsubscribe(sub, SubscriptionIndex.ANY, SubscriptionIndex.ANY);
+        for (String t : orAny(topics)) for (String s : orAny(sessionIds)) subscriptions.subscribe(sub, t, s);
+    }
+
+    public void unsubscribe(WebSocketSession session, Collection<String> topics, Collection<String> sessionIds) {
+        WebSocketSubscriber sub = subscribers.get(session.getId());
+        if (sub == null) return;
+        for (String t : orAny(topics)) for (String s : orAny(sessionIds)) subscriptions.unsubscribe(sub, t, s);
+    }
+
+    public List<Map<String, String>> getSubscriptions(WebSocketSession session) {
+        WebSocketSubscriber sub = subscribers.get(session.getId());
+        return sub == null ? List.of() : subscriptions.subscriptionsOf(sub);
+    }
+
+    /** Vrai si au moins un client écoute ce topic pour cette session (sessionId null = global). */
+    public boolean hasSubscribers(String topic, String sessionId) {
+        return !subscribers.isEmpty() && !subscriptions.match(topic, sessionId).isEmpty();
+    }
+
+    /** Réponse directe à un client (accusé d'abonnement, erreurs de protocole...). */
+    public void sendTo(WebSocketSession session, String type, Object data) {
+        WebSocketSubscriber sub = subscribers.get(session.getId());
+        if (sub == null) return;
+        WebSocketMessage<?> msg = serialize(sub.getEncoding(), type, data, System.currentTimeMillis());
+        if (msg != null) sub.offer(null, msg);
     }
 
+    /* ========== Diffusion ========== */
+
     public void broadcastSessionUpdate(Session session) {
-        broadcast("SESSION_UPDATE", session);
+        broadcast("SESSION_UPDATE", session.getId(), "SESSION_UPDATE:" + session.getId(), session);
     }
 
     public void broadcastSessionDelete(String sessionId) {
-        broadcast("SESSION_DELETE", Map.of("sessionId", sessionId));
+        broadcast("SESSION_DELETE", sessionId, null, Map.of("sessionId", sessionId));
     }
 
     public void broadcastOCPPMessage(OCPPMessage message) {
-        broadcast("OCPP_MESSAGE", message);
+        broadcast("OCPP_MESSAGE", message.getSessionId(), null, message);
     }
 
     public void broadcastPerformanceMetrics(Object metrics) {
-        broadcast("PERFORMANCE_METRICS", metrics);
+        broadcast("PERFORMANCE_METRICS", null, "PERFORMANCE_METRICS", metrics);
+    }
+
+    /** Snapshot périodique d'un run long (mémoire, GC, dérive de latence). */
+    public void broadcastPerformanceSnapshot(Object snapshot) {
+        broadcast("PERFORMANCE_SNAPSHOT", null, null, snapshot);
     }
 
     public void broadcastChartUpdate(String sessionId, Object chartData) {
-        broadcast("CHART_UPDATE", Map.of(
+        broadcast("CHART_UPDATE", sessionId, "CHART_UPDATE:" + sessionId, Map.of(
                 "sessionId", sessionId,
                 "data", chartData
         ));
     }
 
     public void broadcastLogEntry(String sessionId, Object logEntry) {
-        broadcast("LOG_ENTRY", Map.of(
+        broadcast("LOG_ENTRY", sessionId, null, Map.of(
                 "sessionId", sessionId,
                 "log", logEntry
         ));
     }
 
-    private void broadcast(String type, Object data) {
-        Map<String, Object> message = Map.of(
-                "type", type,
-                "data", data,
-                "timestamp", System.currentTimeMillis()
-        );
+    /** Profondeur de file et compteurs de pertes par abonné. */
+    public List<Map<String, Object>> getSubscriberStats() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        subscribers.values().forEach(s -> {
+            Map<String, Object> m = s.stats();
+            m.put("subscriptions", subscriptions.subscriptionsOf(s));
+            out.add(m);
+        });
+        return out;
+    }
+
+    /** Octets et coût de sérialisation cumulés par encodage (trafic réel). */
+    public Map<String, Object> getEncodingStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        encodingStats.forEach((enc, st) -> {
+            long frames = st.frames.sum();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("frames", frames);
+            m.put("bytes", st.bytes.sum());
+            m.put("avgBytesPerUpdate", frames == 0 ? 0 : st.bytes.sum() / frames);
+            m.put("avgSerializeNanos", frames == 0 ? 0 : st.serializeNanos.sum() / frames);
+            out.put(enc.name(), m);
+        });
+        return out;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Somme des files en attente (tous abonnés confondus). */
+    public int getTotalQueueDepth() {
+        int total = 0;
+        for (WebSocketSubscriber s : subscribers.values()) total += s.queueDepth();
+        return total;
+    }
+
+    private void broadcast(String type, String sessionId, String conflationKey, Object data) {
+        if (subscribers.isEmpty()) return;
+
+        // Pas d'abonné => pas de sérialisation
+        Collection<WebSocketSubscriber> targets = subscriptions.match(type, sessionId);
+        if (targets.isEmpty()) return;
+
+        // Une seule sérialisation par encodage effectivement demandé
+        long ts = System.currentTimeMillis();
+        Map<WireEncoding, WebSocketMessage<?>> encoded = new EnumMap<>(WireEncoding.class);
+        for (WebSocketSubscriber sub : targets) {
+            WireEncoding enc = sub.getEncoding();
+            WebSocketMessage<?> msg = encoded.get(enc);
+            if (msg == null && !encoded.containsKey(enc)) {
+                msg = serialize(enc, type, data, ts);
+                encoded.put(enc, msg);
+            }
+            if (msg != null) sub.offer(conflationKey, msg);
+        }
+    }
+
+    private WebSocketMessage<?> serialize(WireEncoding encoding, String type, Object data, long timestamp) {
+        SerializationRegistry.Envelope<Object> message = new SerializationRegistry.Envelope<>(type, data, timestamp);
 
-        String json;
         try {
-            json = objectMapper.writeValueAsString(message);
+            long t0 = System.nanoTime();
+            // writer typé (sérialiseur résolu une fois) pour Session, OCPPMessage, PerformanceMetrics
+            ObjectWriter writer = serialization.envelopeWriter(encoding, data == null ? null : data.getClass());
+            WebSocketMessage<?> out;
+            int size;
+            if (encoding.isBinary()) {
+                byte[] bytes = writer.writeValueAsBytes(message);
+                size = bytes.length;
+                out = new BinaryMessage(bytes);
+            } else {
+                TextMessage text = new TextMessage(writer.writeValueAsString(message));
+                size = text.getPayloadLength();
+                out = text;
+            }
+            long elapsed = System.nanoTime() - t0;
+            meters.broadcastSerialize(encoding, elapsed);
+            EncodingStats st = encodingStats.get(encoding);
+            st.serializeNanos.add(elapsed);
+            st.frames.increment();
+            st.bytes.add(size);
+            return out;
         } catch (Exception e) {
             log.error("Failed to serialize message", e);
-            return;
+            return null;
         }
+    }
 
-        TextMessage textMessage = new TextMessage(json);
+    private static List<String> splitParam(List<String> values) {
+        List<String> out = new ArrayList<>();
+        for (String v : values) {
+            if (v == null) continue;
+            for (String part : v.split(",")) if (!part.isBlank()) out.add(part.trim());
+        }
+        return out.isEmpty() ? List.of(SubscriptionIndex.ANY) : out;
+    }
 
-        sessions.forEach(session -> {
-            try {
-                if (session.isOpen()) {
-                    session.sendMessage(textMessage);
-                }
-            } catch (IOException e) {
-                log.error("Failed to send message to session", e);
-            }
-        });
+    private static Collection<String> orAny(Collection<String> values) {
+        return (values == null || values.isEmpty()) ? List.of(SubscriptionIndex.ANY) : values;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,238 @@
+package com.example.evsesimulator.service;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Abonné UI du flux /ws : file sortante bornée + writer dédié.
+ * Les producteurs (threads simulation / OCPP) ne font qu'empiler ;
+ * un seul drain à la fois par abonné appelle session.sendMessage.
+ */
+@Slf4j
+class WebSocketSubscriber {
+
+    private final WebSocketSession session;
+    private final int capacity;
+    private final WebSocketBroadcaster.OverflowPolicy policy;
+    private final WireEncoding encoding;
+    private final Executor writer;
+    private final Timer sendTimer;
+
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>();
+    /** CONFLATE : message en attente par clé (sous le verrou de queue), conflation en O(1) */
+    private final Map<String, Outbound> pendingByKey = new HashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    /** abonnement implicite "*" / "*" posé à la connexion, remplacé par le premier subscribe explicite */
+    private final AtomicBoolean implicitAll = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+    private int maxDepth = 0;
+
+    private static final class Outbound {
+        final String conflationKey;
+        WebSocketMessage<?> message;
+
+        Outbound(String conflationKey, WebSocketMessage<?> message) {
+            this.conflationKey = conflationKey;
+            this.message = message;
+        }
+    }
+
+    WebSocketSubscriber(WebSocketSession session, int capacity,
+                        WebSocketBroadcaster.OverflowPolicy policy, WireEncoding encoding, Executor writer,
+                        Timer sendTimer) {
+        this.session = session;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.encoding = encoding;
+        this.writer = writer;
+        this.sendTimer = sendTimer;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    WireEncoding getEncoding() {
+        return encoding;
+    }
+
+    void markImplicitAll() {
+        implicitAll.set(true);
+    }
+
+    /** @return vrai une seule fois, si l'abonnement implicite était encore en place */
+    boolean clearImplicitAll() {
+        return implicitAll.compareAndSet(true, false);
+    }
+
+    /**
+     * Empile un message sans jamais bloquer l'appelant.
+     * @param conflationKey clé de conflation (ex. SESSION_UPDATE:id), null si le message ne doit pas être fusionné
+     */
+    void offer(String conflationKey, WebSocketMessage<?> message) {
+        if (closed) return;
+
+        boolean overflow = false;
+        synchronized (queue) {
+            Outbound pending = conflates(conflationKey) ? pendingByKey.get(conflationKey) : null;
+            if (pending != null) {
+                // dernière valeur gagnante : remplace en place le message en attente de même clé
+                pending.message = message;
+                conflated.increment();
+            } else if (queue.size() >= capacity) {
+                if (policy == WebSocketBroadcaster.OverflowPolicy.DISCONNECT) {
+                    overflow = true;
+                } else {
+                    forget(queue.pollFirst());
+                    dropped.increment();
+                    enqueue(conflationKey, message);
+                }
+            } else {
+                enqueue(conflationKey, message);
+            }
+            maxDepth = Math.max(maxDepth, queue.size());
+        }
+
+        if (overflow) {
+            dropped.increment();
+            disconnect(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        enqueued.increment();
+        scheduleDrain();
+    }
+
+    private boolean conflates(String key) {
+        return key != null && policy == WebSocketBroadcaster.OverflowPolicy.CONFLATE;
+    }
+
+    /** Sous le verrou de queue. */
+    private void enqueue(String key, WebSocketMessage<?> message) {
+        Outbound o = new Outbound(key, message);
+        queue.addLast(o);
+        if (conflates(key)) pendingByKey.put(key, o);
+    }
+
+    /** Sous le verrou de queue : le message sort de la file, sa clé n'est plus fusionnable. */
+    private void forget(Outbound o) {
+        if (o != null && conflates(o.conflationKey)) pendingByKey.remove(o.conflationKey, o);
+    }
+
+    private void clearQueue() {
+        queue.clear();
+        pendingByKey.clear();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (Exception e) {
+                draining.set(false);
+                log.warn("Unable to schedule writer for WebSocket session {}", session.getId(), e);
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Outbound next;
+            synchronized (queue) {
+                next = queue.pollFirst();
+                if (next == null) {
+                    draining.set(false);
+                    return;
+                }
+                forget(next);
+            }
+            if (closed || !session.isOpen()) {
+                synchronized (queue) {
+                    dropped.add(queue.size() + 1L);
+                    clearQueue();
+                    draining.set(false);
+                }
+                return;
+            }
+            long t0 = System.nanoTime();
+            try {
+                session.sendMessage(next.message);
+                sendTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+                sent.increment();
+            } catch (Exception e) {
+                sendErrors.increment();
+                log.error("Failed to send message to session {}", session.getId(), e);
+            }
+        }
+    }
+
+    void disconnect(CloseStatus status) {
+        if (closed) return;
+        closed = true;
+        synchronized (queue) {
+            clearQueue();
+        }
+        log.warn("Disconnecting slow WebSocket consumer {} ({})", session.getId(), status);
+        writer.execute(() -> {
+            try {
+                session.close(status);
+            } catch (Exception e) {
+                log.debug("Close failed for session {}: {}", session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    void markClosed() {
+        closed = true;
+        synchronized (queue) {
+            clearQueue();
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        int depth;
+        int max;
+        synchronized (queue) {
+            depth = queue.size();
+            max = maxDepth;
+        }
+        m.put("sessionId", session.getId());
+        m.put("remoteAddress", session.getRemoteAddress() == null ? null : session.getRemoteAddress().toString());
+        m.put("open", session.isOpen() && !closed);
+        m.put("encoding", encoding.name());
+        m.put("policy", policy.name());
+        m.put("capacity", capacity);
+        m.put("queueDepth", depth);
+        m.put("maxQueueDepth", max);
+        m.put("enqueued", enqueued.sum());
+        m.put("sent", sent.sum());
+        m.put("dropped", dropped.sum());
+        m.put("conflated", conflated.sum());
+        m.put("sendErrors", sendErrors.sum());
+        return m;
+    }
+
+    int queueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+}
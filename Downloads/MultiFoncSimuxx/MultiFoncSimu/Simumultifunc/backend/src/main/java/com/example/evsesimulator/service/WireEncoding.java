@@ -0,0 +1,38 @@
+package com.example.evsesimulator.service;
+
+import java.util.Locale;
+
+/**
+ * Encodage des trames du flux UI /ws.
+ * JSON => TextMessage ; SMILE / CBOR => BinaryMessage.
+ * Les mappers correspondants sont fournis par {@link SerializationRegistry}.
+ */
+public enum WireEncoding {
+    JSON(false),
+    SMILE(true),
+    CBOR(true);
+
+    private final boolean binary;
+
+    WireEncoding(boolean binary) {
+        this.binary = binary;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /** Nom de sous-protocole / paramètre accepté au handshake. */
+    public String protocol() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /** Résout "smile", "cbor", "json" (ou null) ; JSON en repli. */
+    public static WireEncoding fromName(String name) {
+        if (name == null || name.isBlank()) return JSON;
+        for (WireEncoding e : values()) {
+            if (e.protocol().equalsIgnoreCase(name.trim())) return e;
+        }
+        return JSON;
+    }
+}
@@ -1,23 +1,54 @@
 package com.example.evsesimulator.websocket;
 
+import com.example.evsesimulator.service.SerializationRegistry;
 import com.example.evsesimulator.service.WebSocketBroadcaster;
+import com.example.evsesimulator.service.WireEncoding;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flux UI /ws. Protocole d'abonnement (messages texte JSON du client) :
+ * <pre>
+ * {"action":"subscribe",   "topics":["SESSION_UPDATE","LOG_ENTRY"], "sessionIds":["abc","def"]}
+ * {"action":"unsubscribe", "topics":["*"], "sessionIds":["*"]}
+ * {"action":"list"}
+ * </pre>
+ * "topic"/"sessionId" (valeur simple) sont acceptés ; absent ou "*" = joker.
+ * Sans topics/sessionIds dans l'URL, la connexion reçoit tout ("*" / "*") ; le premier
+ * subscribe remplace ce joker implicite (inutile de le désabonner), les suivants s'ajoutent.
+ * <p>
+ * Encodage des trames serveur négocié au handshake : sous-protocole "smile", "cbor"
+ * ou "json" (ou ?encoding=...). Les messages de contrôle du client restent en JSON texte.
+ */
 @Component
-public class SessionWebSocketHandler extends TextWebSocketHandler {
+public class SessionWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private static final Logger log = LoggerFactory.getLogger(SessionWebSocketHandler.class);
 
     @Autowired
     private WebSocketBroadcaster broadcaster;
 
+    @Autowired
+    private SerializationRegistry serialization;
+
+    @Override
+    public List<String> getSubProtocols() {
+        return Arrays.stream(WireEncoding.values()).map(WireEncoding::protocol).toList();
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         broadcaster.addSession(session);
@@ -33,10 +64,49 @@ public class SessionWebSocketHandler extends TextWebSocketHandler {
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         log.debug("Received message: {}", message.getPayload());
+
+        JsonNode req;
+        try {
+            req = serialization.mapper().readTree(message.getPayload());
+        } catch (Exception e) {
+            broadcaster.sendTo(session, "ERROR", Map.of("error", "Invalid JSON: " + e.getMessage()));
+            return;
+        }
+        if (req == null || !req.hasNonNull("action")) {
+            broadcaster.sendTo(session, "ERROR", Map.of("error", "Missing 'action'"));
+            return;
+        }
+
+        String action = req.get("action").asText();
+        List<String> topics = values(req, "topics", "topic");
+        List<String> sessionIds = values(req, "sessionIds", "sessionId");
+
+        switch (action) {
+            case "subscribe" -> broadcaster.subscribe(session, topics, sessionIds);
+            case "unsubscribe" -> broadcaster.unsubscribe(session, topics, sessionIds);
+            case "list" -> { }
+            default -> {
+                broadcaster.sendTo(session, "ERROR", Map.of("error", "Unknown action: " + action));
+                return;
+            }
+        }
+        broadcaster.sendTo(session, "SUBSCRIPTIONS", Map.of(
+                "subscriptions", broadcaster.getSubscriptions(session)
+        ));
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         log.error("WebSocket transport error", exception);
     }
-}
\ No newline at end of file
+
+    private static List<String> values(JsonNode req, String arrayField, String singleField) {
+        List<String> out = new ArrayList<>();
+        JsonNode arr = req.get(arrayField);
+        if (arr != null && arr.isArray()) arr.forEach(n -> out.add(n.asText()));
+        else if (arr != null && arr.isTextual()) out.add(arr.asText());
+        JsonNode one = req.get(singleField);
+        if (one != null && !one.isNull()) out.add(one.asText());
+        return out;
+    }
+}